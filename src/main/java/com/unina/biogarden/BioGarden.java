@@ -1,6 +1,11 @@
 package com.unina.biogarden;
 
+import com.unina.biogarden.dao.DaoCaches;
 import com.unina.biogarden.database.ConnectionManager;
+import com.unina.biogarden.database.DatabaseNotifications;
+import com.unina.biogarden.service.ActivityMaintenance;
+import com.unina.biogarden.service.AsyncService;
+import com.unina.biogarden.service.CacheInvalidation;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -21,6 +26,10 @@ public class BioGarden extends Application {
         stage.setTitle("Bio Garden");
         stage.setScene(scene);
         stage.show();
+
+        CacheInvalidation.register();
+        DatabaseNotifications.start();
+        ActivityMaintenance.start();
     }
 
     public static void main(String[] args) {
@@ -30,6 +39,12 @@ public class BioGarden extends Application {
     @Override
     public void stop() throws Exception {
         super.stop();
+        DatabaseNotifications.stop();
+        ActivityMaintenance.stop();
+        AsyncService.shutdown();
         ConnectionManager.shutdown();
+        if (Boolean.getBoolean("biogarden.cache.stats")) {
+            DaoCaches.stats().forEach(System.out::println);
+        }
     }
 }
\ No newline at end of file
@@ -1,15 +1,15 @@
 package com.unina.biogarden.controller;
 
-import com.unina.biogarden.dao.UserDAO;
 import com.unina.biogarden.dto.UserDTO;
 import com.unina.biogarden.enumerations.UserType;
 import com.unina.biogarden.service.UserService;
-import com.unina.biogarden.session.Session;
 import com.unina.biogarden.utils.Utils;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
@@ -32,17 +32,29 @@ public class LoginController {
     @FXML
     private Label errorLabel;
 
+    @FXML
+    private Button loginButton;
+
+    @FXML
+    private ProgressIndicator progressIndicator;
+
+    private final UserService service = new UserService();
+
     /**
      * Gestisce l'azione quando il pulsante di login viene premuto.
      * Valida i campi di input (email e password), tenta di autenticare l'utente
      * tramite il {@link UserService}, e verifica il tipo di utente.
+     * L'autenticazione viene eseguita in background; nel frattempo il form è disabilitato
+     * e viene mostrato un indicatore di avanzamento.
      * Se l'autenticazione ha successo e l'utente non è un {@code FARMER},
      * naviga alla vista della dashboard. Altrimenti, mostra un messaggio di errore appropriato.
      */
     @FXML
     private void onLogin() {
+        if (loginButton.isDisabled()) {
+            return; // Autenticazione già in corso
+        }
         errorLabel.setVisible(false);
-        UserService service = new UserService();
 
         String email = emailField.getText();
         String password = passwordField.getText();
@@ -53,16 +65,38 @@ public class LoginController {
             return;
         }
 
-        try {
-            service.login(email, password);
-        } catch (Exception e) {
-            errorLabel.setText("Login fallito: " + e.getMessage());
-            errorLabel.setVisible(true);
-            return;
-        }
+        setBusy(true);
+        Utils.onFxThread(service.loginAsync(email, password),
+                sessionUser -> {
+                    setBusy(false);
+                    onAuthenticated(email, sessionUser);
+                },
+                e -> {
+                    setBusy(false);
+                    errorLabel.setText("Login fallito: " + e.getMessage());
+                    errorLabel.setVisible(true);
+                });
+    }
 
-        UserDTO sessionUser = Session.getUtente();
+    /**
+     * Abilita o disabilita il form di login mostrando l'indicatore di avanzamento durante l'autenticazione.
+     * @param busy {@code true} se l'autenticazione è in corso.
+     */
+    private void setBusy(boolean busy) {
+        emailField.setDisable(busy);
+        passwordField.setDisable(busy);
+        loginButton.setDisable(busy);
+        progressIndicator.setVisible(busy);
+        progressIndicator.setManaged(busy);
+    }
 
+    /**
+     * Completa il login dopo un'autenticazione riuscita, verificando il tipo di utente
+     * e navigando alla vista della dashboard.
+     * @param email L'email con cui l'utente si è autenticato.
+     * @param sessionUser L'utente della sessione appena avviata.
+     */
+    private void onAuthenticated(String email, UserDTO sessionUser) {
         if (sessionUser.tipo() == UserType.FARMER) {
             errorLabel.setText("Accesso non autorizzato: l'utente è un agricoltore.");
             errorLabel.setVisible(true);
@@ -1,6 +1,5 @@
 package com.unina.biogarden.controller;
 
-import com.unina.biogarden.dao.UserDAO;
 import com.unina.biogarden.dto.UserDTO;
 import com.unina.biogarden.enumerations.UserType;
 import com.unina.biogarden.exceptions.UtenteEsistenteException;
@@ -41,6 +40,14 @@ public class RegisterController {
     @FXML
     private Hyperlink loginLink;
 
+    @FXML
+    private Button registerButton;
+
+    @FXML
+    private ProgressIndicator progressIndicator;
+
+    private final UserService service = new UserService();
+
     /**
      * Inizializza il controller dopo che il suo elemento radice è stato completamente elaborato.
      * Questo metodo imposta la visibilità iniziale dell'etichetta di errore e personalizza la
@@ -95,6 +102,9 @@ public class RegisterController {
      */
     @FXML
     private void onRegister() {
+        if (registerButton.isDisabled()) {
+            return; // Registrazione già in corso
+        }
         errorLabel.setVisible(false);
 
         String nome = nomeField.getText();
@@ -116,21 +126,40 @@ public class RegisterController {
 
         String tipo = tipologiaCombo.getValue();
 
-        UserService service = new UserService();
-        try {
-            service.insert(new UserDTO(1, nome, cognome, email, password, UserType.fromString(tipo)));
-
-            System.out.println("Utente registrato!");
+        setBusy(true);
+        Utils.onFxThread(service.insertAsync(new UserDTO(1, nome, cognome, email, password, UserType.fromString(tipo))),
+                registered -> {
+                    setBusy(false);
+                    System.out.println("Utente registrato!");
+
+                    onLoginLink();
+                },
+                e -> {
+                    setBusy(false);
+                    errorLabel.setVisible(true);
+                    if (e instanceof UtenteEsistenteException) {
+                        errorLabel.setText("Esiste già un utente con questo indirizzo email.");
+                    } else {
+                        errorLabel.setText("Errore durante la registrazione: " + e.getMessage());
+                        e.printStackTrace(); // Logga l'eccezione per il debug
+                    }
+                });
+    }
 
-            onLoginLink();
-        } catch (UtenteEsistenteException ex) {
-            errorLabel.setVisible(true);
-            errorLabel.setText("Esiste già un utente con questo indirizzo email.");
-        } catch (RuntimeException e) {
-            errorLabel.setVisible(true);
-            errorLabel.setText("Errore durante la registrazione: " + e.getMessage());
-            e.printStackTrace(); // Logga l'eccezione per il debug
-        }
+    /**
+     * Abilita o disabilita il form di registrazione mostrando l'indicatore di avanzamento
+     * durante il calcolo dell'hash e la registrazione.
+     * @param busy {@code true} se la registrazione è in corso.
+     */
+    private void setBusy(boolean busy) {
+        nomeField.setDisable(busy);
+        cognomeField.setDisable(busy);
+        emailField.setDisable(busy);
+        tipologiaCombo.setDisable(busy);
+        passwordField.setDisable(busy);
+        registerButton.setDisable(busy);
+        progressIndicator.setVisible(busy);
+        progressIndicator.setManaged(busy);
     }
 
     /**
@@ -2,6 +2,7 @@ package com.unina.biogarden.controller;
 
 import com.unina.biogarden.models.Lot;
 import com.unina.biogarden.models.report.HarvestReportEntry;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import com.unina.biogarden.utils.Utils;
 import javafx.collections.FXCollections;
@@ -20,7 +21,6 @@ import org.jfree.chart.fx.ChartViewer;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 import java.text.DecimalFormat;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 
@@ -53,7 +53,8 @@ public class ReportsDashboardController {
     @FXML
     private VBox chartContainer;
 
-    private final ProjectService projectService = new ProjectService();
+    private final AsyncService<ProjectService> projectService = new AsyncService<>(new ProjectService());
+    private int reportRequest = 0;
 
     /**
      * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
@@ -93,24 +94,23 @@ public class ReportsDashboardController {
             }
         });
 
-        try {
-            Collection<Lot> lots = projectService.fetchAllLots();
-            ObservableList<Lot> lotOptions = FXCollections.observableArrayList();
-            lotOptions.add(new Lot(0, "Tutti i Lotti", 0));
-            lotOptions.addAll(lots);
-            lotComboBox.setItems(lotOptions);
-            lotComboBox.getSelectionModel().selectFirst();
-
-            lotComboBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-                if (newVal != null) {
-                    loadReportData(newVal.getId() == 0 ? null : newVal.getId());
-                }
-            });
-
-        } catch (RuntimeException e) {
-            Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i lotti: " + e.getMessage());
-            e.printStackTrace();
-        }
+        ObservableList<Lot> lotOptions = FXCollections.observableArrayList();
+        lotOptions.add(new Lot(0, "Tutti i Lotti", 0));
+        lotComboBox.setItems(lotOptions);
+        lotComboBox.getSelectionModel().selectFirst();
+
+        lotComboBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) {
+                loadReportData(newVal.getId() == 0 ? null : newVal.getId());
+            }
+        });
+
+        Utils.onFxThread(projectService.supply(ProjectService::fetchAllLots),
+                lots -> lotOptions.addAll(lots),
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i lotti: " + e.getMessage());
+                    e.printStackTrace();
+                });
 
         loadReportData(null);
     }
@@ -118,17 +118,24 @@ public class ReportsDashboardController {
     /**
      * Carica i dati del report di raccolta dal servizio e aggiorna la tabella e il grafico.
      * I dati possono essere filtrati in base all'ID del lotto fornito.
+     * Il report viene calcolato in background; se nel frattempo viene richiesto un altro report,
+     * il risultato di quello precedente viene ignorato.
      * @param lotId L'ID del lotto da filtrare (se {@code null}, vengono caricati i dati per tutti i lotti).
      */
     private void loadReportData(Integer lotId) {
-        try {
-            List<HarvestReportEntry> reportData = projectService.generateHarvestReport(lotId);
-            harvestSummaryTable.setItems(FXCollections.observableArrayList(reportData));
-            updateChart(reportData);
-        } catch (RuntimeException e) {
-            Utils.showAlert(Alert.AlertType.ERROR, "Errore Report", "Impossibile generare il report: " + e.getMessage());
-            e.printStackTrace();
-        }
+        int request = ++reportRequest;
+        Utils.onFxThread(projectService.supply(service -> service.generateHarvestReport(lotId)),
+                reportData -> {
+                    if (request != reportRequest) {
+                        return;
+                    }
+                    harvestSummaryTable.setItems(FXCollections.observableArrayList(reportData));
+                    updateChart(reportData);
+                },
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Report", "Impossibile generare il report: " + e.getMessage());
+                    e.printStackTrace();
+                });
     }
 
     /**
@@ -0,0 +1,170 @@
+package com.unina.biogarden.controller.form;
+
+import com.jfoenix.controls.JFXCheckBox;
+import com.jfoenix.controls.JFXComboBox;
+import com.unina.biogarden.dto.activity.ActivityBulkUpdateDTO;
+import com.unina.biogarden.dto.activity.ActivityFilterDTO;
+import com.unina.biogarden.enumerations.ActivityStatus;
+import com.unina.biogarden.enumerations.ActivityType;
+import com.unina.biogarden.models.Colture;
+import com.unina.biogarden.models.Farmer;
+import com.unina.biogarden.models.activity.Activity;
+import com.unina.biogarden.service.AsyncService;
+import com.unina.biogarden.service.ProjectService;
+import com.unina.biogarden.service.UserService;
+import com.unina.biogarden.utils.Utils;
+import javafx.collections.FXCollections;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.util.StringConverter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.unina.biogarden.utils.Utils.firstCapitalLetter;
+
+/**
+ * Controller per il form di modifica in blocco delle attività di una coltivazione.
+ * Permette di cambiare stato, data e/o coltivatore delle attività selezionate nella tabella,
+ * oppure di tutte le attività della coltivazione che corrispondono a un tipo e a uno stato,
+ * con un'unica operazione sul database. I campi lasciati vuoti restano invariati.
+ * @author Il Tuo Nome
+ */
+public class BulkEditActivityFormController extends AbstractForm {
+
+    @FXML
+    private Label selectionLabel;
+    @FXML
+    private JFXCheckBox applyToAllCheckBox;
+    @FXML
+    private JFXComboBox<ActivityType> filterTypeComboBox;
+    @FXML
+    private JFXComboBox<ActivityStatus> filterStatusComboBox;
+    @FXML
+    private JFXComboBox<ActivityStatus> statusComboBox;
+    @FXML
+    private DatePicker datePicker;
+    @FXML
+    private JFXComboBox<Farmer> farmerComboBox;
+
+    private Colture currentCultivation;
+    private List<Activity> selectedActivities = List.of();
+    private Runnable onActivitiesUpdated;
+    private final AsyncService<ProjectService> projectService = new AsyncService<>(new ProjectService());
+    private final AsyncService<UserService> userService = new AsyncService<>(new UserService());
+
+    /**
+     * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
+     * Popola le ComboBox di stati e tipi e abilita i filtri solo quando la modifica
+     * si applica a tutte le attività della coltivazione.
+     * I coltivatori vengono caricati in background, senza bloccare l'apertura del form.
+     */
+    @FXML
+    public void initialize() {
+        Utils.onFxThread(userService.supply(UserService::fetchAllFarmer),
+                farmers -> farmerComboBox.setItems(FXCollections.observableArrayList(farmers)),
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i coltivatori: " + e.getMessage());
+                    e.printStackTrace();
+                });
+        statusComboBox.setItems(FXCollections.observableArrayList(Arrays.asList(ActivityStatus.values())));
+        statusComboBox.setConverter(labels(ActivityStatus::getLabel));
+        filterStatusComboBox.setItems(FXCollections.observableArrayList(Arrays.asList(ActivityStatus.values())));
+        filterStatusComboBox.setConverter(labels(ActivityStatus::getLabel));
+        filterTypeComboBox.setItems(FXCollections.observableArrayList(Arrays.asList(ActivityType.values())));
+        filterTypeComboBox.setConverter(labels(type -> firstCapitalLetter(type.getDescription())));
+
+        filterTypeComboBox.disableProperty().bind(applyToAllCheckBox.selectedProperty().not());
+        filterStatusComboBox.disableProperty().bind(applyToAllCheckBox.selectedProperty().not());
+    }
+
+    /**
+     * Imposta la coltivazione e le attività selezionate a cui applicare la modifica.
+     * Se non è selezionata alcuna attività, la modifica si applica alle attività della coltivazione che
+     * corrispondono ai filtri.
+     * @param cultivation La coltivazione corrente.
+     * @param selected Le attività selezionate nella tabella.
+     */
+    public void setTarget(Colture cultivation, List<Activity> selected) {
+        this.currentCultivation = cultivation;
+        this.selectedActivities = List.copyOf(selected);
+        selectionLabel.setText("Attività selezionate: " + selectedActivities.size());
+        applyToAllCheckBox.setSelected(selectedActivities.isEmpty());
+        applyToAllCheckBox.setDisable(selectedActivities.isEmpty());
+    }
+
+    /**
+     * Imposta un callback {@code Runnable} da eseguire dopo che le attività sono state aggiornate.
+     * @param onActivitiesUpdated Un {@code Runnable} che verrà eseguito.
+     */
+    public void setOnActivitiesUpdated(Runnable onActivitiesUpdated) {
+        this.onActivitiesUpdated = onActivitiesUpdated;
+    }
+
+    /**
+     * Gestisce l'applicazione delle modifiche.
+     * Verifica che sia indicata almeno una modifica, costruisce il filtro dalle attività selezionate
+     * o dai criteri scelti e invia l'aggiornamento al servizio, mostrando il numero di attività modificate.
+     * @param event L'evento di azione che ha scatenato la chiamata, solitamente dal bottone "Applica".
+     */
+    @Override
+    @FXML
+    protected void handleCreate(ActionEvent event) {
+        Farmer farmer = farmerComboBox.getSelectionModel().getSelectedItem();
+        ActivityBulkUpdateDTO changes = new ActivityBulkUpdateDTO(
+                statusComboBox.getSelectionModel().getSelectedItem(),
+                datePicker.getValue(),
+                farmer == null ? null : farmer.getId());
+        if (changes.isEmpty()) {
+            Utils.showAlert(Alert.AlertType.WARNING, "Nessuna Modifica", "Seleziona almeno un nuovo stato, una nuova data o un nuovo coltivatore.");
+            return;
+        }
+        if (currentCultivation == null) {
+            Utils.showAlert(Alert.AlertType.ERROR, "Errore Interno", "Coltivazione di riferimento non trovata per la modifica.");
+            return;
+        }
+
+        ActivityFilterDTO filter = applyToAllCheckBox.isSelected()
+                ? new ActivityFilterDTO(null, currentCultivation.getId(),
+                filterTypeComboBox.getSelectionModel().getSelectedItem(),
+                filterStatusComboBox.getSelectionModel().getSelectedItem(), null, null)
+                : ActivityFilterDTO.ofIds(currentCultivation.getId(), selectedActivities.stream().map(Activity::getId).toList());
+
+        Utils.onFxThread(projectService.supply(service -> service.updateActivities(filter, changes)),
+                updated -> {
+                    Utils.showAlert(Alert.AlertType.INFORMATION, "Successo", "Attività modificate: " + updated + ".");
+                    if (onActivitiesUpdated != null) {
+                        onActivitiesUpdated.run();
+                    }
+                    closeStage(event);
+                },
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Salvataggio", "Si è verificato un errore durante la modifica delle attività: " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    /**
+     * Crea un convertitore che mostra nelle ComboBox un'etichetta leggibile per ogni valore.
+     * @param label La funzione che produce l'etichetta di un valore.
+     * @param <T> Il tipo dei valori.
+     * @return Il convertitore.
+     */
+    private static <T> StringConverter<T> labels(Function<T, String> label) {
+        return new StringConverter<>() {
+            @Override
+            public String toString(T value) {
+                return value == null ? "" : label.apply(value);
+            }
+
+            @Override
+            public T fromString(String string) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package com.unina.biogarden.controller.form;
+
+import com.jfoenix.controls.JFXCheckBox;
+import com.jfoenix.controls.JFXTextField;
+import com.unina.biogarden.models.Project;
+import com.unina.biogarden.service.AsyncService;
+import com.unina.biogarden.service.ProjectService;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import static com.unina.biogarden.utils.Utils.onFxThread;
+import static com.unina.biogarden.utils.Utils.showAlert;
+
+/**
+ * Controller per il form di copia di un progetto esistente, ad esempio per ripeterlo nella stagione successiva.
+ * L'utente sceglie il nome e la nuova data di inizio: tutte le date del progetto, delle coltivazioni
+ * e delle attività vengono spostate dello stesso numero di giorni. Il piano delle attività può essere copiato o meno.
+ * @author Il Tuo Nome
+ */
+public class CloneProjectFormController extends AbstractForm {
+
+    @FXML
+    private Label sourceLabel;
+    @FXML
+    private JFXTextField projectNameField;
+    @FXML
+    private DatePicker startDatePicker;
+    @FXML
+    private Label offsetLabel;
+    @FXML
+    private JFXCheckBox copyActivitiesCheckBox;
+
+    private Project sourceProject;
+    private Runnable onProjectCloned;
+
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
+
+    /**
+     * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
+     * Mostra lo spostamento in giorni corrispondente alla data di inizio scelta.
+     */
+    @FXML
+    public void initialize() {
+        startDatePicker.valueProperty().addListener((obs, oldValue, newValue) -> updateOffsetLabel());
+    }
+
+    /**
+     * Imposta il progetto da copiare e propone come valori iniziali lo stesso nome
+     * e la stessa data di inizio spostata all'anno successivo.
+     * @param project Il progetto da copiare.
+     */
+    public void setSourceProject(Project project) {
+        this.sourceProject = project;
+        sourceLabel.setText("Copia di: " + project.nameProperty().get() + " (" + project.lotProperty().get() + ")");
+        projectNameField.setText(project.nameProperty().get());
+        if (project.getStartDate() != null) {
+            startDatePicker.setValue(project.getStartDate().plusYears(1));
+        }
+    }
+
+    /**
+     * Imposta un callback {@code Runnable} da eseguire dopo che il progetto è stato copiato con successo.
+     * @param onProjectCloned Un {@code Runnable} che verrà eseguito.
+     */
+    public void setOnProjectCloned(Runnable onProjectCloned) {
+        this.onProjectCloned = onProjectCloned;
+    }
+
+    /**
+     * Aggiorna l'etichetta che indica di quanti giorni verranno spostate le date.
+     */
+    private void updateOffsetLabel() {
+        LocalDate newStart = startDatePicker.getValue();
+        if (sourceProject == null || sourceProject.getStartDate() == null || newStart == null) {
+            offsetLabel.setText("");
+            return;
+        }
+        offsetLabel.setText("Le date verranno spostate di " + ChronoUnit.DAYS.between(sourceProject.getStartDate(), newStart) + " giorni.");
+    }
+
+    /**
+     * Gestisce l'evento di copia del progetto.
+     * Valida gli input del form, calcola lo spostamento delle date e avvia la copia tramite il servizio.
+     * In caso di successo, esegue il callback {@code onProjectCloned} e chiude il form.
+     * @param event L'evento di azione che ha scatenato la chiamata, solitamente da un bottone "Clona".
+     */
+    @Override
+    @FXML
+    protected void handleCreate(ActionEvent event) {
+        String name = projectNameField.getText();
+        LocalDate newStart = startDatePicker.getValue();
+
+        if (sourceProject == null || sourceProject.getStartDate() == null) {
+            showAlert(Alert.AlertType.ERROR, "Errore Interno", "Progetto di origine non trovato per la copia.");
+            return;
+        }
+        if (name == null || name.isBlank() || newStart == null) {
+            showAlert(Alert.AlertType.WARNING, "Campi Vuoti", "Per favore, inserisci il nome e la data di inizio del nuovo progetto.");
+            return;
+        }
+
+        int projectId = sourceProject.getId();
+        int dayOffset = Math.toIntExact(ChronoUnit.DAYS.between(sourceProject.getStartDate(), newStart));
+        boolean withActivities = copyActivitiesCheckBox.isSelected();
+
+        onFxThread(service.supply(s -> s.cloneProject(projectId, name, dayOffset, withActivities)),
+                created -> {
+                    if (onProjectCloned != null) {
+                        onProjectCloned.run();
+                    }
+                    closeStage(event);
+                },
+                e -> {
+                    if (e instanceof IllegalStateException || e instanceof IllegalArgumentException) {
+                        showAlert(Alert.AlertType.ERROR, "Errore Copia Progetto", e.getMessage());
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la copia del progetto: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
+    }
+}
@@ -9,6 +9,7 @@ import com.unina.biogarden.models.activity.Activity;
 import com.unina.biogarden.models.activity.HarvestingActivity;
 import com.unina.biogarden.models.activity.IrrigationActivity;
 import com.unina.biogarden.models.activity.SeedingActivity;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import com.unina.biogarden.service.UserService;
 import com.unina.biogarden.utils.Utils;
@@ -52,7 +53,7 @@ public class CreateActivityFormController extends AbstractForm {
 
     private Colture currentCultivation;
     private Runnable onActivityCreated;
-    private final ProjectService projectService = new ProjectService();
+    private final AsyncService<ProjectService> projectService = new AsyncService<>(new ProjectService());
     private final UserService userService = new UserService();
 
     /**
@@ -212,12 +213,20 @@ public class CreateActivityFormController extends AbstractForm {
             }
 
             if (newActivity != null) {
-                projectService.addActivityToColture(currentCultivation, newActivity);
-                Utils.showAlert(Alert.AlertType.INFORMATION, "Successo", "Attività creata e aggiunta con successo.");
-                if (onActivityCreated != null) {
-                    onActivityCreated.run();
-                }
-                closeStage(event);
+                Colture cultivation = currentCultivation;
+                Activity activity = newActivity;
+                Utils.onFxThread(projectService.run(service -> service.addActivityToColture(cultivation, activity)),
+                        done -> {
+                            Utils.showAlert(Alert.AlertType.INFORMATION, "Successo", "Attività creata e aggiunta con successo.");
+                            if (onActivityCreated != null) {
+                                onActivityCreated.run();
+                            }
+                            closeStage(event);
+                        },
+                        e -> {
+                            Utils.showAlert(Alert.AlertType.ERROR, "Errore Creazione Attività", "Errore: " + e.getMessage());
+                            e.printStackTrace();
+                        });
             }
 
         } catch (NumberFormatException e) {
@@ -4,12 +4,14 @@ import com.jfoenix.controls.JFXComboBox;
 import com.unina.biogarden.exceptions.ColtureAlreadyExists;
 import com.unina.biogarden.models.Crop;
 import com.unina.biogarden.models.Project;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
@@ -22,7 +24,7 @@ public class CreateColtureFormController extends AbstractForm {
     @FXML
     private JFXComboBox<Crop> cropComboBox;
 
-    private final ProjectService service = new ProjectService();
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
 
     private Project targetProject;
     private Runnable onColtureCreated;
@@ -33,13 +35,12 @@ public class CreateColtureFormController extends AbstractForm {
      */
     @FXML
     public void initialize() {
-        try {
-            cropComboBox.setItems(FXCollections.observableArrayList(service.getCrops()));
-
-        } catch (RuntimeException e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i dati: " + e.getMessage());
-            e.printStackTrace();
-        }
+        onFxThread(service.supply(ProjectService::getCrops),
+                crops -> cropComboBox.setItems(FXCollections.observableArrayList(crops)),
+                e -> {
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i dati: " + e.getMessage());
+                    e.printStackTrace();
+                });
     }
 
     /**
@@ -81,20 +82,22 @@ public class CreateColtureFormController extends AbstractForm {
             return;
         }
 
-        try {
-            service.addColture(targetProject, selectedCrop);
-
-            if (onColtureCreated != null) {
-                onColtureCreated.run();
-            }
-
-            closeStage(event);
-
-        } catch (RuntimeException e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Creazione Coltura", "Si è verificato un errore durante l'aggiunta della coltura: " + e.getMessage());
-            e.printStackTrace();
-        } catch (ColtureAlreadyExists e) {
-            showAlert(Alert.AlertType.ERROR, "Coltura Esistente", e.getMessage());
-        }
+        Project project = targetProject;
+        onFxThread(service.run(s -> s.addColture(project, selectedCrop)),
+                done -> {
+                    if (onColtureCreated != null) {
+                        onColtureCreated.run();
+                    }
+
+                    closeStage(event);
+                },
+                e -> {
+                    if (e instanceof ColtureAlreadyExists) {
+                        showAlert(Alert.AlertType.ERROR, "Coltura Esistente", e.getMessage());
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Errore Creazione Coltura", "Si è verificato un errore durante l'aggiunta della coltura: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
     }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.unina.biogarden.controller.form;
 
 import com.jfoenix.controls.JFXTextField;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
@@ -23,7 +25,7 @@ public class CreateCropFormController extends AbstractForm {
 
     private Runnable onCropCreated;
 
-    private final ProjectService service = new ProjectService();
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
 
     /**
      * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
@@ -76,17 +78,20 @@ public class CreateCropFormController extends AbstractForm {
             return;
         }
 
-        try {
-            service.createCrop(nomeColtura, tempoMaturazione);
-            if (onCropCreated != null) {
-                onCropCreated.run();
-            }
-            closeStage(event);
-        } catch (IllegalStateException e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Creazione Coltura", e.getMessage());
-        } catch (RuntimeException e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la creazione della coltura: " + e.getMessage());
-            e.printStackTrace();
-        }
+        onFxThread(service.run(s -> s.createCrop(nomeColtura, tempoMaturazione)),
+                done -> {
+                    if (onCropCreated != null) {
+                        onCropCreated.run();
+                    }
+                    closeStage(event);
+                },
+                e -> {
+                    if (e instanceof IllegalStateException) {
+                        showAlert(Alert.AlertType.ERROR, "Errore Creazione Coltura", e.getMessage());
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la creazione della coltura: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
     }
 }
\ No newline at end of file
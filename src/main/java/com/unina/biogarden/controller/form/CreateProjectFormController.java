@@ -4,6 +4,7 @@ import com.jfoenix.controls.JFXComboBox;
 import com.jfoenix.controls.JFXTextField;
 import com.unina.biogarden.dto.ProjectDTO;
 import com.unina.biogarden.models.Lot;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -14,6 +15,7 @@ import javafx.scene.control.DatePicker;
 
 import java.time.LocalDate;
 
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
@@ -35,7 +37,7 @@ public class CreateProjectFormController extends AbstractForm {
 
     private Runnable createRunnable;
 
-    private final ProjectService service = new ProjectService();
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
 
     /**
      * Imposta un callback {@code Runnable} da eseguire dopo che un nuovo progetto è stato creato con successo.
@@ -57,17 +59,19 @@ public class CreateProjectFormController extends AbstractForm {
 
     /**
      * Popola la ComboBox {@code lotComboBox} con la lista di tutti i lotti disponibili
-     * recuperati dal servizio {@code ProjectService}. In caso di errore durante il caricamento,
+     * recuperati in background dal servizio {@code ProjectService}. In caso di errore durante il caricamento,
      * mostra un messaggio di avviso all'utente.
      */
     private void populateLotComboBox() {
-        try {
-            ObservableList<Lot> observableLotti = FXCollections.observableArrayList(service.fetchAllLots());
-            lotComboBox.setItems(observableLotti);
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Caricamento Lotti", "Impossibile caricare i lotti dal database.");
-            e.printStackTrace();
-        }
+        onFxThread(service.supply(ProjectService::fetchAllLots),
+                lots -> {
+                    ObservableList<Lot> observableLotti = FXCollections.observableArrayList(lots);
+                    lotComboBox.setItems(observableLotti);
+                },
+                e -> {
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento Lotti", "Impossibile caricare i lotti dal database.");
+                    e.printStackTrace();
+                });
     }
 
     /**
@@ -95,25 +99,29 @@ public class CreateProjectFormController extends AbstractForm {
             return;
         }
 
-        try {
-            service.insert(new ProjectDTO(
-                    0,
-                    nome,
-                    dataInizio,
-                    dataFine,
-                    selectedLot.getId()
-            ));
-
-            if (createRunnable != null) {
-                createRunnable.run();
-            }
-
-            closeStage(event);
-        } catch (IllegalStateException e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Creazione Progetto", e.getMessage());
-        } catch (RuntimeException e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la creazione del progetto: " + e.getMessage());
-            e.printStackTrace();
-        }
+        ProjectDTO project = new ProjectDTO(
+                0,
+                nome,
+                dataInizio,
+                dataFine,
+                selectedLot.getId()
+        );
+
+        onFxThread(service.supply(s -> s.insert(project)),
+                created -> {
+                    if (createRunnable != null) {
+                        createRunnable.run();
+                    }
+
+                    closeStage(event);
+                },
+                e -> {
+                    if (e instanceof IllegalStateException) {
+                        showAlert(Alert.AlertType.ERROR, "Errore Creazione Progetto", e.getMessage());
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la creazione del progetto: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
     }
 }
\ No newline at end of file
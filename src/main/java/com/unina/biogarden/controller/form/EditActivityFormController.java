@@ -4,10 +4,12 @@ import com.jfoenix.controls.JFXComboBox;
 import com.jfoenix.controls.JFXTextField;
 import com.unina.biogarden.enumerations.ActivityStatus;
 import com.unina.biogarden.enumerations.ActivityType;
+import com.unina.biogarden.exceptions.ActivityConflictException;
 import com.unina.biogarden.models.Farmer;
 import com.unina.biogarden.models.activity.Activity;
 import com.unina.biogarden.models.activity.HarvestingActivity;
 import com.unina.biogarden.models.activity.SeedingActivity;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import com.unina.biogarden.service.UserService;
 import com.unina.biogarden.utils.Utils;
@@ -15,12 +17,22 @@ import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.unina.biogarden.utils.Utils.firstCapitalLetter;
 
@@ -28,6 +40,9 @@ import static com.unina.biogarden.utils.Utils.firstCapitalLetter;
  * Controller per il form di modifica di un'attività esistente.
  * Permette di aggiornare la data, il coltivatore, lo stato e i campi specifici
  * di un'attività (Semina, Irrigazione, Raccolta).
+ * Se al salvataggio l'attività risulta modificata nel frattempo da un altro utente, propone di unire
+ * le modifiche: quelle altrui sui campi non toccati nel form vengono mantenute, mentre per i campi
+ * modificati da entrambi prevalgono i valori inseriti nel form.
  * @author Il Tuo Nome
  */
 public class EditActivityFormController extends AbstractForm {
@@ -50,9 +65,64 @@ public class EditActivityFormController extends AbstractForm {
     private JFXTextField harvestActualQuantityField;
     private JFXTextField harvestUnitField;
 
+    /**
+     * Campi modificabili di un'attività, confrontati per unire modifiche concorrenti.
+     * I campi specifici di un tipo valgono {@code null} per le attività degli altri tipi.
+     */
+    private enum Field {
+        DATE("Data", Activity::getDate, (target, source) -> target.setDate(source.getDate())),
+        FARMER("Coltivatore", Activity::getFarmer, (target, source) -> {
+            target.setFarmerID(source.getFarmerID());
+            target.setFarmer(source.getFarmer());
+        }),
+        STATUS("Stato", Activity::getStatus, (target, source) -> target.setStatus(source.getStatus())),
+        SOWING_QUANTITY("Quantità Semi",
+                activity -> activity instanceof SeedingActivity sowing ? sowing.getQuantity() : null,
+                (target, source) -> ((SeedingActivity) target).setQuantity(((SeedingActivity) source).getQuantity())),
+        SOWING_UNIT("Unità di Misura",
+                activity -> activity instanceof SeedingActivity sowing ? sowing.getUnit() : null,
+                (target, source) -> ((SeedingActivity) target).setUnit(((SeedingActivity) source).getUnit())),
+        HARVEST_PLANNED_QUANTITY("Quantità Prevista",
+                activity -> activity instanceof HarvestingActivity harvest ? harvest.getPlannedQuantity() : null,
+                (target, source) -> ((HarvestingActivity) target).setPlannedQuantity(((HarvestingActivity) source).getPlannedQuantity())),
+        HARVEST_ACTUAL_QUANTITY("Quantità Effettiva",
+                activity -> activity instanceof HarvestingActivity harvest ? harvest.getActualQuantity() : null,
+                (target, source) -> ((HarvestingActivity) target).setActualQuantity(((HarvestingActivity) source).getActualQuantity())),
+        HARVEST_UNIT("Unità di Misura",
+                activity -> activity instanceof HarvestingActivity harvest ? harvest.getUnit() : null,
+                (target, source) -> ((HarvestingActivity) target).setUnit(((HarvestingActivity) source).getUnit()));
+
+        private final String label;
+        private final Function<Activity, Object> getter;
+        private final BiConsumer<Activity, Activity> copier;
+
+        Field(String label, Function<Activity, Object> getter, BiConsumer<Activity, Activity> copier) {
+            this.label = label;
+            this.getter = getter;
+            this.copier = copier;
+        }
+
+        /**
+         * Legge i valori di tutti i campi di un'attività.
+         * @param activity L'attività.
+         * @return I valori dei campi.
+         */
+        static Map<Field, Object> valuesOf(Activity activity) {
+            Map<Field, Object> values = new EnumMap<>(Field.class);
+            for (Field field : values()) {
+                values.put(field, field.getter.apply(activity));
+            }
+            return values;
+        }
+    }
+
     private Activity currentActivity;
+    /**
+     * Valori dell'attività al momento del caricamento nel form, base del confronto in caso di conflitto.
+     */
+    private Map<Field, Object> originalValues;
     private Runnable onActivityUpdated;
-    private final ProjectService projectService = new ProjectService();
+    private final AsyncService<ProjectService> projectService = new AsyncService<>(new ProjectService());
     private final UserService userService = new UserService();
 
     /**
@@ -78,6 +148,7 @@ public class EditActivityFormController extends AbstractForm {
      */
     public void setActivity(Activity activity) {
         this.currentActivity = activity;
+        this.originalValues = Field.valuesOf(activity);
 
         datePicker.setValue(currentActivity.getDate());
         activityTypeLabel.setText(firstCapitalLetter(currentActivity.getType().getDescription()));
@@ -215,6 +286,7 @@ public class EditActivityFormController extends AbstractForm {
 
         try {
             currentActivity.setDate(date);
+            currentActivity.setFarmerID(selectedFarmer.getId());
             currentActivity.setFarmer(selectedFarmer.getFullName());
             currentActivity.setStatus(selectedStatus);
 
@@ -244,14 +316,7 @@ public class EditActivityFormController extends AbstractForm {
                     break;
             }
 
-            projectService.updateActivity(currentActivity);
-
-            Utils.showAlert(Alert.AlertType.INFORMATION, "Successo", "Attività modificata con successo.");
-            if (onActivityUpdated != null) {
-                onActivityUpdated.run();
-            }
-            closeStage(event);
-
+            save(event);
         } catch (NumberFormatException e) {
             Utils.showAlert(Alert.AlertType.ERROR, "Input Non Valido", "Per favore, inserisci valori numerici validi per le quantità (solo numeri interi).");
         } catch (RuntimeException e) {
@@ -260,4 +325,133 @@ public class EditActivityFormController extends AbstractForm {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Salva l'attività corrente tramite il servizio.
+     * Se l'attività è stata modificata nel frattempo da un altro utente, propone l'unione delle modifiche.
+     * @param event L'evento di azione del salvataggio, usato per chiudere il form.
+     */
+    private void save(ActionEvent event) {
+        Activity activity = currentActivity;
+        Utils.onFxThread(projectService.run(service -> service.updateActivity(activity)),
+                done -> {
+                    Utils.showAlert(Alert.AlertType.INFORMATION, "Successo", "Attività modificata con successo.");
+                    if (onActivityUpdated != null) {
+                        onActivityUpdated.run();
+                    }
+                    closeStage(event);
+                },
+                e -> {
+                    if (e instanceof ActivityConflictException conflict) {
+                        resolveConflict(event, conflict.getActivityId());
+                        return;
+                    }
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Salvataggio", "Si è verificato un errore durante il salvataggio dell'attività: " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    /**
+     * Gestisce un salvataggio rifiutato perché l'attività è stata modificata da un altro utente:
+     * rilegge l'attività e propone all'utente come procedere.
+     * @param event L'evento di azione del salvataggio.
+     * @param activityId L'ID dell'attività in conflitto.
+     */
+    private void resolveConflict(ActionEvent event, int activityId) {
+        Utils.onFxThread(projectService.supply(service -> service.fetchActivity(activityId)),
+                latest -> {
+                    if (latest == null) {
+                        Utils.showAlert(Alert.AlertType.WARNING, "Attività Eliminata", "L'attività è stata eliminata da un altro utente.");
+                        if (onActivityUpdated != null) {
+                            onActivityUpdated.run();
+                        }
+                        closeStage(event);
+                        return;
+                    }
+                    showMergePrompt(event, latest);
+                },
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile rileggere l'attività: " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    /**
+     * Mostra le differenze tra le modifiche dell'utente e quelle salvate nel frattempo da altri, e chiede come procedere:
+     * <ul>
+     *     <li>unire e salvare: le modifiche altrui ai campi non toccati nel form vengono mantenute,
+     *     per i campi modificati da entrambi prevale il valore del form;</li>
+     *     <li>usare la versione attuale: le modifiche del form vengono scartate e il form mostra l'attività aggiornata;</li>
+     *     <li>annullare: il form resta aperto con le modifiche dell'utente, senza salvarle.</li>
+     * </ul>
+     * @param event L'evento di azione del salvataggio.
+     * @param latest L'attività come è ora salvata nel database.
+     */
+    private void showMergePrompt(ActionEvent event, Activity latest) {
+        Map<Field, Object> mine = Field.valuesOf(currentActivity);
+        Map<Field, Object> theirs = Field.valuesOf(latest);
+
+        List<Field> changedByOthers = new ArrayList<>();
+        List<String> conflicts = new ArrayList<>();
+        for (Field field : Field.values()) {
+            Object original = originalValues.get(field);
+            if (Objects.equals(original, theirs.get(field))) {
+                continue;
+            }
+            if (Objects.equals(original, mine.get(field))) {
+                changedByOthers.add(field);
+            } else if (!Objects.equals(mine.get(field), theirs.get(field))) {
+                conflicts.add(field.label + ": tuo \"" + display(mine.get(field)) + "\", attuale \"" + display(theirs.get(field)) + "\"");
+            }
+        }
+
+        StringBuilder message = new StringBuilder("L'attività è stata modificata da un altro utente mentre la stavi modificando.");
+        if (!changedByOthers.isEmpty()) {
+            message.append("\n\nModifiche altrui che verranno mantenute: ")
+                    .append(changedByOthers.stream().map(field -> field.label).collect(Collectors.joining(", ")))
+                    .append('.');
+        }
+        if (!conflicts.isEmpty()) {
+            message.append("\n\nCampi modificati da entrambi, per cui verrà salvato il tuo valore:\n")
+                    .append(String.join("\n", conflicts));
+        }
+
+        ButtonType merge = new ButtonType("Unisci e Salva", ButtonBar.ButtonData.OK_DONE);
+        ButtonType reload = new ButtonType("Usa Versione Attuale", ButtonBar.ButtonData.OTHER);
+        Alert prompt = new Alert(Alert.AlertType.CONFIRMATION, message.toString(), merge, reload, ButtonType.CANCEL);
+        prompt.setTitle("Modifica Concorrente");
+        prompt.setHeaderText(null);
+
+        ButtonType choice = prompt.showAndWait().orElse(ButtonType.CANCEL);
+        if (choice == merge) {
+            for (Field field : changedByOthers) {
+                field.copier.accept(currentActivity, latest);
+            }
+            currentActivity.setVersion(latest.getVersion());
+            originalValues = theirs;
+            save(event);
+        } else if (choice == reload) {
+            for (Field field : Field.values()) {
+                if (!Objects.equals(mine.get(field), theirs.get(field))) {
+                    field.copier.accept(currentActivity, latest);
+                }
+            }
+            currentActivity.setVersion(latest.getVersion());
+            setActivity(currentActivity);
+            if (onActivityUpdated != null) {
+                onActivityUpdated.run();
+            }
+        }
+    }
+
+    /**
+     * Restituisce il testo con cui mostrare il valore di un campo nel prompt di unione.
+     * @param value Il valore del campo.
+     * @return Il testo da mostrare.
+     */
+    private static String display(Object value) {
+        if (value instanceof ActivityStatus status) {
+            return status.getLabel();
+        }
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,228 @@
+package com.unina.biogarden.controller.form;
+
+import com.jfoenix.controls.JFXButton;
+import com.jfoenix.controls.JFXComboBox;
+import com.jfoenix.controls.JFXTextField;
+import com.unina.biogarden.dto.activity.IrrigationScheduleDTO;
+import com.unina.biogarden.dto.activity.ScheduleSyncDTO;
+import com.unina.biogarden.models.Colture;
+import com.unina.biogarden.models.Farmer;
+import com.unina.biogarden.service.AsyncService;
+import com.unina.biogarden.service.ProjectService;
+import com.unina.biogarden.service.UserService;
+import com.unina.biogarden.utils.Utils;
+import javafx.collections.FXCollections;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.DatePicker;
+import javafx.util.StringConverter;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Controller per il form dei piani di irrigazione periodica di una coltivazione.
+ * Permette di creare un piano (un'irrigazione ogni N giorni tra due date, svolta da un coltivatore),
+ * di modificarne uno esistente o di eliminarlo. Le irrigazioni pianificate vengono generate dal servizio:
+ * modificando un piano vengono riallineate solo le irrigazioni future.
+ * @author Il Tuo Nome
+ */
+public class IrrigationScheduleFormController extends AbstractForm {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    @FXML
+    private JFXComboBox<IrrigationScheduleDTO> scheduleComboBox;
+    @FXML
+    private DatePicker startDatePicker;
+    @FXML
+    private DatePicker endDatePicker;
+    @FXML
+    private JFXTextField intervalField;
+    @FXML
+    private JFXComboBox<Farmer> farmerComboBox;
+    @FXML
+    private JFXButton deleteButton;
+
+    private Colture currentCultivation;
+    private Runnable onSchedulesChanged;
+    private final AsyncService<ProjectService> projectService = new AsyncService<>(new ProjectService());
+    private final UserService userService = new UserService();
+
+    /**
+     * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
+     * Popola la ComboBox dei coltivatori e compila il form con i valori del piano selezionato.
+     */
+    @FXML
+    public void initialize() {
+        try {
+            farmerComboBox.setItems(FXCollections.observableArrayList(userService.fetchAllFarmer()));
+        } catch (RuntimeException e) {
+            Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i coltivatori: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        intervalField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue.matches("\\d*")) {
+                intervalField.setText(newValue.replaceAll("[^\\d]", ""));
+            }
+        });
+
+        scheduleComboBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(IrrigationScheduleDTO schedule) {
+                return schedule == null ? "" : "Ogni " + schedule.intervalDays() + " giorni dal "
+                        + schedule.startDate().format(DATE_FORMAT) + " al " + schedule.endDate().format(DATE_FORMAT);
+            }
+
+            @Override
+            public IrrigationScheduleDTO fromString(String string) {
+                return null;
+            }
+        });
+        scheduleComboBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> showSchedule(newVal));
+        deleteButton.disableProperty().bind(scheduleComboBox.getSelectionModel().selectedItemProperty().isNull());
+
+        showSchedule(null);
+    }
+
+    /**
+     * Imposta la coltivazione di cui gestire i piani e ne carica i piani esistenti.
+     * @param cultivation La coltivazione corrente.
+     */
+    public void setCurrentCultivation(Colture cultivation) {
+        this.currentCultivation = cultivation;
+        Utils.onFxThread(projectService.supply(service -> service.fetchIrrigationSchedules(cultivation)),
+                schedules -> scheduleComboBox.setItems(FXCollections.observableArrayList(schedules)),
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare i piani di irrigazione: " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    /**
+     * Imposta un callback {@code Runnable} da eseguire dopo che le irrigazioni della coltivazione sono cambiate.
+     * @param onSchedulesChanged Un {@code Runnable} che verrà eseguito.
+     */
+    public void setOnSchedulesChanged(Runnable onSchedulesChanged) {
+        this.onSchedulesChanged = onSchedulesChanged;
+    }
+
+    /**
+     * Compila il form con i valori di un piano, oppure con i valori predefiniti per un nuovo piano.
+     * @param schedule Il piano selezionato, o {@code null} per un nuovo piano.
+     */
+    private void showSchedule(IrrigationScheduleDTO schedule) {
+        if (schedule == null) {
+            startDatePicker.setValue(LocalDate.now());
+            endDatePicker.setValue(LocalDate.now().plusMonths(3));
+            intervalField.setText("7");
+            farmerComboBox.getSelectionModel().clearSelection();
+            return;
+        }
+        startDatePicker.setValue(schedule.startDate());
+        endDatePicker.setValue(schedule.endDate());
+        intervalField.setText(String.valueOf(schedule.intervalDays()));
+        farmerComboBox.getItems().stream()
+                .filter(farmer -> farmer.getId() == schedule.farmerId())
+                .findFirst()
+                .ifPresentOrElse(farmerComboBox.getSelectionModel()::select, farmerComboBox.getSelectionModel()::clearSelection);
+    }
+
+    /**
+     * Deseleziona il piano corrente, così che il salvataggio crei un nuovo piano.
+     * @param event L'evento di azione che ha scatenato la chiamata, solitamente dal bottone "Nuovo Piano".
+     */
+    @FXML
+    private void handleNew(ActionEvent event) {
+        scheduleComboBox.getSelectionModel().clearSelection();
+    }
+
+    /**
+     * Gestisce il salvataggio del piano.
+     * Valida gli input del form e invia al servizio il piano selezionato (modificato) o un nuovo piano,
+     * mostrando quante irrigazioni sono state aggiunte, rimosse e riassegnate.
+     * @param event L'evento di azione che ha scatenato la chiamata, solitamente dal bottone "Salva".
+     */
+    @FXML
+    @Override
+    protected void handleCreate(ActionEvent event) {
+        LocalDate start = startDatePicker.getValue();
+        LocalDate end = endDatePicker.getValue();
+        Farmer farmer = farmerComboBox.getSelectionModel().getSelectedItem();
+        String interval = intervalField.getText();
+
+        if (start == null || end == null || farmer == null || interval == null || interval.isBlank()) {
+            Utils.showAlert(Alert.AlertType.WARNING, "Campi Mancanti", "Per favore, compila tutti i campi del piano.");
+            return;
+        }
+        if (currentCultivation == null) {
+            Utils.showAlert(Alert.AlertType.ERROR, "Errore Interno", "Coltivazione di riferimento non trovata per il piano.");
+            return;
+        }
+
+        int intervalDays;
+        try {
+            intervalDays = Integer.parseInt(interval);
+        } catch (NumberFormatException e) {
+            Utils.showAlert(Alert.AlertType.ERROR, "Errore di Formato", "L'intervallo deve essere un numero intero di giorni.");
+            return;
+        }
+
+        IrrigationScheduleDTO selected = scheduleComboBox.getSelectionModel().getSelectedItem();
+        IrrigationScheduleDTO schedule = new IrrigationScheduleDTO(selected == null ? 0 : selected.id(),
+                currentCultivation.getId(), farmer.getId(), start, end, intervalDays);
+
+        Utils.onFxThread(projectService.supply(service -> service.saveIrrigationSchedule(schedule)),
+                result -> {
+                    Utils.showAlert(Alert.AlertType.INFORMATION, "Piano Salvato", describe(result));
+                    if (onSchedulesChanged != null) {
+                        onSchedulesChanged.run();
+                    }
+                    closeStage(event);
+                },
+                e -> {
+                    if (e instanceof IllegalArgumentException || e instanceof IllegalStateException) {
+                        Utils.showAlert(Alert.AlertType.WARNING, "Piano Non Valido", e.getMessage());
+                    } else {
+                        Utils.showAlert(Alert.AlertType.ERROR, "Errore Salvataggio", "Si è verificato un errore durante il salvataggio del piano: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                });
+    }
+
+    /**
+     * Gestisce l'eliminazione del piano selezionato e delle sue irrigazioni future ancora pianificate.
+     * @param event L'evento di azione che ha scatenato la chiamata, solitamente dal bottone "Elimina Piano".
+     */
+    @FXML
+    private void handleDelete(ActionEvent event) {
+        IrrigationScheduleDTO selected = scheduleComboBox.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        Utils.onFxThread(projectService.supply(service -> service.deleteIrrigationSchedule(selected)),
+                result -> {
+                    Utils.showAlert(Alert.AlertType.INFORMATION, "Piano Eliminato", "Irrigazioni future rimosse: " + result.removed() + ".");
+                    if (onSchedulesChanged != null) {
+                        onSchedulesChanged.run();
+                    }
+                    closeStage(event);
+                },
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Eliminazione", "Impossibile eliminare il piano: " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    /**
+     * Descrive l'esito della generazione delle irrigazioni di un piano.
+     * @param result L'esito restituito dal servizio.
+     * @return Il messaggio da mostrare all'utente.
+     */
+    private static String describe(ScheduleSyncDTO result) {
+        return "Irrigazioni aggiunte: " + result.added() + ", rimosse: " + result.removed()
+                + ", riassegnate: " + result.reassigned() + ".";
+    }
+}
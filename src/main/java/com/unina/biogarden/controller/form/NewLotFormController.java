@@ -1,11 +1,13 @@
 package com.unina.biogarden.controller.form;
 
 import com.jfoenix.controls.JFXTextField;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
@@ -24,7 +26,7 @@ public class NewLotFormController extends AbstractForm {
 
     private Runnable createRunnable;
 
-    private final ProjectService service = new ProjectService();
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
 
     /**
      * Imposta un callback {@code Runnable} da eseguire dopo che un nuovo lotto è stato creato con successo.
@@ -60,19 +62,21 @@ public class NewLotFormController extends AbstractForm {
                 return;
             }
 
-            service.createLot(nome, area);
-
-            try {
-                if (createRunnable != null) {
-                    createRunnable.run();
-                }
-                closeStage(event);
-            } catch (IllegalStateException e) {
-                showAlert(Alert.AlertType.ERROR, "Errore Creazione Lotto", e.getMessage());
-            } catch (RuntimeException e) {
-                showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la creazione del progetto: " + e.getMessage());
-                e.printStackTrace();
-            }
+            onFxThread(service.run(s -> s.createLot(nome, area)),
+                    done -> {
+                        if (createRunnable != null) {
+                            createRunnable.run();
+                        }
+                        closeStage(event);
+                    },
+                    e -> {
+                        if (e instanceof IllegalStateException) {
+                            showAlert(Alert.AlertType.ERROR, "Errore Creazione Lotto", e.getMessage());
+                        } else {
+                            showAlert(Alert.AlertType.ERROR, "Errore Database", "Si è verificato un errore durante la creazione del lotto: " + e.getMessage());
+                            e.printStackTrace();
+                        }
+                    });
 
         } catch (NumberFormatException e) {
             showAlert(Alert.AlertType.ERROR, "Errore", "L'area deve essere un numero valido.");
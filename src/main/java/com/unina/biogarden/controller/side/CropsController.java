@@ -6,6 +6,7 @@ import com.jfoenix.controls.RecursiveTreeItem;
 import com.jfoenix.controls.datamodels.treetable.RecursiveTreeObject;
 import com.unina.biogarden.controller.form.CreateCropFormController;
 import com.unina.biogarden.models.Crop;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -21,6 +22,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
@@ -39,7 +41,7 @@ public class CropsController {
     @FXML
     private JFXTreeTableColumn<Crop, String> projectsCol;
 
-    private final ProjectService service = new ProjectService();
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
 
     /**
      * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
@@ -65,18 +67,21 @@ public class CropsController {
 
     /**
      * Recupera i dati delle colture dal servizio e popola la tabella {@code cropsTable}.
+     * Le colture vengono lette in background e la tabella viene aggiornata al termine.
      * In caso di errore durante il caricamento, mostra un messaggio di avviso.
      */
     private void fetchAndPopulateCrops() {
-        try {
-            ObservableList<Crop> data = FXCollections.observableArrayList(service.getCrops());
-            TreeItem<Crop> root = new RecursiveTreeItem<>(data, RecursiveTreeObject::getChildren);
-            cropsTable.setRoot(root);
-            cropsTable.setShowRoot(false);
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Caricamento Colture", "Impossibile caricare le colture dal database.");
-            e.printStackTrace();
-        }
+        onFxThread(service.supply(ProjectService::getCrops),
+                crops -> {
+                    ObservableList<Crop> data = FXCollections.observableArrayList(crops);
+                    TreeItem<Crop> root = new RecursiveTreeItem<>(data, RecursiveTreeObject::getChildren);
+                    cropsTable.setRoot(root);
+                    cropsTable.setShowRoot(false);
+                },
+                e -> {
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento Colture", "Impossibile caricare le colture dal database.");
+                    e.printStackTrace();
+                });
     }
 
     /**
@@ -1,16 +1,23 @@
 package com.unina.biogarden.controller.side;
 
 import com.jfoenix.controls.JFXButton;
+import com.unina.biogarden.controller.form.BulkEditActivityFormController;
 import com.unina.biogarden.controller.form.CreateActivityFormController;
 import com.unina.biogarden.controller.form.EditActivityFormController;
+import com.unina.biogarden.controller.form.IrrigationScheduleFormController;
+import com.unina.biogarden.database.DatabaseNotifications.Table;
 import com.unina.biogarden.models.Colture;
 import com.unina.biogarden.models.activity.Activity;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import com.unina.biogarden.utils.Utils;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -21,17 +28,22 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Collection;
+import java.util.List;
 
 import static com.unina.biogarden.utils.Utils.firstCapitalLetter;
+import static com.unina.biogarden.utils.Utils.onFxThread;
 
 /**
  * Controller per la gestione e visualizzazione delle attività associate a una specifica coltivazione.
  * Permette di visualizzare un elenco di attività, aggiungerne di nuove, modificarne ed eliminarne di esistenti.
+ * Più attività possono essere selezionate insieme per modificarne in blocco stato, data o coltivatore,
+ * e le irrigazioni ricorrenti possono essere generate da un piano di irrigazione periodica.
  * @author Il Tuo Nome
  */
 public class CultivationActivitiesController {
 
+    private static final int PAGE_SIZE = 100;
+
     @FXML
     private Label cultivationNameLabel;
     @FXML
@@ -50,7 +62,11 @@ public class CultivationActivitiesController {
     private TableColumn<Activity, Void> colActions;
 
     private Colture currentCultivation;
-    private ProjectService projectService = new ProjectService();
+    private final AsyncService<ProjectService> projectService = new AsyncService<>(new ProjectService());
+    private Activity lastLoaded;
+    private boolean hasMore;
+    private boolean loading;
+    private int loadGeneration = 0;
 
     /**
      * Inizializza il controller dopo che il FXML è stato caricato.
@@ -75,6 +91,7 @@ public class CultivationActivitiesController {
         colDetails.setCellValueFactory(cellData -> new SimpleObjectProperty<>(cellData.getValue().getDetails()));
         colGrower.setCellValueFactory(cellData -> new SimpleObjectProperty<>(cellData.getValue().getFarmer()));
         colStatus.setCellValueFactory(cellData -> new SimpleObjectProperty<>(cellData.getValue().getStatus().getLabel()));
+        activitiesTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         colActions.setCellFactory(param -> new TableCell<Activity, Void>() {
             private final JFXButton editButton = new JFXButton("Modifica");
             private final JFXButton deleteButton = new JFXButton("Elimina");
@@ -93,7 +110,6 @@ public class CultivationActivitiesController {
                 deleteButton.setOnAction(event -> {
                     Activity activity = getTableView().getItems().get(getIndex());
                     handleDeleteActivity(activity);
-                    loadActivities();
                 });
             }
 
@@ -107,6 +123,32 @@ public class CultivationActivitiesController {
                 }
             }
         });
+
+        // La scrollbar della tabella esiste solo dopo la creazione dello skin
+        activitiesTable.skinProperty().addListener((obs, oldSkin, newSkin) -> Platform.runLater(this::bindScrollPaging));
+
+        // Le attività modificate da altri client per questa coltivazione ricaricano la tabella
+        Utils.onDatabaseChange(activitiesTable, change -> {
+            if (currentCultivation != null && change.touches(Table.ATTIVITA, currentCultivation.getId())) {
+                loadActivities();
+            }
+        });
+    }
+
+    /**
+     * Collega la scrollbar verticale della tabella al caricamento della pagina successiva,
+     * così che le attività vengano richieste al database solo quando l'utente arriva in fondo all'elenco.
+     */
+    private void bindScrollPaging() {
+        for (Node node : activitiesTable.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                scrollBar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax()) {
+                        loadNextPage();
+                    }
+                });
+            }
+        }
     }
 
     /**
@@ -122,13 +164,58 @@ public class CultivationActivitiesController {
 
     /**
      * Carica le attività della coltivazione corrente nella tabella.
-     * Pulisce la tabella e poi la ripopola con i dati più recenti dal servizio.
+     * Pulisce la tabella e poi la ripopola con la prima pagina di attività; le pagine successive
+     * vengono caricate man mano che l'utente scorre la tabella.
      */
     private void loadActivities() {
         activitiesTable.setItems(FXCollections.observableArrayList());
-        if (currentCultivation != null) {
-            Collection<Activity> activities = projectService.fetchActivities(currentCultivation.getId());
-            activitiesTable.setItems(FXCollections.observableArrayList(activities));
+        lastLoaded = null;
+        hasMore = currentCultivation != null;
+        loading = false;
+        loadGeneration++;
+        loadNextPage();
+    }
+
+    /**
+     * Aggiunge alla tabella la pagina di attività successiva all'ultima già caricata, se presente.
+     * La pagina viene letta in background; finché non arriva non ne vengono richieste altre.
+     */
+    private void loadNextPage() {
+        if (!hasMore || loading) {
+            return;
+        }
+        loading = true;
+        int generation = loadGeneration;
+        int coltureId = currentCultivation.getId();
+        Activity after = lastLoaded;
+
+        onFxThread(projectService.supply(service -> service.fetchActivitiesPage(coltureId, after, PAGE_SIZE)),
+                page -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    loading = false;
+                    appendPage(page);
+                },
+                e -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    loading = false;
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Caricamento", "Impossibile caricare le attività: " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    /**
+     * Aggiunge una pagina di attività alla tabella e aggiorna lo stato della paginazione.
+     * @param page La pagina di attività ricevuta.
+     */
+    private void appendPage(List<Activity> page) {
+        activitiesTable.getItems().addAll(page);
+        hasMore = page.size() == PAGE_SIZE;
+        if (!page.isEmpty()) {
+            lastLoaded = page.get(page.size() - 1);
         }
     }
 
@@ -188,12 +275,80 @@ public class CultivationActivitiesController {
         }
     }
 
+    /**
+     * Gestisce il click sul pulsante "Modifica in Blocco".
+     * Apre un form modale che applica la stessa modifica a tutte le attività selezionate nella tabella
+     * (o, se nessuna è selezionata, alle attività della coltivazione che corrispondono ai filtri scelti)
+     * e imposta un callback per ricaricare le attività dopo la modifica.
+     */
+    @FXML
+    private void handleBulkEdit() {
+        if (currentCultivation == null) {
+            return;
+        }
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/unina/biogarden/form/bulk-activity-form.fxml"));
+            Parent root = loader.load();
+            BulkEditActivityFormController controller = loader.getController();
+
+            controller.setTarget(currentCultivation, List.copyOf(activitiesTable.getSelectionModel().getSelectedItems()));
+            controller.setOnActivitiesUpdated(this::loadActivities);
+
+            Stage dialogStage = new Stage();
+            dialogStage.setTitle("Modifica Attività in Blocco");
+            dialogStage.initModality(Modality.WINDOW_MODAL);
+            dialogStage.initOwner(activitiesTable.getScene().getWindow());
+            dialogStage.setScene(new Scene(root));
+            dialogStage.showAndWait();
+
+        } catch (IOException e) {
+            Utils.showAlert(Alert.AlertType.ERROR, "Errore caricamento form", "Impossibile caricare il form di modifica in blocco.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gestisce il click sul pulsante "Irrigazione Periodica".
+     * Apre un form modale per creare, modificare o eliminare i piani di irrigazione della coltivazione
+     * e imposta un callback per ricaricare le attività dopo la generazione delle irrigazioni.
+     */
+    @FXML
+    private void handleIrrigationSchedule() {
+        if (currentCultivation == null) {
+            return;
+        }
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/unina/biogarden/form/irrigation-schedule-form.fxml"));
+            Parent root = loader.load();
+            IrrigationScheduleFormController controller = loader.getController();
+
+            controller.setCurrentCultivation(currentCultivation);
+            controller.setOnSchedulesChanged(this::loadActivities);
+
+            Stage dialogStage = new Stage();
+            dialogStage.setTitle("Irrigazione Periodica");
+            dialogStage.initModality(Modality.WINDOW_MODAL);
+            dialogStage.initOwner(activitiesTable.getScene().getWindow());
+            dialogStage.setScene(new Scene(root));
+            dialogStage.showAndWait();
+
+        } catch (IOException e) {
+            Utils.showAlert(Alert.AlertType.ERROR, "Errore caricamento form", "Impossibile caricare il form dei piani di irrigazione.");
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Gestisce l'eliminazione di un'attività selezionata.
-     * Chiama il servizio per eliminare l'attività dal database.
+     * Chiama il servizio per eliminare l'attività dal database e, al termine, ricarica le attività.
      * @param activity L'attività da eliminare.
      */
     private void handleDeleteActivity(Activity activity) {
-        projectService.deleteActivity(activity);
+        onFxThread(projectService.run(service -> service.deleteActivity(activity)),
+                done -> loadActivities(),
+                e -> {
+                    Utils.showAlert(Alert.AlertType.ERROR, "Errore Eliminazione", "Impossibile eliminare l'attività: " + e.getMessage());
+                    e.printStackTrace();
+                });
     }
 }
\ No newline at end of file
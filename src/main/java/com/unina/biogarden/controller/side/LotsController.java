@@ -5,8 +5,10 @@ import com.jfoenix.controls.JFXTreeTableView;
 import com.jfoenix.controls.RecursiveTreeItem;
 import com.jfoenix.controls.datamodels.treetable.RecursiveTreeObject;
 import com.unina.biogarden.controller.form.NewLotFormController;
+import com.unina.biogarden.database.DatabaseNotifications.Table;
 import com.unina.biogarden.models.Lot;
 import com.unina.biogarden.models.Project;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -26,6 +28,8 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.util.Collection;
 
+import static com.unina.biogarden.utils.Utils.onDatabaseChange;
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
@@ -35,6 +39,8 @@ import static com.unina.biogarden.utils.Utils.showAlert;
  * @author Il Tuo Nome
  */
 public class LotsController {
+    private static final int CHUNK_SIZE = 100;
+
     @FXML
     private VBox lotsContainer;
 
@@ -52,11 +58,16 @@ public class LotsController {
     @FXML
     private JFXTreeTableColumn<Project, String> statusCol;
     private Pane selectedLotPane = null;
+    private int loadGeneration = 0;
+    private Lot displayedLot = null;
+
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
 
     /**
      * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
      * Configura la tabella dei progetti, inizializza le factory delle celle e carica i lotti nella sidebar.
      * Inizialmente, la sezione dei progetti per lotto è nascosta.
+     * Le modifiche fatte da altri client ricaricano la sidebar (lotti) o la tabella del lotto visualizzato (progetti).
      */
     @FXML
     public void initialize() {
@@ -67,6 +78,14 @@ public class LotsController {
 
         projectsPerLotSection.setVisible(false);
         projectsPerLotSection.setManaged(false);
+
+        onDatabaseChange(lotsContainer, change -> {
+            if (change.touches(Table.LOTTO)) {
+                loadLotsIntoSidebar();
+            } else if (displayedLot != null && change.touches(Table.PROGETTO, displayedLot.getId())) {
+                loadProjectsForLot(displayedLot);
+            }
+        });
     }
 
     /**
@@ -81,39 +100,66 @@ public class LotsController {
             return;
         }
 
-        try {
-            ProjectService service = new ProjectService();
-            ObservableList<Project> data = FXCollections.observableArrayList(service.fetchProjectByLot(lot));
-
-            TreeItem<Project> projectRoot = new RecursiveTreeItem<>(data, RecursiveTreeObject::getChildren);
-            projectsPerLotTable.setRoot(projectRoot);
-            projectsPerLotTable.setShowRoot(false);
-
-            projectsPerLotSection.setVisible(true);
-            projectsPerLotSection.setManaged(true);
-
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Errore Caricamento Progetti", "Impossibile caricare i progetti per il lotto selezionato.");
-            e.printStackTrace();
-            projectsPerLotSection.setVisible(false);
-            projectsPerLotSection.setManaged(false);
-        }
+        displayedLot = lot;
+        onFxThread(service.supply(s -> s.fetchProjectByLot(lot)),
+                projects -> {
+                    if (displayedLot != lot) {
+                        return;
+                    }
+                    ObservableList<Project> data = FXCollections.observableArrayList(projects);
+
+                    TreeItem<Project> projectRoot = new RecursiveTreeItem<>(data, RecursiveTreeObject::getChildren);
+                    projectsPerLotTable.setRoot(projectRoot);
+                    projectsPerLotTable.setShowRoot(false);
+
+                    projectsPerLotSection.setVisible(true);
+                    projectsPerLotSection.setManaged(true);
+                },
+                e -> {
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento Progetti", "Impossibile caricare i progetti per il lotto selezionato.");
+                    e.printStackTrace();
+                    projectsPerLotSection.setVisible(false);
+                    projectsPerLotSection.setManaged(false);
+                });
     }
 
     /**
      * Carica tutti i lotti disponibili dal servizio e li aggiunge dinamicamente alla sidebar {@code lotsContainer}.
      * Ogni lotto viene visualizzato come un pannello cliccabile. Il primo lotto viene selezionato di default.
+     * I lotti vengono letti a blocchi in background e aggiunti alla sidebar man mano che arrivano;
+     * un nuovo caricamento scarta i blocchi ancora in arrivo da quello precedente.
      */
     private void loadLotsIntoSidebar() {
         lotsContainer.getChildren().clear();
         selectedLotPane = null;
+        int generation = ++loadGeneration;
+
+        onFxThread(service.run(s -> s.streamLots(CHUNK_SIZE, chunk -> Platform.runLater(() -> appendLots(generation, chunk)))),
+                done -> {
+                    if (generation == loadGeneration && lotsContainer.getChildren().isEmpty()) {
+                        projectsPerLotSection.setVisible(false);
+                        projectsPerLotSection.setManaged(false);
+                    }
+                },
+                e -> {
+                    e.printStackTrace();
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento Lotti", "Impossibile caricare i lotti.");
+                });
+    }
 
-        ProjectService service = new ProjectService();
-
-        Collection<Lot> lots = service.fetchAllLots();
+    /**
+     * Aggiunge alla sidebar un gruppo di lotti. Se la sidebar era vuota, il primo lotto aggiunto viene selezionato.
+     * @param generation Il caricamento a cui appartiene il gruppo.
+     * @param lots I lotti da aggiungere.
+     */
+    private void appendLots(int generation, Collection<Lot> lots) {
+        if (generation != loadGeneration) {
+            return;
+        }
 
         Lot firstLot = null;
         Pane firstLotPane = null;
+        boolean selectFirst = lotsContainer.getChildren().isEmpty();
 
         for (Lot lot : lots) {
             Pane box;
@@ -142,14 +188,10 @@ public class LotsController {
             }
         }
 
-        if (firstLot != null) {
+        if (selectFirst && firstLot != null) {
             firstLotPane.getStyleClass().add("selected");
             selectedLotPane = firstLotPane;
             loadProjectsForLot(firstLot);
-
-        } else {
-            projectsPerLotSection.setVisible(false);
-            projectsPerLotSection.setManaged(false);
         }
     }
 
@@ -1,11 +1,16 @@
 package com.unina.biogarden.controller.side;
 
 import com.jfoenix.controls.JFXButton;
+import com.unina.biogarden.controller.form.CloneProjectFormController;
 import com.unina.biogarden.controller.form.CreateColtureFormController;
 import com.unina.biogarden.controller.form.CreateProjectFormController;
+import com.unina.biogarden.database.DatabaseNotifications.Table;
 import com.unina.biogarden.models.Colture;
 import com.unina.biogarden.models.Project;
+import com.unina.biogarden.service.ActivityCsvImport;
+import com.unina.biogarden.service.AsyncService;
 import com.unina.biogarden.service.ProjectService;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -13,47 +18,91 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
+import static com.unina.biogarden.utils.Utils.onDatabaseChange;
+import static com.unina.biogarden.utils.Utils.onFxThread;
 import static com.unina.biogarden.utils.Utils.showAlert;
 
 /**
  * Controller per la gestione e visualizzazione dei progetti e delle coltivazioni associate.
- * Permette di visualizzare i progetti, aggiungere nuove coltivazioni a un progetto
- * e visualizzare le attività di una specifica coltivazione.
+ * Permette di visualizzare i progetti, aggiungere nuove coltivazioni a un progetto, copiare un progetto per una nuova stagione,
+ * visualizzare le attività di una specifica coltivazione e importare attività in blocco da un file CSV.
  * @author Il Tuo Nome
  */
 public class ProjectsController {
 
+    private static final int CHUNK_SIZE = 50;
+
     @FXML
     private VBox mainActivitiesContainer;
+    @FXML
+    private JFXButton importButton;
+    @FXML
+    private ProgressBar importProgress;
+    @FXML
+    private Label importStatus;
 
-    private final ProjectService service = new ProjectService();
+    private final AsyncService<ProjectService> service = new AsyncService<>(new ProjectService());
+    private int loadGeneration = 0;
 
     /**
      * Inizializza il controller dopo che il suo FXML è stato completamente caricato.
-     * Carica e visualizza i progetti esistenti nella schermata principale.
+     * Carica e visualizza i progetti esistenti nella schermata principale e li ricarica
+     * quando un altro client modifica progetti, coltivazioni, colture o lotti.
      */
     @FXML
     public void initialize() {
         loadActivities();
+        onDatabaseChange(mainActivitiesContainer, change -> {
+            if (change.touches(Table.PROGETTO) || change.touches(Table.COLTIVAZIONE)
+                    || change.touches(Table.COLTURA) || change.touches(Table.LOTTO)) {
+                loadActivities();
+            }
+        });
     }
 
     /**
-     * Carica tutti i progetti e le rispettive coltivazioni dal servizio
+     * Carica i progetti dell'utente della sessione e le rispettive coltivazioni dal servizio
      * e li visualizza dinamicamente nel {@code mainActivitiesContainer}.
      * Ogni progetto è rappresentato da un blocco che include le sue coltivazioni.
+     * I progetti vengono letti a blocchi in background e aggiunti alla schermata man mano che arrivano;
+     * un nuovo caricamento scarta i blocchi ancora in arrivo da quello precedente.
      */
     private void loadActivities() {
         mainActivitiesContainer.getChildren().clear();
+        int generation = ++loadGeneration;
 
-        for (Project project : service.getProjects()) {
-            project.setColtures(service.getColtures(project.getId()));
-            Node projectBlock = project.buildProjectPane(this::handleAddCultivation, this::handleCultivationClick);
+        onFxThread(service.run(s -> s.streamProjects(CHUNK_SIZE,
+                        chunk -> Platform.runLater(() -> appendProjects(generation, chunk)))),
+                done -> {
+                },
+                e -> {
+                    e.printStackTrace();
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento Progetti", "Impossibile caricare i progetti.");
+                });
+    }
+
+    /**
+     * Aggiunge alla schermata i blocchi di un gruppo di progetti già completi delle coltivazioni.
+     * @param generation Il caricamento a cui appartiene il gruppo.
+     * @param projects I progetti da aggiungere.
+     */
+    private void appendProjects(int generation, List<Project> projects) {
+        if (generation != loadGeneration) {
+            return;
+        }
+        for (Project project : projects) {
+            Node projectBlock = project.buildProjectPane(this::handleAddCultivation, this::handleCloneProject, this::handleCultivationClick);
             mainActivitiesContainer.getChildren().add(projectBlock);
         }
     }
@@ -93,8 +142,20 @@ public class ProjectsController {
     public void handleAddCultivation(ActionEvent actionEvent) {
         JFXButton clickedButton = (JFXButton) actionEvent.getSource();
         int projectId = (Integer) clickedButton.getUserData();
-        Project projectToAddTo = service.fetchProjectById(projectId);
 
+        onFxThread(service.supply(s -> s.fetchProjectById(projectId)),
+                this::openColtureForm,
+                e -> {
+                    e.printStackTrace();
+                    showAlert(Alert.AlertType.ERROR, "Errore Caricamento Progetto", "Impossibile caricare il progetto selezionato.");
+                });
+    }
+
+    /**
+     * Apre il form modale per la creazione di una coltura nel progetto indicato.
+     * @param projectToAddTo Il progetto di destinazione.
+     */
+    private void openColtureForm(Project projectToAddTo) {
         if (projectToAddTo != null) {
             try {
                 FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/unina/biogarden/form/colture-form-view.fxml"));
@@ -118,6 +179,34 @@ public class ProjectsController {
         }
     }
 
+    /**
+     * Gestisce il click sul pulsante "Clona Progetto" di un progetto.
+     * Apre un form modale per copiare il progetto con le sue coltivazioni ed eventualmente le sue attività,
+     * impostando un callback per ricaricare i progetti dopo la copia.
+     * @param project Il progetto da copiare.
+     */
+    private void handleCloneProject(Project project) {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/unina/biogarden/form/clone-project-form.fxml"));
+            Parent root = loader.load();
+            CloneProjectFormController controller = loader.getController();
+
+            controller.setSourceProject(project);
+            controller.setOnProjectCloned(this::loadActivities);
+
+            Stage dialogStage = new Stage();
+            dialogStage.setTitle("Clona Progetto: " + project.nameProperty().get());
+            dialogStage.initModality(Modality.WINDOW_MODAL);
+            dialogStage.initOwner(mainActivitiesContainer.getScene().getWindow());
+            dialogStage.setScene(new Scene(root));
+            dialogStage.showAndWait();
+
+        } catch (IOException e) {
+            showAlert(Alert.AlertType.ERROR, "Errore Caricamento Form", "Impossibile caricare il form di copia del progetto.");
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Gestisce l'azione del bottone "Nuovo Progetto".
      * Apre un form modale per la creazione di un nuovo progetto.
@@ -143,4 +232,67 @@ public class ProjectsController {
             showAlert(Alert.AlertType.ERROR, "Errore Apertura Form", "Impossibile aprire il form di creazione progetto.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gestisce l'azione del bottone "Importa Attività".
+     * Chiede il file CSV da importare e avvia l'importazione in background, mostrandone l'avanzamento
+     * nell'intestazione. Al termine riepiloga le attività importate, duplicate e scartate e ricarica i progetti.
+     */
+    @FXML
+    private void handleImportActivitiesButton() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importa attività da CSV");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("File CSV", "*.csv"));
+        File file = chooser.showOpenDialog(mainActivitiesContainer.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        setImporting(true);
+        onFxThread(service.supply(s -> s.importActivities(file.toPath(), progress -> Platform.runLater(() -> {
+                    importProgress.setProgress(progress.fraction());
+                    importStatus.setText(progress.phase());
+                }))),
+                result -> {
+                    setImporting(false);
+                    showAlert(Alert.AlertType.INFORMATION, "Importazione Completata", describe(result));
+                    loadActivities();
+                },
+                e -> {
+                    setImporting(false);
+                    e.printStackTrace();
+                    showAlert(Alert.AlertType.ERROR, "Errore Importazione", "Impossibile importare le attività: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Mostra o nasconde l'avanzamento dell'importazione, disabilitando il bottone mentre è in corso.
+     * @param importing {@code true} se un'importazione è in corso.
+     */
+    private void setImporting(boolean importing) {
+        importButton.setDisable(importing);
+        importProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        importStatus.setText("");
+        for (Node node : List.of(importProgress, importStatus)) {
+            node.setVisible(importing);
+            node.setManaged(importing);
+        }
+    }
+
+    /**
+     * Compone il riepilogo di un'importazione.
+     * @param result L'esito dell'importazione.
+     * @return Il messaggio da mostrare all'utente.
+     */
+    private static String describe(ActivityCsvImport.ImportResult result) {
+        StringBuilder message = new StringBuilder()
+                .append("Righe lette: ").append(result.rows())
+                .append("\nAttività importate: ").append(result.imported())
+                .append("\nGià presenti: ").append(result.duplicates())
+                .append("\nScartate: ").append(result.rejected());
+        if (result.rejectFile() != null) {
+            message.append("\n\nLe righe scartate sono state salvate in:\n").append(result.rejectFile());
+        }
+        return message.toString();
+    }
+}
@@ -1,87 +1,236 @@
 package com.unina.biogarden.dao;
 
 import com.unina.biogarden.database.ConnectionManager;
+import com.unina.biogarden.dto.activity.ActivityBulkUpdateDTO;
 import com.unina.biogarden.dto.activity.ActivityDTO;
+import com.unina.biogarden.dto.activity.ActivityFilterDTO;
 import com.unina.biogarden.dto.activity.HarvestingActivityDTO;
 import com.unina.biogarden.dto.activity.IrrigationActivityDTO;
 import com.unina.biogarden.dto.activity.SeedingActivityDTO;
 import com.unina.biogarden.enumerations.ActivityStatus;
 import com.unina.biogarden.enumerations.ActivityType;
-import org.postgresql.util.PGobject;
+import com.unina.biogarden.exceptions.ActivityConflictException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 
-import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Data Access Object (DAO) per la gestione delle operazioni CRUD relative alle attività nel database.
  * Questa classe fornisce metodi per inserire, eliminare, recuperare e aggiornare le attività,
  * gestendo i diversi tipi di attività (Semina, Raccolta, Irrigazione) in modo polimorfico.
- * Utilizza {@link ConnectionManager} per ottenere connessioni al database.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}.
  * @author Il Tuo Nome
  */
 public class ActivityDAO {
-    private final DataSource dataSource = ConnectionManager.getDataSource();
+    private static final String ACTIVITY_COLUMNS =
+            "id, data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, quantitaSemi, UnitaMisuraSemi, " +
+                    "QuantitaPrevistaRaccolta, QuantitaEffettivaRaccolta, UnitaMisuraRaccolta, versione";
+
+    private static final JdbcTemplate.RowMapper<ActivityDTO> ACTIVITY_MAPPER = ActivityDAO::mapActivity;
+
+    /**
+     * Colonne della tabella di appoggio per l'importazione, nell'ordine in cui vengono inviate con {@code COPY}.
+     */
+    private static final String IMPORT_COLUMNS =
+            "riga, data, stato, tipo, idlotto, idcoltivazione, idutente, quantitasemi, unitasemi, " +
+                    "quantitaprevista, quantitaeffettiva, unitaraccolta";
+
+    private static final String CREATE_IMPORT_TABLE =
+            "CREATE TEMP TABLE attivita_import (riga INTEGER, data DATE, stato StatoAttivita, tipo TipoAttivita, " +
+                    "idlotto INTEGER, idcoltivazione INTEGER, idutente INTEGER, quantitasemi INTEGER, unitasemi VARCHAR(50), " +
+                    "quantitaprevista INTEGER, quantitaeffettiva INTEGER, unitaraccolta VARCHAR(50))";
+
+    /**
+     * Unione insiemistica della tabella di appoggio in Attivita. Un'attività è considerata già presente se esiste
+     * con gli stessi valori in tutte le colonne importate (i valori mancanti sono confrontati come uguali):
+     * solo le righe identiche, nel file o rispetto al database, vengono scartate, così che ripetere la stessa
+     * importazione non crei doppioni senza perdere attività che differiscono anche solo per quantità o stato.
+     */
+    private static final String MERGE_IMPORT =
+            "INSERT INTO Attivita (data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, quantitaSemi, UnitaMisuraSemi, " +
+                    "QuantitaPrevistaRaccolta, QuantitaEffettivaRaccolta, UnitaMisuraRaccolta) " +
+                    "SELECT DISTINCT ON (i.idcoltivazione, i.data, i.tipo, i.idutente, i.idlotto, i.stato, i.quantitasemi, " +
+                    "i.unitasemi, i.quantitaprevista, i.quantitaeffettiva, i.unitaraccolta) i.data, i.stato, i.tipo, i.idlotto, " +
+                    "i.idcoltivazione, i.idutente, i.quantitasemi, i.unitasemi, i.quantitaprevista, i.quantitaeffettiva, i.unitaraccolta " +
+                    "FROM attivita_import i " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM Attivita a WHERE a.idcoltivazione = i.idcoltivazione AND a.data = i.data " +
+                    "AND a.TipoAttivita = i.tipo AND a.idutente = i.idutente AND a.idlotto = i.idlotto AND a.stato = i.stato " +
+                    "AND a.quantitaSemi IS NOT DISTINCT FROM i.quantitasemi AND a.UnitaMisuraSemi IS NOT DISTINCT FROM i.unitasemi " +
+                    "AND a.QuantitaPrevistaRaccolta IS NOT DISTINCT FROM i.quantitaprevista " +
+                    "AND a.QuantitaEffettivaRaccolta IS NOT DISTINCT FROM i.quantitaeffettiva " +
+                    "AND a.UnitaMisuraRaccolta IS NOT DISTINCT FROM i.unitaraccolta) " +
+                    "ORDER BY i.idcoltivazione, i.data, i.tipo, i.idutente, i.idlotto, i.stato, i.quantitasemi, " +
+                    "i.unitasemi, i.quantitaprevista, i.quantitaeffettiva, i.unitaraccolta, i.riga";
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
 
     /**
      * Inserisce una nuova attività nel database.
      * Il tipo specifico di attività (Semina, Raccolta, Irrigazione) determina
      * quali parametri specifici dell'attività vengono impostati nella stored procedure.
      * @param object L'oggetto {@link ActivityDTO} che rappresenta l'attività da inserire.
+     * @return L'ID generato dal database per la nuova attività.
      * @throws RuntimeException se si verifica un errore SQL durante l'inserimento.
      * @throws IllegalArgumentException se il tipo di attività non è supportato.
      */
-    public void insertActivity(ActivityDTO object) {
-        try (Connection conn = dataSource.getConnection()) {
-            CallableStatement stmnt = conn.prepareCall("{? = call CreaAttivita(?,?,?,?,?,?,?,?,?,?,?)}");
-            stmnt.registerOutParameter(1, Types.INTEGER);
-
-            stmnt.setDate(2, Date.valueOf(object.getDate()));
-            PGobject activityStatusObj = new PGobject();
-            activityStatusObj.setType("StatoAttivita");
-            activityStatusObj.setValue(object.getStatus().getStatus().toLowerCase());
-            stmnt.setObject(3, activityStatusObj);
-            stmnt.setInt(4, object.getFarmerID());
-            stmnt.setInt(5, object.getColtureID());
-            stmnt.setInt(6, object.getLotID());
-            PGobject activityTypeObj = new PGobject();
-            activityTypeObj.setType("TipoAttivita");
-            activityTypeObj.setValue(object.getType().getDescription().toLowerCase());
-            stmnt.setObject(7, activityTypeObj);
+    public int insertActivity(ActivityDTO object) {
+        try {
+            return jdbc.callForInt("{? = call CreaAttivita(?,?,?,?,?,?,?,?,?,?,?)}", stmnt -> {
+                stmnt.setDate(2, Date.valueOf(object.getDate()));
+                stmnt.setObject(3, JdbcTemplate.enumValue("StatoAttivita", object.getStatus().getStatus().toLowerCase()));
+                stmnt.setInt(4, object.getFarmerID());
+                stmnt.setInt(5, object.getColtureID());
+                stmnt.setInt(6, object.getLotID());
+                stmnt.setObject(7, JdbcTemplate.enumValue("TipoAttivita", object.getType().getDescription().toLowerCase()));
+                bindSpecificFields(stmnt, 8, object);
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'inserimento dell'attività: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Inserisce più attività nel database con un unico round trip.
+     * Le colonne delle attività vengono inviate come array paralleli e srotolate lato server con
+     * {@code unnest ... WITH ORDINALITY}; per ogni riga viene invocata la stored procedure {@code CreaAttivita},
+     * così da mantenere gli stessi controlli dell'inserimento singolo. Essendo un'unica istruzione,
+     * l'inserimento è atomico: se una riga fallisce nessuna attività viene salvata.
+     * @param activities La {@link Collection} di {@link ActivityDTO} da inserire.
+     * @return La {@link List} degli ID generati, nello stesso ordine di iterazione della collezione fornita.
+     * @throws RuntimeException se si verifica un errore SQL durante l'inserimento.
+     * @throws IllegalArgumentException se il tipo di una delle attività non è supportato.
+     */
+    public List<Integer> insertActivities(Collection<ActivityDTO> activities) {
+        if (activities.isEmpty()) {
+            return List.of();
+        }
+
+        int size = activities.size();
+        Date[] dates = new Date[size];
+        String[] statuses = new String[size];
+        Integer[] farmerIDs = new Integer[size];
+        Integer[] coltureIDs = new Integer[size];
+        Integer[] lotIDs = new Integer[size];
+        String[] types = new String[size];
+        Integer[] seedQuantities = new Integer[size];
+        String[] seedUnits = new String[size];
+        Integer[] expectedQuantities = new Integer[size];
+        Integer[] actualQuantities = new Integer[size];
+        String[] harvestUnits = new String[size];
+
+        int i = 0;
+        for (ActivityDTO object : activities) {
+            dates[i] = Date.valueOf(object.getDate());
+            statuses[i] = object.getStatus().getStatus().toLowerCase();
+            farmerIDs[i] = object.getFarmerID();
+            coltureIDs[i] = object.getColtureID();
+            lotIDs[i] = object.getLotID();
+            types[i] = object.getType().getDescription().toLowerCase();
 
             switch (object.getType()) {
                 case SEEDING -> {
                     SeedingActivityDTO seedingActivityDTO = (SeedingActivityDTO) object;
-                    stmnt.setInt(8, seedingActivityDTO.getQuantity());
-                    stmnt.setString(9, seedingActivityDTO.getUnit());
-                    stmnt.setNull(10, Types.INTEGER);
-                    stmnt.setNull(11, Types.INTEGER);
-                    stmnt.setNull(12, Types.VARCHAR);
+                    seedQuantities[i] = seedingActivityDTO.getQuantity();
+                    seedUnits[i] = seedingActivityDTO.getUnit();
                 }
                 case HARVEST -> {
                     HarvestingActivityDTO harvestingActivityDTO = (HarvestingActivityDTO) object;
-                    stmnt.setNull(8, Types.INTEGER);
-                    stmnt.setNull(9, Types.VARCHAR);
-                    stmnt.setInt(10, harvestingActivityDTO.getExpectedQuantity());
-                    stmnt.setInt(11, harvestingActivityDTO.getActualQuantity());
-                    stmnt.setString(12, harvestingActivityDTO.getUnit());
+                    expectedQuantities[i] = harvestingActivityDTO.getExpectedQuantity();
+                    actualQuantities[i] = harvestingActivityDTO.getActualQuantity();
+                    harvestUnits[i] = harvestingActivityDTO.getUnit();
                 }
                 case IRRIGATION -> {
-                    stmnt.setNull(8, Types.INTEGER);
-                    stmnt.setNull(9, Types.VARCHAR);
-                    stmnt.setNull(10, Types.INTEGER);
-                    stmnt.setNull(11, Types.INTEGER);
-                    stmnt.setNull(12, Types.VARCHAR);
+                    // Nessun campo specifico: restano null
                 }
                 default -> throw new IllegalArgumentException("Tipo attività non supportato: " + object.getType());
             }
+            i++;
+        }
+
+        String sql = "SELECT CreaAttivita(t.data, t.stato::StatoAttivita, t.idutente, t.idcoltivazione, t.idlotto, " +
+                "t.tipo::TipoAttivita, t.quantitasemi, t.unitasemi, t.quantitaprevista, t.quantitaeffettiva, t.unitaraccolta) " +
+                "FROM unnest(?::date[], ?::text[], ?::int[], ?::int[], ?::int[], ?::text[], ?::int[], ?::varchar[], ?::int[], ?::int[], ?::varchar[]) " +
+                "WITH ORDINALITY AS t(data, stato, idutente, idcoltivazione, idlotto, tipo, quantitasemi, unitasemi, " +
+                "quantitaprevista, quantitaeffettiva, unitaraccolta, ord) ORDER BY t.ord";
 
-            stmnt.executeUpdate();
+        try {
+            return jdbc.execute(conn -> {
+                try (PreparedStatement stmnt = conn.prepareStatement(sql)) {
+                    stmnt.setArray(1, conn.createArrayOf("date", dates));
+                    stmnt.setArray(2, conn.createArrayOf("text", statuses));
+                    stmnt.setArray(3, conn.createArrayOf("integer", farmerIDs));
+                    stmnt.setArray(4, conn.createArrayOf("integer", coltureIDs));
+                    stmnt.setArray(5, conn.createArrayOf("integer", lotIDs));
+                    stmnt.setArray(6, conn.createArrayOf("text", types));
+                    stmnt.setArray(7, conn.createArrayOf("integer", seedQuantities));
+                    stmnt.setArray(8, conn.createArrayOf("varchar", seedUnits));
+                    stmnt.setArray(9, conn.createArrayOf("integer", expectedQuantities));
+                    stmnt.setArray(10, conn.createArrayOf("integer", actualQuantities));
+                    stmnt.setArray(11, conn.createArrayOf("varchar", harvestUnits));
 
+                    List<Integer> ids = new ArrayList<>(size);
+                    try (ResultSet rs = stmnt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                    return ids;
+                }
+            });
         } catch (SQLException ex) {
-            throw new RuntimeException("Errore durante l'inserimento dell'attività: " + ex.getMessage(), ex);
+            throw new RuntimeException("Errore durante l'inserimento multiplo delle attività: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Importa in blocco le attività fornite come dati {@code COPY} in formato testo (colonne separate da tabulazione,
+     * nell'ordine di {@link #IMPORT_COLUMNS}, con {@code \N} per i valori nulli).
+     * I dati vengono caricati con il {@code CopyManager} di PostgreSQL in una tabella temporanea di appoggio
+     * e poi uniti ad Attivita con un'unica istruzione insiemistica, senza invocare {@code CreaAttivita} per ogni riga.
+     * I blocchi vengono inviati man mano che l'{@link Iterable} li produce, così che la preparazione dei blocchi
+     * successivi possa procedere mentre i precedenti vengono trasmessi.
+     * Per rendere atomica l'importazione va invocato all'interno di una {@link com.unina.biogarden.database.UnitOfWork}.
+     * @param copyData I blocchi di righe da caricare, già codificati in UTF-8.
+     * @return Il numero di attività effettivamente inserite (escluse quelle già presenti).
+     * @throws RuntimeException se si verifica un errore SQL durante il caricamento o l'unione.
+     */
+    public int importActivities(Iterable<byte[]> copyData) {
+        try {
+            return jdbc.execute(conn -> {
+                try (Statement stmnt = conn.createStatement()) {
+                    // Una tabella rimasta da un'importazione fallita sulla stessa connessione viene ricreata
+                    stmnt.execute("DROP TABLE IF EXISTS attivita_import");
+                    stmnt.execute(CREATE_IMPORT_TABLE);
+                }
+
+                CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn("COPY attivita_import (" + IMPORT_COLUMNS + ") FROM STDIN");
+                try {
+                    for (byte[] chunk : copyData) {
+                        copyIn.writeToCopy(chunk, 0, chunk.length);
+                    }
+                    copyIn.endCopy();
+                } catch (SQLException | RuntimeException ex) {
+                    if (copyIn.isActive()) {
+                        copyIn.cancelCopy();
+                    }
+                    throw ex;
+                }
+
+                try (Statement stmnt = conn.createStatement()) {
+                    stmnt.execute("ANALYZE attivita_import");
+                    int inserted = stmnt.executeUpdate(MERGE_IMPORT);
+                    stmnt.execute("DROP TABLE attivita_import");
+                    return inserted;
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'importazione delle attività: " + ex.getMessage(), ex);
         }
     }
 
@@ -91,10 +240,8 @@ public class ActivityDAO {
      * @throws RuntimeException se si verifica un errore SQL durante l'eliminazione o se nessuna attività viene trovata con l'ID specificato.
      */
     public void deleteActivity(int activityID) {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("DELETE FROM Attivita WHERE id = ?");
-            stmnt.setInt(1, activityID);
-            int rowsAffected = stmnt.executeUpdate();
+        try {
+            int rowsAffected = jdbc.update("DELETE FROM Attivita WHERE id = ?", stmnt -> stmnt.setInt(1, activityID));
             if (rowsAffected == 0) {
                 throw new SQLException("Nessuna attività trovata con ID: " + activityID);
             }
@@ -104,121 +251,311 @@ public class ActivityDAO {
     }
 
     /**
-     * Recupera una collezione di attività associate a una specifica coltivazione.
-     * Ogni attività viene deserializzata nel suo tipo specifico (Semina, Raccolta, Irrigazione)
-     * in base al valore della colonna 'TipoAttivita'.
+     * Recupera un'attività dato il suo ID, con la sua versione corrente.
+     * @param activityID L'ID dell'attività.
+     * @return L'{@link ActivityDTO} dell'attività, o {@code null} se non esiste.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero.
+     */
+    public ActivityDTO fetchActivity(int activityID) {
+        try {
+            return jdbc.queryForObject("SELECT " + ACTIVITY_COLUMNS + " FROM Attivita WHERE id = ?",
+                    stmnt -> stmnt.setInt(1, activityID), ACTIVITY_MAPPER);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero dell'attività: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Recupera una pagina di attività di una specifica coltivazione, ordinate per data e ID.
+     * La paginazione è di tipo keyset: invece di un OFFSET, la pagina successiva parte dalla coppia
+     * (data, id) dell'ultima attività ricevuta, così che il costo di ogni pagina non cresca con lo storico.
      * @param coltureID L'ID della coltivazione per cui recuperare le attività.
-     * @return Una {@link Collection} di {@link ActivityDTO} che rappresenta le attività della coltivazione.
+     * @param afterDate La data dell'ultima attività della pagina precedente, o {@code null} per la prima pagina.
+     * @param afterId L'ID dell'ultima attività della pagina precedente (ignorato se {@code afterDate} è {@code null}).
+     * @param pageSize Il numero massimo di attività da restituire.
+     * @return Una {@link List} di {@link ActivityDTO} di al più {@code pageSize} elementi.
      * @throws RuntimeException se si verifica un errore SQL durante il recupero dei dati.
-     * @throws IllegalArgumentException se viene incontrato un tipo di attività non supportato dal database.
      */
-    public Collection<ActivityDTO> fetchActivityByColture(int coltureID) {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM Attivita WHERE idcoltivazione = ?");
-            stmnt.setInt(1, coltureID);
-            ResultSet rs = stmnt.executeQuery();
-            Collection<ActivityDTO> activities = new ArrayList<>();
-
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                LocalDate date = rs.getObject("data", LocalDate.class);
-                String status = rs.getString("stato");
-                String type = rs.getString("TipoAttivita");
-                int lotID = rs.getInt("idlotto");
-                int coltureIDFromDB = rs.getInt("idcoltivazione");
-                int farmerID = rs.getInt("idutente");
-
-                ActivityType activityType = ActivityType.fromString(type);
-                ActivityStatus activityStatus = ActivityStatus.fromString(status);
-                ActivityDTO activity;
-                switch (activityType) {
-                    case SEEDING -> {
-                        int quantity = rs.getInt("quantitaSemi");
-                        String unit = rs.getString("UnitaMisuraSemi");
-                        activity = new SeedingActivityDTO(id, date, activityStatus, quantity, unit, coltureIDFromDB, lotID, farmerID);
-                    }
-                    case HARVEST -> {
-                        int expectedQuantity = rs.getInt("QuantitaPrevistaRaccolta");
-                        int actualQuantity = rs.getInt("QuantitaEffettivaRaccolta");
-                        String unit = rs.getString("UnitaMisuraRaccolta");
-                        activity = new HarvestingActivityDTO(id, date, activityStatus, expectedQuantity, actualQuantity, unit, coltureIDFromDB, lotID, farmerID);
-                    }
-                    case IRRIGATION ->
-                            activity = new IrrigationActivityDTO(id, date, activityStatus, coltureIDFromDB, lotID, farmerID);
+    public List<ActivityDTO> fetchActivityPageByColture(int coltureID, LocalDate afterDate, int afterId, int pageSize) {
+        try {
+            return fetchActivityPage("idcoltivazione", coltureID, false, afterDate, afterId, pageSize);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero delle attività per coltivazione: " + ex.getMessage(), ex);
+        }
+    }
 
-                    default -> throw new IllegalArgumentException("Tipo attività non supportato: " + activityType);
-                }
+    /**
+     * Recupera una pagina di attività assegnate a uno specifico agricoltore, ordinate per data e ID.
+     * Utilizza la stessa paginazione keyset di {@link #fetchActivityPageByColture(int, LocalDate, int, int)}.
+     * Sono escluse le attività archiviate dei progetti terminati da tempo (vedi {@link #archiveActivities(LocalDate)}).
+     * @param farmerID L'ID dell'agricoltore per cui recuperare le attività.
+     * @param afterDate La data dell'ultima attività della pagina precedente, o {@code null} per la prima pagina.
+     * @param afterId L'ID dell'ultima attività della pagina precedente (ignorato se {@code afterDate} è {@code null}).
+     * @param pageSize Il numero massimo di attività da restituire.
+     * @return Una {@link List} di {@link ActivityDTO} di al più {@code pageSize} elementi.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero dei dati.
+     */
+    public List<ActivityDTO> fetchActivityPageByFarmer(int farmerID, LocalDate afterDate, int afterId, int pageSize) {
+        try {
+            return fetchActivityPage("idutente", farmerID, true, afterDate, afterId, pageSize);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero delle attività per agricoltore: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Esegue una query paginata keyset sulle attività filtrate per la colonna indicata.
+     * Oltre al confronto sulla coppia (data, id), la condizione {@code data >= ?} permette al database
+     * di escludere in esecuzione le partizioni annuali precedenti alla pagina richiesta;
+     * analogamente {@code NOT archiviata} esclude la partizione di archivio.
+     * @param filterColumn La colonna su cui filtrare (costante interna, mai input utente).
+     * @param filterValue Il valore della colonna di filtro.
+     * @param currentOnly {@code true} per escludere le attività archiviate.
+     * @param afterDate La data dell'ultima attività ricevuta, o {@code null} per la prima pagina.
+     * @param afterId L'ID dell'ultima attività ricevuta.
+     * @param pageSize Il numero massimo di attività da restituire.
+     * @return Una {@link List} di {@link ActivityDTO}.
+     * @throws SQLException se si verifica un errore SQL durante l'esecuzione della query.
+     */
+    private List<ActivityDTO> fetchActivityPage(String filterColumn, int filterValue, boolean currentOnly,
+                                                LocalDate afterDate, int afterId, int pageSize) throws SQLException {
+        String sql = "SELECT " + ACTIVITY_COLUMNS + " FROM Attivita WHERE " + filterColumn + " = ?" +
+                (currentOnly ? " AND NOT archiviata" : "") +
+                (afterDate == null ? "" : " AND data >= ? AND (data, id) > (?, ?)") +
+                " ORDER BY data, id LIMIT ?";
 
-                activities.add(activity);
+        return jdbc.query(sql, stmnt -> {
+            int index = 1;
+            stmnt.setInt(index++, filterValue);
+            if (afterDate != null) {
+                Date date = Date.valueOf(afterDate);
+                stmnt.setDate(index++, date);
+                stmnt.setDate(index++, date);
+                stmnt.setInt(index++, afterId);
             }
+            stmnt.setInt(index, pageSize);
+        }, ACTIVITY_MAPPER);
+    }
 
-            return activities;
+    /**
+     * Sposta nella partizione di archivio le attività dei progetti terminati prima della data indicata.
+     * Le attività archiviate restano visibili per coltivazione e nei report, ma non appesantiscono
+     * le partizioni e gli indici delle attività correnti.
+     * @param endedBefore La data di fine progetto entro cui le attività vengono archiviate (esclusa).
+     * @return Il numero di attività archiviate.
+     * @throws RuntimeException se si verifica un errore SQL durante l'archiviazione.
+     */
+    public int archiveActivities(LocalDate endedBefore) {
+        try {
+            Integer archived = jdbc.queryForObject("SELECT ArchiviaAttivita(?)",
+                    stmnt -> stmnt.setDate(1, Date.valueOf(endedBefore)), rs -> rs.getInt(1));
+            return archived == null ? 0 : archived;
         } catch (SQLException ex) {
-            throw new RuntimeException("Errore durante il recupero delle attività per coltivazione: " + ex.getMessage(), ex);
+            throw new RuntimeException("Errore durante l'archiviazione delle attività: " + ex.getMessage(), ex);
         }
     }
 
     /**
-     * Aggiorna un'attività esistente nel database.
+     * Crea le partizioni annuali delle attività correnti mancanti nell'intervallo di anni indicato.
+     * Le attività già presenti nella partizione di default per quegli anni vengono spostate nella nuova partizione.
+     * Più client possono invocarlo contemporaneamente: la creazione di ogni anno è serializzata sul database.
+     * Poiché l'aggancio di una partizione blocca in modo esclusivo la partizione di default fino al commit,
+     * va invocato in una transazione propria (come fa {@link com.unina.biogarden.service.ActivityMaintenance})
+     * e non all'interno delle transazioni applicative.
+     * @param fromYear Il primo anno (incluso).
+     * @param toYear L'ultimo anno (incluso).
+     * @return Il numero di partizioni create.
+     * @throws RuntimeException se si verifica un errore SQL durante la creazione delle partizioni.
+     */
+    public int createActivityPartitions(int fromYear, int toYear) {
+        try {
+            Integer created = jdbc.queryForObject(
+                    "SELECT COUNT(*) FILTER (WHERE CreaPartizioneAttivita(anno)) FROM generate_series(?, ?) AS anno",
+                    stmnt -> {
+                        stmnt.setInt(1, fromYear);
+                        stmnt.setInt(2, toYear);
+                    }, rs -> rs.getInt(1));
+            return created == null ? 0 : created;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la creazione delle partizioni delle attività: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Converte la riga corrente di un {@link ResultSet} sulla tabella Attivita nel DTO specifico del suo tipo.
+     * Le colonne vengono lette per posizione, secondo l'ordine di {@link #ACTIVITY_COLUMNS}.
+     * @param rs Il {@link ResultSet} posizionato sulla riga da convertire.
+     * @return L'{@link ActivityDTO} corrispondente alla riga.
+     * @throws SQLException se si verifica un errore durante la lettura della riga.
+     * @throws IllegalArgumentException se viene incontrato un tipo di attività non supportato dal database.
+     */
+    private static ActivityDTO mapActivity(ResultSet rs) throws SQLException {
+        int id = rs.getInt(1);
+        LocalDate date = rs.getObject(2, LocalDate.class);
+        ActivityStatus activityStatus = ActivityStatus.fromString(rs.getString(3));
+        ActivityType activityType = ActivityType.fromString(rs.getString(4));
+        int lotID = rs.getInt(5);
+        int coltureIDFromDB = rs.getInt(6);
+        int farmerID = rs.getInt(7);
+
+        ActivityDTO activity = switch (activityType) {
+            case SEEDING -> new SeedingActivityDTO(id, date, activityStatus, rs.getInt(8), rs.getString(9), coltureIDFromDB, lotID, farmerID);
+            case HARVEST -> new HarvestingActivityDTO(id, date, activityStatus, rs.getInt(10), rs.getInt(11), rs.getString(12), coltureIDFromDB, lotID, farmerID);
+            case IRRIGATION -> new IrrigationActivityDTO(id, date, activityStatus, coltureIDFromDB, lotID, farmerID);
+        };
+        activity.setVersion(rs.getInt(13));
+        return activity;
+    }
+
+    /**
+     * Aggiorna un'attività esistente nel database, solo se nel frattempo non è stata modificata da altri.
+     * L'aggiornamento è un compare-and-set sulla versione dell'attività: va a buon fine solo se la versione
+     * del DTO è ancora quella corrente nel database, senza bloccare la riga tra la lettura e la scrittura.
      * I parametri aggiornati dipendono dal tipo specifico dell'attività.
-     * @param object L'oggetto {@link ActivityDTO} che rappresenta l'attività da aggiornare.
+     * @param object L'oggetto {@link ActivityDTO} che rappresenta l'attività da aggiornare, con la versione letta.
+     * @return La nuova versione dell'attività.
+     * @throws ActivityConflictException se l'attività è stata modificata da un altro utente dopo la lettura.
      * @throws RuntimeException se si verifica un errore SQL durante l'aggiornamento.
      * @throws IllegalArgumentException se il tipo di attività non è supportato.
      */
-    public void updateActivity(ActivityDTO object) {
-        try (Connection conn = dataSource.getConnection()) {
-            CallableStatement stmnt = conn.prepareCall("Call AggiornaAttivita(?,?,?,?,?,?,?,?,?,?)");
-
-            stmnt.setInt(1, object.getId());
-            stmnt.setDate(2, Date.valueOf(object.getDate()));
+    public int updateActivity(ActivityDTO object) throws ActivityConflictException {
+        try {
+            return jdbc.callForInt("{? = call AggiornaAttivita(?,?,?,?,?,?,?,?,?,?,?)}", stmnt -> {
+                stmnt.setInt(2, object.getId());
+                stmnt.setDate(3, Date.valueOf(object.getDate()));
+                stmnt.setObject(4, JdbcTemplate.enumValue("StatoAttivita", object.getStatus().getStatus().toLowerCase()));
+                stmnt.setInt(5, object.getFarmerID());
+                stmnt.setObject(6, JdbcTemplate.enumValue("TipoAttivita", object.getType().getDescription().toLowerCase()));
+                bindSpecificFields(stmnt, 7, object);
+                stmnt.setInt(12, object.getVersion());
+            });
+        } catch (SQLException ex) {
+            if ("BG001".equalsIgnoreCase(ex.getSQLState())) {
+                throw new ActivityConflictException(object.getId(), "L'attività è stata modificata da un altro utente.");
+            }
+            throw new RuntimeException("Errore durante l'aggiornamento dell'attività: " + ex.getMessage(), ex);
+        }
+    }
 
-            PGobject activityStatusObj = new PGobject();
-            activityStatusObj.setType("StatoAttivita");
-            activityStatusObj.setValue(object.getStatus().getStatus().toLowerCase());
-            stmnt.setObject(3, activityStatusObj);
+    /**
+     * Modifica in blocco stato, data e/o agricoltore delle attività di un proprietario che soddisfano un filtro,
+     * con un'unica istruzione {@code UPDATE} basata su insiemi.
+     * Le attività archiviate non vengono modificate, e nemmeno quelle che hanno già i valori richiesti:
+     * il conteggio restituito comprende solo le attività effettivamente cambiate, la cui versione viene incrementata
+     * così che eventuali modifiche concorrenti basate sui vecchi valori vengano rilevate.
+     * @param ownerId L'ID del proprietario dei lotti a cui le attività devono appartenere.
+     * @param filter Il filtro che seleziona le attività.
+     * @param changes Le modifiche da applicare; deve contenere almeno un campo.
+     * @return Il numero di attività modificate.
+     * @throws RuntimeException se si verifica un errore SQL durante l'aggiornamento.
+     */
+    public int updateActivities(int ownerId, ActivityFilterDTO filter, ActivityBulkUpdateDTO changes) {
+        List<String> assignments = new ArrayList<>();
+        List<String> differences = new ArrayList<>();
+        List<Object> changeValues = new ArrayList<>();
+        try {
+            if (changes.status() != null) {
+                assignments.add("stato = ?");
+                differences.add("stato <> ?");
+                changeValues.add(JdbcTemplate.enumValue("StatoAttivita", changes.status().getStatus().toLowerCase()));
+            }
+            if (changes.date() != null) {
+                assignments.add("data = ?");
+                differences.add("data <> ?");
+                changeValues.add(Date.valueOf(changes.date()));
+            }
+            if (changes.farmerId() != null) {
+                assignments.add("idutente = ?");
+                differences.add("idutente <> ?");
+                changeValues.add(changes.farmerId());
+            }
 
-            stmnt.setInt(4, object.getFarmerID());
+            List<String> conditions = new ArrayList<>(List.of("NOT archiviata", "idlotto IN (SELECT id FROM lotto WHERE idutente = ?)"));
+            List<Object> conditionValues = new ArrayList<>(List.of(ownerId));
+            if (filter.ids() != null) {
+                conditions.add("id = ANY (?)");
+                conditionValues.add(filter.ids().toArray(Integer[]::new));
+            }
+            if (filter.coltureId() != null) {
+                conditions.add("idcoltivazione = ?");
+                conditionValues.add(filter.coltureId());
+            }
+            if (filter.type() != null) {
+                conditions.add("TipoAttivita = ?");
+                conditionValues.add(JdbcTemplate.enumValue("TipoAttivita", filter.type().getDescription().toLowerCase()));
+            }
+            if (filter.status() != null) {
+                conditions.add("stato = ?");
+                conditionValues.add(JdbcTemplate.enumValue("StatoAttivita", filter.status().getStatus().toLowerCase()));
+            }
+            if (filter.from() != null) {
+                conditions.add("data >= ?");
+                conditionValues.add(Date.valueOf(filter.from()));
+            }
+            if (filter.to() != null) {
+                conditions.add("data <= ?");
+                conditionValues.add(Date.valueOf(filter.to()));
+            }
 
-            PGobject activityTypeObj = new PGobject();
-            activityTypeObj.setType("TipoAttivita");
-            activityTypeObj.setValue(object.getType().getDescription().toLowerCase());
-            stmnt.setObject(5, activityTypeObj);
+            String sql = "UPDATE Attivita SET " + String.join(", ", assignments) + ", versione = versione + 1" +
+                    " WHERE " + String.join(" AND ", conditions) +
+                    " AND (" + String.join(" OR ", differences) + ")";
 
-            switch (object.getType()) {
-                case SEEDING -> {
-                    SeedingActivityDTO seeding = (SeedingActivityDTO) object;
-                    stmnt.setInt(6, seeding.getQuantity());
-                    stmnt.setString(7, seeding.getUnit());
-
-                    // Raccolta → null
-                    stmnt.setNull(8, Types.INTEGER);
-                    stmnt.setNull(9, Types.INTEGER);
-                    stmnt.setNull(10, Types.VARCHAR);
+            List<Object> values = new ArrayList<>(changeValues);
+            values.addAll(conditionValues);
+            values.addAll(changeValues);
+            return jdbc.update(sql, stmnt -> {
+                for (int i = 0; i < values.size(); i++) {
+                    if (values.get(i) instanceof Integer[] ids) {
+                        stmnt.setArray(i + 1, stmnt.getConnection().createArrayOf("integer", ids));
+                    } else {
+                        stmnt.setObject(i + 1, values.get(i));
+                    }
                 }
-                case HARVEST -> {
-                    HarvestingActivityDTO harvest = (HarvestingActivityDTO) object;
-                    stmnt.setNull(6, Types.INTEGER);
-                    stmnt.setNull(7, Types.VARCHAR);
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'aggiornamento delle attività: " + ex.getMessage(), ex);
+        }
+    }
 
-                    stmnt.setInt(8, harvest.getExpectedQuantity());
-                    stmnt.setInt(9, harvest.getActualQuantity());
-                    stmnt.setString(10, harvest.getUnit());
-                }
-                case IRRIGATION -> {
-                    // Tutti i campi specifici sono nulli
-                    stmnt.setNull(6, Types.INTEGER);
-                    stmnt.setNull(7, Types.VARCHAR);
-                    stmnt.setNull(8, Types.INTEGER);
-                    stmnt.setNull(9, Types.INTEGER);
-                    stmnt.setNull(10, Types.VARCHAR);
-                }
-                default -> throw new IllegalArgumentException("Tipo attività non supportato: " + object.getType());
+    /**
+     * Imposta i cinque parametri specifici del tipo di attività (quantità e unità di semina,
+     * quantità prevista, quantità effettiva e unità di raccolta) a partire dall'indice indicato.
+     * I campi che non appartengono al tipo dell'attività vengono impostati a {@code null}.
+     * @param stmnt Lo statement da valorizzare.
+     * @param from L'indice del primo parametro.
+     * @param object L'attività da cui leggere i valori.
+     * @throws SQLException se un parametro non può essere impostato.
+     * @throws IllegalArgumentException se il tipo di attività non è supportato.
+     */
+    private static void bindSpecificFields(PreparedStatement stmnt, int from, ActivityDTO object) throws SQLException {
+        switch (object.getType()) {
+            case SEEDING -> {
+                SeedingActivityDTO seeding = (SeedingActivityDTO) object;
+                stmnt.setInt(from, seeding.getQuantity());
+                stmnt.setString(from + 1, seeding.getUnit());
+                stmnt.setNull(from + 2, Types.INTEGER);
+                stmnt.setNull(from + 3, Types.INTEGER);
+                stmnt.setNull(from + 4, Types.VARCHAR);
             }
-
-            stmnt.executeUpdate();
-        } catch (SQLException ex) {
-            throw new RuntimeException("Errore durante l'aggiornamento dell'attività: " + ex.getMessage(), ex);
+            case HARVEST -> {
+                HarvestingActivityDTO harvest = (HarvestingActivityDTO) object;
+                stmnt.setNull(from, Types.INTEGER);
+                stmnt.setNull(from + 1, Types.VARCHAR);
+                stmnt.setInt(from + 2, harvest.getExpectedQuantity());
+                stmnt.setInt(from + 3, harvest.getActualQuantity());
+                stmnt.setString(from + 4, harvest.getUnit());
+            }
+            case IRRIGATION -> {
+                // Tutti i campi specifici sono nulli
+                stmnt.setNull(from, Types.INTEGER);
+                stmnt.setNull(from + 1, Types.VARCHAR);
+                stmnt.setNull(from + 2, Types.INTEGER);
+                stmnt.setNull(from + 3, Types.INTEGER);
+                stmnt.setNull(from + 4, Types.VARCHAR);
+            }
+            default -> throw new IllegalArgumentException("Tipo attività non supportato: " + object.getType());
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,220 @@
+package com.unina.biogarden.dao;
+
+import com.unina.biogarden.database.ConnectionManager;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) per l'esportazione e il ripristino dei dati di un orto tramite {@code COPY}.
+ * Le righe vengono trasferite in formato CSV direttamente tra il server e uno stream, tramite il
+ * {@link CopyManager} di PostgreSQL, senza essere mai materializzate in memoria come oggetti.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}.
+ * @author Il Tuo Nome
+ */
+public class BackupDAO {
+
+    /**
+     * Tabelle incluse in un'esportazione, nell'ordine in cui devono essere ripristinate per rispettare le chiavi esterne.
+     * Ogni tabella dichiara le colonne trasferite e la query che ne seleziona le righe di un proprietario,
+     * in cui {@code %1$d} è l'ID del proprietario.
+     */
+    public enum Table {
+        /**
+         * Il proprietario e gli agricoltori che hanno svolto attività sui suoi lotti o a cui sono assegnati i suoi piani di irrigazione.
+         * Vengono esportati anche gli hash delle password, così che dopo il ripristino tutti possano accedere come prima.
+         */
+        UTENTE("utente", "id, nome, cognome, email, password, tipo",
+                "id = %1$d OR id IN (SELECT a.idutente FROM Attivita a JOIN lotto l ON l.id = a.idlotto WHERE l.idutente = %1$d) " +
+                        "OR id IN (SELECT pi.idutente FROM PianoIrrigazione pi JOIN Coltivazione c ON c.id = pi.idcoltivazione " +
+                        "JOIN progetto p ON p.id = c.idprogetto JOIN lotto l ON l.id = p.idlotto WHERE l.idutente = %1$d)"),
+        /**
+         * Le colture coltivate nei progetti del proprietario.
+         */
+        COLTURA("Coltura", "id, tipologia, tempomaturazione",
+                "id IN (SELECT c.idcoltura FROM Coltivazione c JOIN progetto p ON p.id = c.idprogetto " +
+                        "JOIN lotto l ON l.id = p.idlotto WHERE l.idutente = %1$d)"),
+        LOTTO("lotto", "id, nome, area, idutente",
+                "idutente = %1$d"),
+        PROGETTO("progetto", "id, nome, datainizio, datafine, idlotto",
+                "idlotto IN (SELECT id FROM lotto WHERE idutente = %1$d)"),
+        COLTIVAZIONE("Coltivazione", "id, idcoltura, idprogetto, data, stato",
+                "idprogetto IN (SELECT p.id FROM progetto p JOIN lotto l ON l.id = p.idlotto WHERE l.idutente = %1$d)"),
+        PIANO_IRRIGAZIONE("PianoIrrigazione", "id, idcoltivazione, idutente, datainizio, datafine, intervallogiorni",
+                "idcoltivazione IN (SELECT c.id FROM Coltivazione c JOIN progetto p ON p.id = c.idprogetto " +
+                        "JOIN lotto l ON l.id = p.idlotto WHERE l.idutente = %1$d)"),
+        /**
+         * Tutte le attività dei lotti del proprietario, comprese quelle archiviate.
+         */
+        ATTIVITA("Attivita", "id, data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, quantitaSemi, " +
+                "UnitaMisuraSemi, QuantitaPrevistaRaccolta, QuantitaEffettivaRaccolta, UnitaMisuraRaccolta, archiviata, idpiano",
+                "idlotto IN (SELECT id FROM lotto WHERE idutente = %1$d)");
+
+        private final String tableName;
+        private final String columns;
+        private final String ownerFilter;
+
+        Table(String tableName, String columns, String ownerFilter) {
+            this.tableName = tableName;
+            this.columns = columns;
+            this.ownerFilter = ownerFilter;
+        }
+
+        /**
+         * Restituisce il nome del file, senza estensione, in cui viene esportata la tabella.
+         * @return Il nome del file.
+         */
+        public String fileName() {
+            return tableName.toLowerCase();
+        }
+    }
+
+    private static final String CSV_OPTIONS = "(FORMAT csv, HEADER true)";
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
+
+    /**
+     * Recupera l'ID di un proprietario dato il suo indirizzo email.
+     * @param email L'indirizzo email del proprietario.
+     * @return L'ID del proprietario, o {@code null} se non esiste un proprietario con questa email.
+     * @throws RuntimeException se si verifica un errore SQL durante la ricerca.
+     */
+    public Integer fetchOwnerId(String email) {
+        try {
+            return jdbc.queryForObject("SELECT id FROM utente WHERE email = ? AND tipo = 'proprietario'",
+                    stmnt -> stmnt.setString(1, email), rs -> rs.getInt(1));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la ricerca del proprietario: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Restituisce la versione dello schema del database, secondo le migrazioni applicate.
+     * @return La versione più recente registrata in {@code schema_version}, o 0 se nessuna migrazione è registrata.
+     * @throws RuntimeException se si verifica un errore SQL durante la lettura.
+     */
+    public int fetchSchemaVersion() {
+        try {
+            Integer version = jdbc.queryForObject("SELECT COALESCE(MAX(versione), 0) FROM schema_version",
+                    JdbcTemplate.StatementBinder.NONE, rs -> rs.getInt(1));
+            return version == null ? 0 : version;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la lettura della versione dello schema: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Recupera gli anni in cui cadono le attività non archiviate di un proprietario,
+     * per creare le partizioni annuali prima di un ripristino.
+     * @param ownerId L'ID del proprietario.
+     * @return Gli anni, in ordine crescente.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero.
+     */
+    public List<Integer> fetchActivityYears(int ownerId) {
+        try {
+            return jdbc.query("SELECT DISTINCT extract(YEAR FROM data)::INTEGER FROM Attivita " +
+                            "WHERE NOT archiviata AND idlotto IN (SELECT id FROM lotto WHERE idutente = ?) ORDER BY 1",
+                    stmnt -> stmnt.setInt(1, ownerId), rs -> rs.getInt(1));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero degli anni delle attività: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Verifica che il database non contenga utenti né colture, e possa quindi ricevere un ripristino.
+     * @return {@code true} se il database è vuoto.
+     * @throws RuntimeException se si verifica un errore SQL durante la verifica.
+     */
+    public boolean isDatabaseEmpty() {
+        try {
+            return Boolean.TRUE.equals(jdbc.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM utente) AND NOT EXISTS (SELECT 1 FROM Coltura)",
+                    JdbcTemplate.StatementBinder.NONE, rs -> rs.getBoolean(1)));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la verifica del database: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Esporta in formato CSV, con intestazione, le righe di una tabella appartenenti a un proprietario.
+     * Le righe vengono scritte sullo stream man mano che arrivano dal server.
+     * @param table La tabella da esportare.
+     * @param ownerId L'ID del proprietario.
+     * @param out Lo stream di destinazione, che non viene chiuso.
+     * @return Il numero di righe esportate.
+     * @throws IOException se la scrittura sullo stream fallisce.
+     * @throws RuntimeException se si verifica un errore SQL durante l'esportazione.
+     */
+    public long exportTable(Table table, int ownerId, OutputStream out) throws IOException {
+        String sql = "COPY (SELECT " + table.columns + " FROM " + table.tableName + " WHERE " +
+                table.ownerFilter.formatted(ownerId) + ") TO STDOUT WITH " + CSV_OPTIONS;
+        try {
+            return jdbc.execute(conn -> {
+                try {
+                    return conn.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'esportazione della tabella " + table.tableName + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Carica in una tabella le righe CSV, con intestazione, prodotte da {@link #exportTable}.
+     * Gli ID vengono mantenuti, così che i riferimenti tra le tabelle restino validi.
+     * @param table La tabella da ripristinare.
+     * @param in Lo stream di origine, che non viene chiuso.
+     * @return Il numero di righe caricate.
+     * @throws IOException se la lettura dallo stream fallisce.
+     * @throws RuntimeException se si verifica un errore SQL durante il caricamento.
+     */
+    public long restoreTable(Table table, InputStream in) throws IOException {
+        String sql = "COPY " + table.tableName + " (" + table.columns + ") FROM STDIN WITH " + CSV_OPTIONS;
+        try {
+            return jdbc.execute(conn -> {
+                try {
+                    return conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, in);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il ripristino della tabella " + table.tableName + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Conclude un ripristino: riallinea le sequenze degli ID ai valori caricati, così che i nuovi inserimenti
+     * non collidano con le righe ripristinate, e aggiorna le statistiche del pianificatore.
+     * @throws RuntimeException se si verifica un errore SQL durante l'operazione.
+     */
+    public void completeRestore() {
+        try {
+            jdbc.execute(conn -> {
+                try (Statement stmnt = conn.createStatement()) {
+                    for (Table table : Table.values()) {
+                        stmnt.execute("SELECT setval(pg_get_serial_sequence('" + table.tableName + "', 'id'), " +
+                                "COALESCE(MAX(id), 0) + 1, false) FROM " + table.tableName);
+                        stmnt.execute("ANALYZE " + table.tableName);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il completamento del ripristino: " + ex.getMessage(), ex);
+        }
+    }
+}
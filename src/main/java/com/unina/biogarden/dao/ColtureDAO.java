@@ -2,25 +2,24 @@ package com.unina.biogarden.dao;
 
 import com.unina.biogarden.database.ConnectionManager;
 import com.unina.biogarden.dto.ColtureDTO;
+import com.unina.biogarden.dto.ColtureLocationDTO;
 import com.unina.biogarden.enumerations.ColtureStatus;
 import com.unina.biogarden.exceptions.ColtureAlreadyExists;
-import org.postgresql.util.PGobject;
 
-import javax.sql.DataSource;
-import java.sql.*;
+import java.sql.Date;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 /**
  * Data Access Object (DAO) per la gestione delle operazioni relative alle colture nel database.
- * Questa classe fornisce metodi per aggiungere nuove colture e recuperare colture esistenti,
- * interagendo con il database tramite {@link ConnectionManager}.
+ * Questa classe fornisce metodi per aggiungere nuove colture, recuperare colture esistenti
+ * e aggiornarne lo stato in base alle attività svolte,
+ * interagendo con il database tramite {@link ConnectionManager} e {@link JdbcTemplate}.
  * @author Il Tuo Nome
  */
 public class ColtureDAO {
-    private final DataSource dataSource = ConnectionManager.getDataSource();
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
 
     /**
      * Aggiunge una nuova coltura al database per un progetto specificato.
@@ -31,21 +30,14 @@ public class ColtureDAO {
      * @throws RuntimeException Se si verifica un errore SQL durante l'aggiunta della coltura.
      */
     public void addColtura(int idProgetto, int idCrop) throws ColtureAlreadyExists {
-        try (Connection conn = dataSource.getConnection()) {
-            CallableStatement stmnt = conn.prepareCall("{? = call CreaColtivazione(?, ?, ?, ?)}");
-
-            stmnt.registerOutParameter(1, java.sql.Types.INTEGER);
-            stmnt.setDate(2, Date.valueOf(LocalDate.now()));
-
-            PGobject tipoUtenteObj = new PGobject();
-            tipoUtenteObj.setType("StatoColtivazione");
-            tipoUtenteObj.setValue(ColtureStatus.WAITING.getStatus().toLowerCase());
-
-            stmnt.setObject(3, tipoUtenteObj);
-            stmnt.setInt(4, idCrop);
-            stmnt.setInt(5, idProgetto);
-
-            stmnt.executeUpdate();
+        try {
+            jdbc.callForInt("{? = call CreaColtivazione(?, ?, ?, ?)}", stmnt -> {
+                stmnt.setDate(2, Date.valueOf(LocalDate.now()));
+                stmnt.setObject(3, JdbcTemplate.enumValue("StatoColtivazione", ColtureStatus.WAITING.getStatus().toLowerCase()));
+                stmnt.setInt(4, idCrop);
+                stmnt.setInt(5, idProgetto);
+            });
+            DaoCaches.invalidateCrops();
         } catch (SQLException ex) {
             if (ex.getSQLState().equalsIgnoreCase("P0001")) {
                 throw new ColtureAlreadyExists("Esiste già una coltura di quel tipo in questo progetto!");
@@ -54,6 +46,44 @@ public class ColtureDAO {
         }
     }
 
+    /**
+     * Verifica, con una sola lettura, se ci sono coltivazioni il cui stato va ricalcolato:
+     * coltivazioni accodate dai trigger sulle attività o seminate che hanno raggiunto la maturazione.
+     * Permette di invocare {@link #refreshStatuses(LocalDate)}, che scrive sul database, solo quando serve.
+     * @param today La data rispetto alla quale valutare la maturazione.
+     * @return {@code true} se almeno una coltivazione va ricalcolata.
+     * @throws RuntimeException Se si verifica un errore SQL durante la verifica.
+     */
+    public boolean hasStatusesToRefresh(LocalDate today) {
+        try {
+            return Boolean.TRUE.equals(jdbc.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM ColtivazioneDaRicalcolare) " +
+                            "OR EXISTS (SELECT 1 FROM Coltivazione WHERE stato = 'seminato' AND datamaturazione <= ?)",
+                    stmnt -> stmnt.setDate(1, Date.valueOf(today)), rs -> rs.getBoolean(1)));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la verifica dello stato delle coltivazioni: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Aggiorna lo stato delle coltivazioni in base alle loro attività di semina e di raccolta.
+     * Vengono ricalcolate solo le coltivazioni le cui semine o raccolte sono cambiate dall'ultima esecuzione
+     * (accodate dai trigger sulle attività) e quelle seminate che nel frattempo hanno raggiunto la maturazione.
+     * La coda resta bloccata fino al commit, e le scritture che vi accodano attendono: va quindi invocato
+     * fuori da una {@link com.unina.biogarden.database.UnitOfWork}, in una transazione breve.
+     * @param today La data rispetto alla quale valutare la maturazione.
+     * @return Il numero di coltivazioni il cui stato è cambiato.
+     * @throws RuntimeException Se si verifica un errore SQL durante l'aggiornamento.
+     */
+    public int refreshStatuses(LocalDate today) {
+        try {
+            return jdbc.callForInt("{? = call AggiornaStatoColtivazioni(?)}",
+                    stmnt -> stmnt.setDate(2, Date.valueOf(today)));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'aggiornamento dello stato delle coltivazioni: " + ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Recupera una collezione di {@link ColtureDTO} associate a un progetto specifico.
      * @param projectId L'ID del progetto di cui recuperare le colture.
@@ -61,29 +91,76 @@ public class ColtureDAO {
      * @throws RuntimeException Se si verifica un errore SQL durante il recupero delle colture.
      */
     public Collection<ColtureDTO> fetchColtures(int projectId) {
-        List<ColtureDTO> results = new ArrayList<>();
-
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM fetchColtures(?)");
-            stmt.setInt(1, projectId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                ColtureDTO colture = new ColtureDTO(
-                        rs.getInt(1),
-                        rs.getDate(2).toLocalDate(),
-                        ColtureStatus.fromString(rs.getString(3)),
-                        projectId,
-                        rs.getInt(4),
-                        rs.getString(5)
-                );
-                results.add(colture);
-            }
+        try {
+            return jdbc.query("SELECT * FROM fetchColtures(?)", stmt -> stmt.setInt(1, projectId),
+                    rs -> new ColtureDTO(
+                            rs.getInt(1),
+                            rs.getDate(2).toLocalDate(),
+                            ColtureStatus.fromString(rs.getString(3)),
+                            projectId,
+                            rs.getInt(4),
+                            rs.getString(5)
+                    ));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero delle colture: " + ex.getMessage(), ex);
+        }
+    }
 
+    /**
+     * Recupera le coltivazioni di tutti i progetti dei lotti posseduti dall'utente indicato, con un'unica query.
+     * Permette di popolare le coltivazioni di tutti i progetti del proprietario senza una query per progetto.
+     * @param ownerId L'ID dell'utente proprietario dei lotti.
+     * @return Una {@link Collection} di {@link ColtureDTO}, ordinata per nome della coltura.
+     * @throws RuntimeException Se si verifica un errore SQL durante il recupero delle colture.
+     */
+    public Collection<ColtureDTO> fetchColturesByOwner(int ownerId) {
+        try {
+            return jdbc.query("SELECT cv.id, cv.data, cv.stato, cv.idprogetto, c.id, c.tipologia " +
+                            "FROM Coltivazione cv " +
+                            "INNER JOIN Coltura c ON c.id = cv.idcoltura " +
+                            "INNER JOIN progetto p ON p.id = cv.idprogetto " +
+                            "INNER JOIN lotto l ON l.id = p.idlotto " +
+                            "WHERE l.idutente = ? ORDER BY c.tipologia",
+                    stmt -> stmt.setInt(1, ownerId),
+                    rs -> new ColtureDTO(
+                            rs.getInt(1),
+                            rs.getDate(2).toLocalDate(),
+                            ColtureStatus.fromString(rs.getString(3)),
+                            rs.getInt(4),
+                            rs.getInt(5),
+                            rs.getString(6)
+                    ));
         } catch (SQLException ex) {
             throw new RuntimeException("Errore durante il recupero delle colture: " + ex.getMessage(), ex);
         }
+    }
 
-        return results;
+    /**
+     * Recupera tutte le coltivazioni dei lotti posseduti dall'utente indicato, identificate dai nomi
+     * di lotto, progetto e coltura, con un'unica query.
+     * Utilizzato per risolvere in blocco i riferimenti testuali alle coltivazioni (ad esempio durante un'importazione).
+     * @param ownerId L'ID dell'utente proprietario dei lotti.
+     * @return Una {@link Collection} di {@link ColtureLocationDTO}.
+     * @throws RuntimeException Se si verifica un errore SQL durante il recupero delle coltivazioni.
+     */
+    public Collection<ColtureLocationDTO> fetchColtureLocationsByOwner(int ownerId) {
+        try {
+            return jdbc.query("SELECT l.nome, p.nome, c.tipologia, l.id, cv.id " +
+                            "FROM lotto l " +
+                            "INNER JOIN progetto p ON p.idlotto = l.id " +
+                            "INNER JOIN Coltivazione cv ON cv.idprogetto = p.id " +
+                            "INNER JOIN Coltura c ON c.id = cv.idcoltura " +
+                            "WHERE l.idutente = ?",
+                    stmt -> stmt.setInt(1, ownerId),
+                    rs -> new ColtureLocationDTO(
+                            rs.getString(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getInt(4),
+                            rs.getInt(5)
+                    ));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero delle coltivazioni: " + ex.getMessage(), ex);
+        }
     }
-}
\ No newline at end of file
+}
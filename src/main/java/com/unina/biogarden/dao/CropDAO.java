@@ -2,22 +2,25 @@ package com.unina.biogarden.dao;
 
 import com.unina.biogarden.database.ConnectionManager;
 import com.unina.biogarden.dto.CropDTO;
+import com.unina.biogarden.dto.CropUsageDTO;
 
-import javax.sql.DataSource;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Data Access Object (DAO) per la gestione delle operazioni CRUD relative ai tipi di coltura (Crop) nel database.
- * Questa classe fornisce metodi per creare nuovi tipi di coltura e per recuperare tutti i tipi di coltura esistenti.
- * Utilizza {@link ConnectionManager} per ottenere connessioni al database.
+ * Questa classe fornisce metodi per creare nuovi tipi di coltura e per recuperare tutti i tipi di coltura esistenti
+ * con il loro utilizzo.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}.
  * @author Il Tuo Nome
  */
 public class CropDAO {
 
-    private final DataSource dataSource = ConnectionManager.getDataSource();
+    private static final JdbcTemplate.RowMapper<CropUsageDTO> CROP_USAGE_MAPPER =
+            rs -> new CropUsageDTO(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4));
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
 
     /**
      * Crea un nuovo tipo di coltura nel database.
@@ -28,15 +31,13 @@ public class CropDAO {
      * @throws RuntimeException se si verifica un errore SQL generico durante la creazione della coltura.
      */
     public CropDTO creaColtura(String tipologia, int tempoMaturazione) {
-        try (Connection conn = dataSource.getConnection()) {
-
-            CallableStatement stmnt = conn.prepareCall("{ ? = call CreaColtura(?, ?) }");
-            stmnt.registerOutParameter(1, java.sql.Types.INTEGER); // Parametro di ritorno (ID)
-            stmnt.setString(2, tipologia);
-            stmnt.setInt(3, tempoMaturazione);
-            stmnt.execute();
-
-            int idColtura = stmnt.getInt(1);
+        try {
+            // Il parametro 1 è il valore di ritorno (ID)
+            int idColtura = jdbc.callForInt("{ ? = call CreaColtura(?, ?) }", stmnt -> {
+                stmnt.setString(2, tipologia);
+                stmnt.setInt(3, tempoMaturazione);
+            });
+            DaoCaches.CROPS.invalidate(DaoCaches.ALL);
             return new CropDTO(idColtura, tipologia, tempoMaturazione);
 
         } catch (SQLException ex) {
@@ -50,42 +51,23 @@ public class CropDAO {
     }
 
     /**
-     * Recupera tutti i tipi di coltura (Crop) presenti nel database.
-     * @return Una {@link Collection} di oggetti {@link CropDTO} che rappresentano tutti i tipi di coltura.
-     * Restituisce una collezione vuota se non ci sono colture o in caso di errore.
+     * Recupera tutti i tipi di coltura (Crop) insieme al numero di coltivazioni che li utilizzano,
+     * con un'unica query aggregata (Coltura LEFT JOIN Coltivazione GROUP BY).
+     * L'elenco viene servito, quando possibile, dalla cache {@link DaoCaches#CROPS}, invalidata quando cambiano
+     * le colture o le coltivazioni; in caso di errore non viene memorizzato nulla.
+     * @return Una {@link Collection} immutabile di {@link CropUsageDTO}, ordinata per tipologia.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero delle colture.
      */
-    public Collection<CropDTO> fetchAllCrop() {
-        Set<CropDTO> colture = new HashSet<>();
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM Coltura");
-            ResultSet rs = stmnt.executeQuery();
-            while (rs.next()) {
-                colture.add(new CropDTO(
-                        rs.getInt("id"),
-                        rs.getString("tipologia"),
-                        rs.getInt("tempomaturazione")
-                ));
-            }
-        } catch (SQLException ex) {
-            System.err.println("Errore durante il recupero di tutti i tipi di coltura: " + ex.getMessage());
-            ex.printStackTrace(); // Log dell'eccezione per il debug
-        }
-        return colture;
-    }
-
-    public int countCropProjects(int cropId) {
-        int count = 0;
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT COUNT(*) FROM Coltivazione WHERE idcoltura = ?");
-            stmnt.setInt(1, cropId);
-            ResultSet rs = stmnt.executeQuery();
-            if (rs.next()) {
-                count = rs.getInt(1);
-            }
+    public Collection<CropUsageDTO> fetchAllCropWithUsage() {
+        try {
+            return DaoCaches.CROPS.get(DaoCaches.ALL, key -> List.copyOf(jdbc.query(
+                    "SELECT c.id, c.tipologia, c.tempomaturazione, COUNT(cv.id) " +
+                            "FROM Coltura c LEFT JOIN Coltivazione cv ON cv.idcoltura = c.id " +
+                            "GROUP BY c.id, c.tipologia, c.tempomaturazione " +
+                            "ORDER BY c.tipologia",
+                    JdbcTemplate.StatementBinder.NONE, CROP_USAGE_MAPPER)));
         } catch (SQLException ex) {
-            System.err.println("Errore durante il conteggio dei progetti per la coltura: " + ex.getMessage());
-            ex.printStackTrace(); // Log dell'eccezione per il debug
+            throw new RuntimeException("Errore durante il recupero dei tipi di coltura: " + ex.getMessage(), ex);
         }
-        return count;
     }
-}
\ No newline at end of file
+}
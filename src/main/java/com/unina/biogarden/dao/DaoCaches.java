@@ -0,0 +1,99 @@
+package com.unina.biogarden.dao;
+
+import com.unina.biogarden.dto.CropUsageDTO;
+import com.unina.biogarden.dto.LotDTO;
+import com.unina.biogarden.dto.ProjectDTO;
+import com.unina.biogarden.utils.BoundedCache;
+
+import java.util.List;
+
+/**
+ * Cache read-through condivise dai DAO per le entità che cambiano di rado ma vengono richieste spesso:
+ * i lotti di un proprietario (letti dai form e dal report), i tipi di coltura con il loro utilizzo
+ * e il progetto di una coltivazione. Le cache sono statiche perché i servizi creano nuove istanze dei DAO,
+ * e vengono invalidate per singola voce dai percorsi di scrittura dei DAO stessi.
+ * La capacità di ogni cache è configurabile tramite proprietà di sistema
+ * (ad esempio {@code -Dbiogarden.cache.lots=2048}).
+ * @author Il Tuo Nome
+ */
+public final class DaoCaches {
+
+    /**
+     * Chiave unica della cache che contiene l'elenco completo dei tipi di coltura con il loro utilizzo.
+     */
+    static final String ALL = "*";
+
+    /**
+     * Lotti per ID del proprietario.
+     */
+    static final BoundedCache<Integer, List<LotDTO>> LOTS =
+            new BoundedCache<>("lotti", Integer.getInteger("biogarden.cache.lots", 64));
+
+    /**
+     * Progetti per ID di una loro coltivazione.
+     */
+    static final BoundedCache<Integer, ProjectDTO> PROJECTS_BY_COLTURE =
+            new BoundedCache<>("progetti per coltivazione", Integer.getInteger("biogarden.cache.projectsByColture", 2048));
+
+    /**
+     * Elenco completo dei tipi di coltura con il numero di coltivazioni che li utilizzano,
+     * memorizzato sotto la chiave {@link #ALL}.
+     */
+    static final BoundedCache<String, List<CropUsageDTO>> CROPS = new BoundedCache<>("colture", 1);
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private DaoCaches() {
+    }
+
+    /**
+     * Restituisce i contatori (hit, miss, espulsioni) di tutte le cache dei DAO.
+     * @return Una {@link List} di {@link BoundedCache.Stats}, una per cache.
+     */
+    public static List<BoundedCache.Stats> stats() {
+        return List.of(LOTS.stats(), PROJECTS_BY_COLTURE.stats(), CROPS.stats());
+    }
+
+    /**
+     * Rimuove dalla cache i lotti del proprietario indicato.
+     * @param ownerId L'ID del proprietario di un lotto modificato.
+     */
+    public static void invalidateOwnerLots(int ownerId) {
+        LOTS.invalidate(ownerId);
+    }
+
+    /**
+     * Segnala la modifica di un progetto. Poiché la cache per coltivazione non è indicizzata per progetto,
+     * viene svuotata interamente.
+     */
+    public static void invalidateProjects() {
+        PROJECTS_BY_COLTURE.invalidateAll();
+    }
+
+    /**
+     * Rimuove dalla cache il progetto associato alla coltivazione indicata e l'elenco dei tipi di coltura,
+     * il cui numero di coltivazioni può essere cambiato.
+     * @param coltureId L'ID della coltivazione modificata.
+     */
+    public static void invalidateColture(int coltureId) {
+        PROJECTS_BY_COLTURE.invalidate(coltureId);
+        CROPS.invalidate(ALL);
+    }
+
+    /**
+     * Rimuove dalla cache l'elenco dei tipi di coltura.
+     */
+    public static void invalidateCrops() {
+        CROPS.invalidate(ALL);
+    }
+
+    /**
+     * Svuota tutte le cache dei DAO, ad esempio quando i dati sono stati modificati al di fuori dell'applicazione.
+     */
+    public static void invalidateAll() {
+        LOTS.invalidateAll();
+        PROJECTS_BY_COLTURE.invalidateAll();
+        CROPS.invalidateAll();
+    }
+}
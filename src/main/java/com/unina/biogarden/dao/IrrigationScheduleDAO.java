@@ -0,0 +1,237 @@
+package com.unina.biogarden.dao;
+
+import com.unina.biogarden.database.ConnectionManager;
+import com.unina.biogarden.dto.activity.IrrigationScheduleDTO;
+import com.unina.biogarden.dto.activity.ScheduleSyncDTO;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) per la gestione dei piani di irrigazione periodica e delle loro occorrenze.
+ * Un piano è salvato nella tabella PianoIrrigazione; le sue occorrenze sono attività di irrigazione
+ * pianificate collegate al piano, che vengono create, rimosse e riassegnate con istruzioni basate su insiemi.
+ * Le operazioni sui piani sono limitate alle coltivazioni dei lotti del proprietario indicato.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}.
+ * @author Il Tuo Nome
+ */
+public class IrrigationScheduleDAO {
+    private static final String SCHEDULE_COLUMNS = "id, idcoltivazione, idutente, datainizio, datafine, intervallogiorni";
+
+    /**
+     * Condizione che limita le coltivazioni a quelle dei lotti di un proprietario, il cui ID è il parametro.
+     */
+    private static final String OWNED_COLTURES = "idcoltivazione IN (SELECT c.id FROM Coltivazione c " +
+            "INNER JOIN progetto p ON p.id = c.idprogetto INNER JOIN lotto l ON l.id = p.idlotto WHERE l.idutente = ?)";
+
+    private static final JdbcTemplate.RowMapper<IrrigationScheduleDTO> SCHEDULE_MAPPER = rs -> new IrrigationScheduleDTO(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getInt(3),
+            rs.getObject(4, LocalDate.class),
+            rs.getObject(5, LocalDate.class),
+            rs.getInt(6)
+    );
+
+    /**
+     * Riallinea le occorrenze future di un piano alle date previste, con un'unica istruzione.
+     * Le occorrenze pianificate in date non più previste vengono eliminate, quelle rimaste vengono assegnate
+     * all'agricoltore del piano e le date previste senza occorrenza vengono inserite in blocco.
+     * Le occorrenze già avviate, terminate o archiviate non vengono mai modificate.
+     * Tutte le sotto-istruzioni leggono lo stesso snapshot, quindi l'inserimento non vede le eliminazioni:
+     * le date eliminate sono per costruzione diverse da quelle previste.
+     */
+    private static final String SYNC_ACTIVITIES =
+            "WITH previste AS (SELECT unnest(?::date[]) AS data), " +
+                    "rimosse AS (DELETE FROM Attivita a WHERE a.idpiano = ? AND NOT a.archiviata " +
+                    "AND a.stato = 'pianificata' AND a.data >= ? AND a.data NOT IN (SELECT data FROM previste) " +
+                    "RETURNING a.id), " +
+                    "riassegnate AS (UPDATE Attivita a SET idutente = pi.idutente, versione = versione + 1 " +
+                    "FROM PianoIrrigazione pi WHERE pi.id = ? AND a.idpiano = pi.id AND NOT a.archiviata " +
+                    "AND a.stato = 'pianificata' AND a.data >= ? AND a.idutente <> pi.idutente " +
+                    "AND a.data IN (SELECT data FROM previste) RETURNING a.id), " +
+                    "aggiunte AS (INSERT INTO Attivita (data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, idpiano) " +
+                    "SELECT d.data, 'pianificata', 'irrigazione', p.idlotto, pi.idcoltivazione, pi.idutente, pi.id " +
+                    "FROM PianoIrrigazione pi " +
+                    "INNER JOIN Coltivazione c ON c.id = pi.idcoltivazione " +
+                    "INNER JOIN progetto p ON p.id = c.idprogetto " +
+                    "CROSS JOIN previste d " +
+                    "WHERE pi.id = ? AND NOT EXISTS (SELECT 1 FROM Attivita a WHERE a.idpiano = pi.id AND a.data = d.data) " +
+                    "RETURNING id) " +
+                    "SELECT (SELECT COUNT(*) FROM aggiunte), (SELECT COUNT(*) FROM rimosse), (SELECT COUNT(*) FROM riassegnate)";
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
+
+    /**
+     * Salva un nuovo piano di irrigazione su una coltivazione del proprietario.
+     * @param ownerId L'ID del proprietario.
+     * @param schedule Il piano da salvare; il suo ID viene ignorato.
+     * @return L'ID generato per il piano.
+     * @throws IllegalStateException se la coltivazione non esiste o non appartiene al proprietario.
+     * @throws RuntimeException se si verifica un errore SQL durante l'inserimento.
+     */
+    public int insertSchedule(int ownerId, IrrigationScheduleDTO schedule) {
+        try {
+            Integer id = jdbc.queryForObject("INSERT INTO PianoIrrigazione (idcoltivazione, idutente, datainizio, datafine, intervallogiorni) " +
+                            "SELECT ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM Coltivazione c " +
+                            "INNER JOIN progetto p ON p.id = c.idprogetto INNER JOIN lotto l ON l.id = p.idlotto " +
+                            "WHERE c.id = ? AND l.idutente = ?) RETURNING id",
+                    stmnt -> {
+                        stmnt.setInt(1, schedule.coltureId());
+                        stmnt.setInt(2, schedule.farmerId());
+                        stmnt.setDate(3, Date.valueOf(schedule.startDate()));
+                        stmnt.setDate(4, Date.valueOf(schedule.endDate()));
+                        stmnt.setInt(5, schedule.intervalDays());
+                        stmnt.setInt(6, schedule.coltureId());
+                        stmnt.setInt(7, ownerId);
+                    }, rs -> rs.getInt(1));
+            if (id == null) {
+                throw new IllegalStateException("Coltivazione non trovata con ID: " + schedule.coltureId());
+            }
+            return id;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il salvataggio del piano di irrigazione: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Aggiorna la ricorrenza e l'agricoltore di un piano di irrigazione del proprietario.
+     * La coltivazione del piano non può essere cambiata.
+     * La riga del piano resta bloccata fino alla fine della transazione, così che due modifiche concorrenti
+     * dello stesso piano non riallineino le occorrenze contemporaneamente.
+     * @param ownerId L'ID del proprietario.
+     * @param schedule Il piano con i nuovi valori.
+     * @throws IllegalStateException se il piano non esiste o non appartiene al proprietario.
+     * @throws RuntimeException se si verifica un errore SQL durante l'aggiornamento.
+     */
+    public void updateSchedule(int ownerId, IrrigationScheduleDTO schedule) {
+        try {
+            int updated = jdbc.update("UPDATE PianoIrrigazione SET idutente = ?, datainizio = ?, datafine = ?, intervallogiorni = ? " +
+                            "WHERE id = ? AND idcoltivazione = ? AND " + OWNED_COLTURES,
+                    stmnt -> {
+                        stmnt.setInt(1, schedule.farmerId());
+                        stmnt.setDate(2, Date.valueOf(schedule.startDate()));
+                        stmnt.setDate(3, Date.valueOf(schedule.endDate()));
+                        stmnt.setInt(4, schedule.intervalDays());
+                        stmnt.setInt(5, schedule.id());
+                        stmnt.setInt(6, schedule.coltureId());
+                        stmnt.setInt(7, ownerId);
+                    });
+            if (updated == 0) {
+                throw new IllegalStateException("Piano di irrigazione non trovato con ID: " + schedule.id());
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'aggiornamento del piano di irrigazione: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Verifica che un piano appartenga al proprietario e ne blocca la riga fino alla fine della transazione,
+     * così che le sue occorrenze possano essere riallineate prima di modificarlo o eliminarlo.
+     * @param ownerId L'ID del proprietario.
+     * @param scheduleId L'ID del piano.
+     * @throws IllegalStateException se il piano non esiste o non appartiene al proprietario.
+     * @throws RuntimeException se si verifica un errore SQL durante la verifica.
+     */
+    public void lockSchedule(int ownerId, int scheduleId) {
+        Integer locked;
+        try {
+            locked = jdbc.queryForObject("SELECT id FROM PianoIrrigazione WHERE id = ? AND " + OWNED_COLTURES + " FOR UPDATE",
+                    stmnt -> {
+                        stmnt.setInt(1, scheduleId);
+                        stmnt.setInt(2, ownerId);
+                    }, rs -> rs.getInt(1));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la verifica del piano di irrigazione: " + ex.getMessage(), ex);
+        }
+        if (locked == null) {
+            throw new IllegalStateException("Piano di irrigazione non trovato con ID: " + scheduleId);
+        }
+    }
+
+    /**
+     * Elimina un piano di irrigazione del proprietario.
+     * Le occorrenze ancora presenti restano come attività indipendenti.
+     * @param ownerId L'ID del proprietario.
+     * @param scheduleId L'ID del piano da eliminare.
+     * @throws IllegalStateException se il piano non esiste o non appartiene al proprietario.
+     * @throws RuntimeException se si verifica un errore SQL durante l'eliminazione.
+     */
+    public void deleteSchedule(int ownerId, int scheduleId) {
+        try {
+            int deleted = jdbc.update("DELETE FROM PianoIrrigazione WHERE id = ? AND " + OWNED_COLTURES,
+                    stmnt -> {
+                        stmnt.setInt(1, scheduleId);
+                        stmnt.setInt(2, ownerId);
+                    });
+            if (deleted == 0) {
+                throw new IllegalStateException("Piano di irrigazione non trovato con ID: " + scheduleId);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'eliminazione del piano di irrigazione: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Recupera i piani di irrigazione di una coltivazione del proprietario, ordinati per data di inizio.
+     * @param ownerId L'ID del proprietario.
+     * @param coltureId L'ID della coltivazione.
+     * @return La {@link List} dei piani della coltivazione.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero.
+     */
+    public List<IrrigationScheduleDTO> fetchSchedulesByColture(int ownerId, int coltureId) {
+        try {
+            return jdbc.query("SELECT " + SCHEDULE_COLUMNS + " FROM PianoIrrigazione WHERE idcoltivazione = ? AND " +
+                            OWNED_COLTURES + " ORDER BY datainizio, id",
+                    stmnt -> {
+                        stmnt.setInt(1, coltureId);
+                        stmnt.setInt(2, ownerId);
+                    }, SCHEDULE_MAPPER);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero dei piani di irrigazione: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Riallinea le occorrenze di un piano a partire da una data, applicando solo le differenze:
+     * le occorrenze pianificate che cadono in date ancora previste vengono mantenute (con le eventuali modifiche),
+     * le altre vengono eliminate e le date previste mancanti vengono inserite con un'unica istruzione.
+     * Le attività precedenti a {@code from} e quelle non più pianificate non vengono toccate.
+     * Va invocato dopo aver salvato il piano, nella stessa {@link com.unina.biogarden.database.UnitOfWork}.
+     * Le occorrenze di anni senza partizione finiscono nella partizione di default delle attività correnti,
+     * da cui vengono spostate quando la manutenzione crea la partizione dell'anno.
+     * @param scheduleId L'ID del piano.
+     * @param dates Le date previste dal piano a partire da {@code from}; una lista vuota elimina tutte le occorrenze future.
+     * @param from La data a partire dalla quale riallineare le occorrenze.
+     * @return Il numero di occorrenze aggiunte, rimosse e riassegnate.
+     * @throws RuntimeException se si verifica un errore SQL durante il riallineamento.
+     */
+    public ScheduleSyncDTO syncActivities(int scheduleId, List<LocalDate> dates, LocalDate from) {
+        Date[] values = dates.stream().map(Date::valueOf).toArray(Date[]::new);
+        try {
+            return jdbc.queryForObject(SYNC_ACTIVITIES, stmnt -> {
+                stmnt.setArray(1, stmnt.getConnection().createArrayOf("date", values));
+                stmnt.setInt(2, scheduleId);
+                stmnt.setDate(3, Date.valueOf(from));
+                stmnt.setInt(4, scheduleId);
+                stmnt.setDate(5, Date.valueOf(from));
+                stmnt.setInt(6, scheduleId);
+            }, IrrigationScheduleDAO::mapSync);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la generazione delle irrigazioni del piano: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Converte il risultato del riallineamento nel DTO corrispondente.
+     * @param rs Il {@link ResultSet} posizionato sulla riga con i tre conteggi.
+     * @return L'esito del riallineamento.
+     * @throws SQLException se si verifica un errore durante la lettura della riga.
+     */
+    private static ScheduleSyncDTO mapSync(ResultSet rs) throws SQLException {
+        return new ScheduleSyncDTO(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+    }
+}
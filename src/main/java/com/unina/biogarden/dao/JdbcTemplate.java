@@ -0,0 +1,289 @@
+package com.unina.biogarden.dao;
+
+import com.unina.biogarden.database.UnitOfWork;
+import org.postgresql.util.PGobject;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Template JDBC interno ai DAO, che incapsula il ciclo di vita di connessioni, statement e result set.
+ * Ogni risorsa viene chiusa in modo deterministico con try-with-resources, anche in caso di errore.
+ * Se il thread corrente è in una {@link UnitOfWork}, le operazioni usano la sua connessione invece del pool.
+ * Le query usano liste di colonne esplicite, così che i {@link RowMapper} leggano le colonne per posizione:
+ * gli indici sono fissati dalla lista della SELECT e non vengono cercati per nome ad ogni riga.
+ * I mapper sono costanti dei singoli DAO, create una sola volta.
+ * Le eccezioni SQL vengono propagate ai DAO, che le traducono nelle eccezioni applicative.
+ * @author Il Tuo Nome
+ */
+final class JdbcTemplate {
+
+    /**
+     * Imposta i parametri di uno statement prima dell'esecuzione.
+     */
+    @FunctionalInterface
+    interface StatementBinder {
+        /**
+         * Binder che non imposta alcun parametro.
+         */
+        StatementBinder NONE = stmnt -> {
+        };
+
+        void bind(PreparedStatement stmnt) throws SQLException;
+    }
+
+    /**
+     * Converte la riga corrente di un {@link ResultSet} in un oggetto.
+     * @param <T> Il tipo dell'oggetto prodotto.
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Operazione arbitraria su una connessione, per i casi non coperti dagli altri metodi
+     * (ad esempio la creazione di array SQL).
+     * @param <T> Il tipo del risultato.
+     */
+    @FunctionalInterface
+    interface ConnectionCallback<T> {
+        T doInConnection(Connection conn) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+
+    /**
+     * Crea un template che ottiene le connessioni dal {@link DataSource} fornito.
+     * @param dataSource Il pool di connessioni.
+     */
+    JdbcTemplate(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Connessione in uso da un'operazione del template.
+     * Viene chiusa al termine solo se è stata presa dal pool per l'operazione stessa, e non
+     * se appartiene all'{@link UnitOfWork} del thread corrente.
+     * @param connection La connessione.
+     * @param owned {@code true} se la connessione va restituita al pool al termine dell'operazione.
+     */
+    private record Lease(Connection connection, boolean owned) implements AutoCloseable {
+        @Override
+        public void close() throws SQLException {
+            if (owned) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Ottiene la connessione per un'operazione: quella dell'{@link UnitOfWork} del thread corrente,
+     * se presente, altrimenti una nuova connessione dal pool.
+     * @return La connessione da usare, da rilasciare con {@link Lease#close()} al termine dell'uso.
+     * @throws SQLException se non è possibile ottenere una connessione.
+     */
+    private Lease acquire() throws SQLException {
+        Connection bound = UnitOfWork.currentConnection();
+        return bound != null ? new Lease(bound, false) : new Lease(dataSource.getConnection(), true);
+    }
+
+    /**
+     * Esegue una query e converte tutte le righe restituite.
+     * @param sql La query da eseguire.
+     * @param binder L'oggetto che imposta i parametri della query.
+     * @param mapper Il mapper delle righe.
+     * @param <T> Il tipo degli oggetti prodotti.
+     * @return Una {@link List} con un elemento per riga, nell'ordine restituito dal database.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) throws SQLException {
+        try (Lease lease = acquire();
+             PreparedStatement stmnt = lease.connection().prepareStatement(sql)) {
+            binder.bind(stmnt);
+            List<T> results = new ArrayList<>();
+            try (ResultSet rs = stmnt.executeQuery()) {
+                while (rs.next()) {
+                    results.add(mapper.map(rs));
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Esegue una query che restituisce al più una riga.
+     * @param sql La query da eseguire.
+     * @param binder L'oggetto che imposta i parametri della query.
+     * @param mapper Il mapper della riga.
+     * @param <T> Il tipo dell'oggetto prodotto.
+     * @return L'oggetto corrispondente alla prima riga, o {@code null} se la query non restituisce righe.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    <T> T queryForObject(String sql, StatementBinder binder, RowMapper<T> mapper) throws SQLException {
+        try (Lease lease = acquire();
+             PreparedStatement stmnt = lease.connection().prepareStatement(sql)) {
+            binder.bind(stmnt);
+            try (ResultSet rs = stmnt.executeQuery()) {
+                return rs.next() ? mapper.map(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Esegue un'istruzione di modifica (INSERT, UPDATE, DELETE).
+     * @param sql L'istruzione da eseguire.
+     * @param binder L'oggetto che imposta i parametri dell'istruzione.
+     * @return Il numero di righe modificate.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    int update(String sql, StatementBinder binder) throws SQLException {
+        try (Lease lease = acquire();
+             PreparedStatement stmnt = lease.connection().prepareStatement(sql)) {
+            binder.bind(stmnt);
+            return stmnt.executeUpdate();
+        }
+    }
+
+    /**
+     * Invoca una stored function che restituisce un intero, nella forma {@code { ? = call Funzione(?, ...) }}.
+     * Il parametro 1 è il valore di ritorno: il binder imposta i parametri a partire dall'indice 2.
+     * @param sql La chiamata da eseguire.
+     * @param binder L'oggetto che imposta i parametri della chiamata.
+     * @return Il valore restituito dalla funzione.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    int callForInt(String sql, StatementBinder binder) throws SQLException {
+        try (Lease lease = acquire();
+             CallableStatement stmnt = lease.connection().prepareCall(sql)) {
+            stmnt.registerOutParameter(1, Types.INTEGER);
+            binder.bind(stmnt);
+            stmnt.execute();
+            return stmnt.getInt(1);
+        }
+    }
+
+    /**
+     * Invoca una stored procedure senza valore di ritorno.
+     * @param sql La chiamata da eseguire.
+     * @param binder L'oggetto che imposta i parametri della chiamata.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    void call(String sql, StatementBinder binder) throws SQLException {
+        try (Lease lease = acquire();
+             CallableStatement stmnt = lease.connection().prepareCall(sql)) {
+            binder.bind(stmnt);
+            stmnt.execute();
+        }
+    }
+
+    /**
+     * Esegue un'operazione arbitraria su una connessione, chiudendola al termine.
+     * @param callback L'operazione da eseguire.
+     * @param <T> Il tipo del risultato.
+     * @return Il risultato dell'operazione.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    <T> T execute(ConnectionCallback<T> callback) throws SQLException {
+        try (Lease lease = acquire()) {
+            return callback.doInConnection(lease.connection());
+        }
+    }
+
+    /**
+     * Esegue la query e consegna i risultati al consumatore a blocchi di al più {@code chunkSize} righe.
+     * Il driver PostgreSQL usa un cursore lato server solo se la connessione non è in autocommit e
+     * se è impostata una fetch size: la query viene quindi eseguita in una transazione di sola lettura,
+     * così che la memoria occupata resti costante e i primi risultati siano disponibili subito.
+     * Il consumatore viene invocato sul thread chiamante, mentre la connessione è ancora aperta:
+     * non deve quindi eseguire operazioni lente o bloccanti.
+     * @param sql La query da eseguire.
+     * @param binder L'oggetto che imposta i parametri della query.
+     * @param mapper Il mapper delle righe.
+     * @param chunkSize Il numero di righe per blocco, usato anche come fetch size del cursore.
+     * @param consumer Il consumatore che riceve ogni blocco come lista immutabile.
+     * @param <T> Il tipo degli oggetti prodotti.
+     * @throws SQLException se si verifica un errore SQL durante la lettura.
+     */
+    <T> void stream(String sql, StatementBinder binder, RowMapper<T> mapper,
+                    int chunkSize, Consumer<List<T>> consumer) throws SQLException {
+        try (Lease lease = acquire()) {
+            Connection conn = lease.connection();
+            if (!lease.owned()) {
+                // La connessione dell'unità di lavoro è già in una transazione: il cursore vive al suo interno
+                streamRows(conn, sql, binder, mapper, chunkSize, consumer);
+                return;
+            }
+
+            boolean autoCommit = conn.getAutoCommit();
+            boolean readOnly = conn.isReadOnly();
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            try {
+                streamRows(conn, sql, binder, mapper, chunkSize, consumer);
+                conn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setReadOnly(readOnly);
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Esegue la query su una connessione già in transazione e consegna le righe a blocchi.
+     * @param conn La connessione, con autocommit disattivato.
+     * @param sql La query da eseguire.
+     * @param binder L'oggetto che imposta i parametri della query.
+     * @param mapper Il mapper delle righe.
+     * @param chunkSize Il numero di righe per blocco e fetch size del cursore.
+     * @param consumer Il consumatore dei blocchi.
+     * @param <T> Il tipo degli oggetti prodotti.
+     * @throws SQLException se si verifica un errore SQL durante la lettura.
+     */
+    private static <T> void streamRows(Connection conn, String sql, StatementBinder binder, RowMapper<T> mapper,
+                                       int chunkSize, Consumer<List<T>> consumer) throws SQLException {
+        try (PreparedStatement stmnt = conn.prepareStatement(sql)) {
+            stmnt.setFetchSize(chunkSize);
+            binder.bind(stmnt);
+
+            List<T> chunk = new ArrayList<>(chunkSize);
+            try (ResultSet rs = stmnt.executeQuery()) {
+                while (rs.next()) {
+                    chunk.add(mapper.map(rs));
+                    if (chunk.size() == chunkSize) {
+                        consumer.accept(List.copyOf(chunk));
+                        chunk.clear();
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(List.copyOf(chunk));
+            }
+        }
+    }
+
+    /**
+     * Crea il valore di un tipo enumerato PostgreSQL da passare come parametro.
+     * @param type Il nome del tipo enumerato (es. "StatoAttivita").
+     * @param value Il valore testuale.
+     * @return Il {@link PGobject} corrispondente.
+     * @throws SQLException se il valore non può essere impostato.
+     */
+    static PGobject enumValue(String type, String value) throws SQLException {
+        PGobject obj = new PGobject();
+        obj.setType(type);
+        obj.setValue(value);
+        return obj;
+    }
+}
@@ -4,23 +4,25 @@ import com.unina.biogarden.database.ConnectionManager;
 import com.unina.biogarden.dto.LotDTO;
 import com.unina.biogarden.session.Session;
 
-import javax.sql.DataSource;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object (DAO) per la gestione delle operazioni CRUD relative ai lotti nel database.
- * Questa classe fornisce metodi per creare nuovi lotti, recuperare tutti i lotti
- * associati all'utente corrente e recuperare un lotto specifico tramite il suo ID.
- * Utilizza {@link ConnectionManager} per ottenere connessioni al database e
+ * Questa classe fornisce metodi per creare nuovi lotti e recuperare tutti i lotti
+ * associati all'utente corrente.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}, e
  * {@link Session} per accedere all'ID dell'utente proprietario.
  * @author Il Tuo Nome
  */
 public class LotDAO {
 
-    private final DataSource dataSource = ConnectionManager.getDataSource();
+    private static final JdbcTemplate.RowMapper<LotDTO> LOT_MAPPER =
+            rs -> new LotDTO(rs.getInt(1), rs.getString(2), rs.getInt(3));
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
 
     /**
      * Crea un nuovo lotto nel database.
@@ -33,17 +35,13 @@ public class LotDAO {
      */
     public LotDTO createPlot(String name, int area) {
         int ownerID = Session.getUtente().id();
-        try (Connection conn = dataSource.getConnection()) {
-            CallableStatement stmnt = conn.prepareCall("{ ? = call CreaLotto(?, ?,?) }");
-            stmnt.registerOutParameter(1, java.sql.Types.INTEGER);
-
-            stmnt.setString(2, name);
-            stmnt.setInt(3, area);
-            stmnt.setInt(4, ownerID);
-
-            stmnt.executeUpdate();
-
-            int plotID = stmnt.getInt(1);
+        try {
+            int plotID = jdbc.callForInt("{ ? = call CreaLotto(?, ?,?) }", stmnt -> {
+                stmnt.setString(2, name);
+                stmnt.setInt(3, area);
+                stmnt.setInt(4, ownerID);
+            });
+            DaoCaches.LOTS.invalidate(ownerID);
             return new LotDTO(plotID, name, area);
         } catch (SQLException ex) {
             System.err.println("Errore durante la creazione del lotto: " + ex.getMessage());
@@ -54,61 +52,38 @@ public class LotDAO {
 
     /**
      * Recupera tutti i lotti posseduti dall'utente attualmente loggato.
-     * @return Una {@link Collection} di oggetti {@link LotDTO} che rappresentano tutti i lotti
-     * dell'utente corrente. Restituisce una collezione vuota se non ci sono lotti
-     * o in caso di errore.
+     * L'elenco viene servito, quando possibile, dalla cache {@link DaoCaches#LOTS}.
+     * @return Una {@link Collection} immutabile di oggetti {@link LotDTO} che rappresentano tutti i lotti
+     * dell'utente corrente. Restituisce una collezione vuota se non ci sono lotti.
      * @throws RuntimeException se si verifica un errore SQL durante il recupero dei lotti.
      */
     public Collection<LotDTO> getAllLots() {
-        Set<LotDTO> lots = new HashSet<>();
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM lotto WHERE idutente = ?");
-
-            stmnt.setInt(1, Session.getUtente().id());
-            ResultSet rs = stmnt.executeQuery();
-
-            while (rs.next()) {
-                lots.add(new LotDTO(
-                        rs.getInt("id"),
-                        rs.getString("nome"),
-                        rs.getInt("area")
-                ));
-            }
+        int ownerID = Session.getUtente().id();
+        try {
+            return DaoCaches.LOTS.get(ownerID, key -> List.copyOf(jdbc.query("SELECT id, nome, area FROM lotto WHERE idutente = ?",
+                    stmnt -> stmnt.setInt(1, key), LOT_MAPPER)));
         } catch (SQLException ex) {
             System.err.println("Errore durante il recupero di tutti i lotti: " + ex.getMessage());
             ex.printStackTrace();
             throw new RuntimeException("Errore durante il recupero di tutti i lotti.", ex);
         }
-
-        return lots;
     }
 
     /**
-     * Recupera un lotto specifico dal database tramite il suo ID.
-     * @param id L'ID del lotto da recuperare.
-     * @return Un oggetto {@link LotDTO} che rappresenta il lotto trovato,
-     * o {@code null} se nessun lotto con l'ID specificato viene trovato
-     * o in caso di errore.
-     * @throws RuntimeException se si verifica un errore SQL durante il recupero del lotto.
+     * Legge tutti i lotti posseduti dall'utente attualmente loggato consegnandoli a blocchi,
+     * tramite un cursore lato server, invece di caricarli tutti in memoria.
+     * I lotti vengono consegnati ordinati per ID.
+     * @param chunkSize Il numero massimo di lotti per blocco.
+     * @param consumer Il consumatore che riceve ogni blocco di {@link LotDTO}.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero dei lotti.
      */
-    public LotDTO getLotById(int id) {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM lotto WHERE id = ?");
-            stmnt.setInt(1, id);
-            ResultSet rs = stmnt.executeQuery();
-
-            if (rs.next()) {
-                return new LotDTO(
-                        rs.getInt("id"),
-                        rs.getString("nome"),
-                        rs.getInt("area")
-                );
-            }
+    public void streamAllLots(int chunkSize, Consumer<List<LotDTO>> consumer) {
+        int ownerID = Session.getUtente().id();
+        try {
+            jdbc.stream("SELECT id, nome, area FROM lotto WHERE idutente = ? ORDER BY id",
+                    stmnt -> stmnt.setInt(1, ownerID), LOT_MAPPER, chunkSize, consumer);
         } catch (SQLException ex) {
-            System.err.println("Errore durante il recupero del lotto per ID: " + ex.getMessage());
-            ex.printStackTrace();
-            throw new RuntimeException("Errore durante il recupero del lotto per ID.", ex);
+            throw new RuntimeException("Errore durante il recupero di tutti i lotti.", ex);
         }
-        return null;
     }
 }
\ No newline at end of file
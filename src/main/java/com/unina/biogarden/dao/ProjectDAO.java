@@ -2,24 +2,37 @@ package com.unina.biogarden.dao;
 
 import com.unina.biogarden.database.ConnectionManager;
 import com.unina.biogarden.dto.ProjectDTO;
+import com.unina.biogarden.dto.ProjectWithLotDTO;
 
-import javax.sql.DataSource;
-import java.sql.*;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object (DAO) per la gestione delle operazioni CRUD relative ai progetti nel database.
- * Questa classe fornisce metodi per creare, recuperare progetti per lotto, recuperare tutti i progetti,
- * e recuperare progetti per ID o per ID di coltivazione associata.
- * Utilizza {@link ConnectionManager} per ottenere connessioni al database.
+ * Questa classe fornisce metodi per creare e copiare progetti, recuperare progetti per lotto o per proprietario,
+ * recuperare tutti i progetti, e recuperare progetti per ID o per ID di coltivazione associata.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}.
  * @author Il Tuo Nome
  */
 public class ProjectDAO {
 
-    private final DataSource dataSource = ConnectionManager.getDataSource();
+    private static final String PROJECT_QUERY =
+            "SELECT p.id, p.nome, p.datainizio, p.datafine, p.idlotto FROM progetto p";
+
+    private static final String PROJECT_WITH_LOT_QUERY =
+            "SELECT p.id, p.nome, p.datainizio, p.datafine, p.idlotto, l.nome FROM progetto p INNER JOIN lotto l ON l.id = p.idlotto";
+
+    private static final JdbcTemplate.RowMapper<ProjectDTO> PROJECT_MAPPER = ProjectDAO::mapProject;
+
+    private static final JdbcTemplate.RowMapper<ProjectWithLotDTO> PROJECT_WITH_LOT_MAPPER = ProjectDAO::mapWithLot;
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
 
     /**
      * Crea un nuovo progetto nel database.
@@ -33,15 +46,13 @@ public class ProjectDAO {
      * @throws RuntimeException se si verifica un errore SQL durante la creazione del progetto.
      */
     public ProjectDTO creaProgetto(String nome, LocalDate dataInizio, LocalDate dataFine, int idLotto) {
-        try (Connection conn = dataSource.getConnection()) {
-            CallableStatement stmnt = conn.prepareCall("{ ? = call CreaProgetto(?, ?, ?, ?) }");
-            stmnt.registerOutParameter(1, java.sql.Types.INTEGER);
-            stmnt.setString(2, nome);
-            stmnt.setDate(3, Date.valueOf(dataInizio));
-            stmnt.setDate(4, Date.valueOf(dataFine));
-            stmnt.setInt(5, idLotto);
-            stmnt.executeUpdate();
-            int idProgetto = stmnt.getInt(1);
+        try {
+            int idProgetto = jdbc.callForInt("{ ? = call CreaProgetto(?, ?, ?, ?) }", stmnt -> {
+                stmnt.setString(2, nome);
+                stmnt.setDate(3, Date.valueOf(dataInizio));
+                stmnt.setDate(4, Date.valueOf(dataFine));
+                stmnt.setInt(5, idLotto);
+            });
             return new ProjectDTO(idProgetto, nome, dataInizio, dataFine, idLotto);
         } catch (SQLException ex) {
             if (ex.getSQLState().equalsIgnoreCase("P0002")) { // Codice SQLSTATE per violazioni di integrità specifiche
@@ -53,21 +64,95 @@ public class ProjectDAO {
     }
 
     /**
-     * Recupera una collezione di progetti associati a un lotto specifico.
-     * @param idLotto L'ID del lotto per cui recuperare i progetti.
-     * @return Una {@link Collection} di {@link ProjectDTO} che rappresenta i progetti del lotto.
-     * @throws RuntimeException se si verifica un errore SQL durante il recupero dei progetti.
+     * Crea una copia di un progetto del proprietario indicato sullo stesso lotto, con le date spostate di un certo numero di giorni.
+     * La copia avviene con un'unica istruzione {@code INSERT ... SELECT}, senza rileggere il progetto di origine.
+     * @param ownerId L'ID del proprietario a cui il progetto di origine deve appartenere.
+     * @param projectId L'ID del progetto da copiare.
+     * @param nome Il nome del nuovo progetto.
+     * @param dayOffset Il numero di giorni di cui spostare le date (negativo per anticiparle).
+     * @return Un oggetto {@link ProjectDTO} che rappresenta il nuovo progetto.
+     * @throws IllegalStateException se il progetto di origine non esiste o non appartiene al proprietario.
+     * @throws RuntimeException se si verifica un errore SQL durante la copia.
      */
-    public Collection<ProjectDTO> fetchProjectsByLot(int idLotto) {
-        Set<ProjectDTO> progetti = new HashSet<>();
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM progetto WHERE idlotto = ?");
-            stmnt.setInt(1, idLotto);
-            populateCollection(stmnt, progetti);
+    public ProjectDTO cloneProject(int ownerId, int projectId, String nome, int dayOffset) {
+        ProjectDTO project;
+        try {
+            project = jdbc.queryForObject("INSERT INTO progetto (nome, datainizio, datafine, idlotto) " +
+                            "SELECT ?, p.datainizio + ?, p.datafine + ?, p.idlotto FROM progetto p " +
+                            "INNER JOIN lotto l ON l.id = p.idlotto WHERE p.id = ? AND l.idutente = ? " +
+                            "RETURNING id, nome, datainizio, datafine, idlotto",
+                    stmnt -> {
+                        stmnt.setString(1, nome);
+                        stmnt.setInt(2, dayOffset);
+                        stmnt.setInt(3, dayOffset);
+                        stmnt.setInt(4, projectId);
+                        stmnt.setInt(5, ownerId);
+                    }, PROJECT_MAPPER);
         } catch (SQLException ex) {
-            throw new RuntimeException("Errore durante il recupero dei progetti per il lotto con ID " + idLotto, ex);
+            throw new RuntimeException("Errore durante la copia del progetto con ID " + projectId + ": " + ex.getMessage(), ex);
+        }
+        if (project == null) {
+            throw new IllegalStateException("Progetto con ID " + projectId + " non trovato.");
+        }
+        return project;
+    }
+
+    /**
+     * Copia in un altro progetto tutte le coltivazioni di un progetto, con un'unica istruzione {@code INSERT ... SELECT}.
+     * Le date vengono spostate del numero di giorni indicato e le nuove coltivazioni partono dallo stato di attesa.
+     * @param sourceProjectId L'ID del progetto di origine.
+     * @param targetProjectId L'ID del progetto di destinazione.
+     * @param dayOffset Il numero di giorni di cui spostare le date.
+     * @return Il numero di coltivazioni copiate.
+     * @throws RuntimeException se si verifica un errore SQL durante la copia.
+     */
+    public int cloneColtures(int sourceProjectId, int targetProjectId, int dayOffset) {
+        try {
+            DaoCaches.invalidateCrops();
+            return jdbc.update("INSERT INTO Coltivazione (idcoltura, idprogetto, data, stato) " +
+                            "SELECT idcoltura, ?, data + ?, 'attesa' FROM Coltivazione WHERE idprogetto = ?",
+                    stmnt -> {
+                        stmnt.setInt(1, targetProjectId);
+                        stmnt.setInt(2, dayOffset);
+                        stmnt.setInt(3, sourceProjectId);
+                    });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la copia delle coltivazioni: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Copia il piano delle attività di un progetto nelle coltivazioni corrispondenti di un altro progetto,
+     * con un'unica istruzione {@code INSERT ... SELECT}. Le coltivazioni vengono abbinate per coltura,
+     * che è unica all'interno di un progetto, quindi le coltivazioni devono essere già state copiate.
+     * Vengono copiate solo le attività ancora pianificate e non archiviate: quelle già avviate o terminate
+     * appartengono alla storia del progetto di origine. Le attività copiate hanno le date spostate del numero
+     * di giorni indicato e non riportano le quantità effettivamente raccolte, quindi non contano nelle statistiche di raccolta.
+     * @param sourceProjectId L'ID del progetto di origine.
+     * @param targetProjectId L'ID del progetto di destinazione.
+     * @param dayOffset Il numero di giorni di cui spostare le date.
+     * @return Il numero di attività copiate.
+     * @throws RuntimeException se si verifica un errore SQL durante la copia.
+     */
+    public int cloneActivities(int sourceProjectId, int targetProjectId, int dayOffset) {
+        try {
+            return jdbc.update("INSERT INTO Attivita (data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, " +
+                            "quantitaSemi, UnitaMisuraSemi, QuantitaPrevistaRaccolta, UnitaMisuraRaccolta) " +
+                            "SELECT a.data + ?, 'pianificata', a.TipoAttivita, p.idlotto, nuova.id, a.idutente, " +
+                            "a.quantitaSemi, a.UnitaMisuraSemi, a.QuantitaPrevistaRaccolta, a.UnitaMisuraRaccolta " +
+                            "FROM Attivita a " +
+                            "INNER JOIN Coltivazione vecchia ON vecchia.id = a.idcoltivazione " +
+                            "INNER JOIN Coltivazione nuova ON nuova.idprogetto = ? AND nuova.idcoltura = vecchia.idcoltura " +
+                            "INNER JOIN progetto p ON p.id = nuova.idprogetto " +
+                            "WHERE vecchia.idprogetto = ? AND a.stato = 'pianificata' AND NOT a.archiviata",
+                    stmnt -> {
+                        stmnt.setInt(1, dayOffset);
+                        stmnt.setInt(2, targetProjectId);
+                        stmnt.setInt(3, sourceProjectId);
+                    });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante la copia delle attività: " + ex.getMessage(), ex);
         }
-        return progetti;
     }
 
     /**
@@ -77,91 +162,119 @@ public class ProjectDAO {
      * @throws RuntimeException se si verifica un errore SQL durante il recupero di tutti i progetti.
      */
     public Collection<ProjectDTO> fetchAllProjects() {
-        Set<ProjectDTO> progetti = new HashSet<>();
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM progetto");
-            populateCollection(stmnt, progetti);
+        try {
+            return new HashSet<>(jdbc.query(PROJECT_QUERY, JdbcTemplate.StatementBinder.NONE, PROJECT_MAPPER));
         } catch (SQLException ex) {
             throw new RuntimeException("Errore durante il recupero di tutti i progetti.", ex);
         }
-        return progetti;
     }
 
     /**
-     * Popola una collezione di {@link ProjectDTO} eseguendo una query su un {@link PreparedStatement}.
-     * Questo metodo è un'utility interna per evitare la duplicazione di codice.
-     * @param stmnt Il {@link PreparedStatement} già configurato con la query.
-     * @param progetti Il {@link Set} di {@link ProjectDTO} da popolare.
-     * @throws SQLException se si verifica un errore SQL durante l'esecuzione della query o la lettura del ResultSet.
+     * Legge i progetti dei lotti posseduti dall'utente indicato, insieme al nome del rispettivo lotto,
+     * consegnandoli a blocchi tramite un cursore lato server. I progetti vengono consegnati ordinati per ID.
+     * @param ownerId L'ID dell'utente proprietario dei lotti.
+     * @param chunkSize Il numero massimo di progetti per blocco.
+     * @param consumer Il consumatore che riceve ogni blocco di {@link ProjectWithLotDTO}.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero dei progetti.
+     */
+    public void streamProjectsWithLotByOwner(int ownerId, int chunkSize, Consumer<List<ProjectWithLotDTO>> consumer) {
+        try {
+            jdbc.stream(PROJECT_WITH_LOT_QUERY + " WHERE l.idutente = ? ORDER BY p.id",
+                    stmnt -> stmnt.setInt(1, ownerId), PROJECT_WITH_LOT_MAPPER, chunkSize, consumer);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero dei progetti del proprietario con ID " + ownerId, ex);
+        }
+    }
+
+    /**
+     * Recupera i progetti associati a un lotto specifico insieme al nome del lotto, con un'unica query.
+     * @param idLotto L'ID del lotto per cui recuperare i progetti.
+     * @return Una {@link Collection} di {@link ProjectWithLotDTO} che rappresenta i progetti del lotto.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero dei progetti.
      */
-    private static void populateCollection(PreparedStatement stmnt, Set<ProjectDTO> progetti) throws SQLException {
-        ResultSet rs = stmnt.executeQuery();
-        while (rs.next()) {
-            progetti.add(new ProjectDTO(
-                    rs.getInt("id"),
-                    rs.getString("nome"),
-                    rs.getObject("datainizio", LocalDate.class),
-                    rs.getObject("datafine", LocalDate.class),
-                    rs.getInt("idlotto")
-            ));
+    public Collection<ProjectWithLotDTO> fetchProjectsWithLotByLot(int idLotto) {
+        try {
+            return jdbc.query(PROJECT_WITH_LOT_QUERY + " WHERE p.idlotto = ?",
+                    stmnt -> stmnt.setInt(1, idLotto), PROJECT_WITH_LOT_MAPPER);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero dei progetti per il lotto con ID " + idLotto, ex);
         }
     }
 
     /**
-     * Recupera un progetto specifico dal database tramite il suo ID.
+     * Recupera un progetto specifico tramite il suo ID insieme al nome del lotto, con un'unica query.
      * @param projectId L'ID del progetto da recuperare.
-     * @return Un oggetto {@link ProjectDTO} che rappresenta il progetto trovato.
+     * @return Un oggetto {@link ProjectWithLotDTO} che rappresenta il progetto trovato.
      * @throws IllegalStateException se nessun progetto con l'ID specificato viene trovato.
      * @throws RuntimeException se si verifica un errore SQL durante il recupero del progetto.
      */
-    public ProjectDTO fetchProjectById(int projectId) {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM progetto WHERE id = ?");
-            stmnt.setInt(1, projectId);
-            ResultSet rs = stmnt.executeQuery();
-
-            if (rs.next()) {
-                return new ProjectDTO(
-                        rs.getInt("id"),
-                        rs.getString("nome"),
-                        rs.getObject("datainizio", LocalDate.class),
-                        rs.getObject("datafine", LocalDate.class),
-                        rs.getInt("idlotto")
-                );
-            } else {
-                throw new IllegalStateException("Progetto con ID " + projectId + " non trovato.");
-            }
+    public ProjectWithLotDTO fetchProjectWithLotById(int projectId) {
+        ProjectWithLotDTO project;
+        try {
+            project = jdbc.queryForObject(PROJECT_WITH_LOT_QUERY + " WHERE p.id = ?",
+                    stmnt -> stmnt.setInt(1, projectId), PROJECT_WITH_LOT_MAPPER);
         } catch (SQLException ex) {
             throw new RuntimeException("Errore durante il recupero del progetto con ID " + projectId, ex);
         }
+        if (project == null) {
+            throw new IllegalStateException("Progetto con ID " + projectId + " non trovato.");
+        }
+        return project;
     }
 
     /**
      * Recupera un progetto specifico dal database dato l'ID di una coltivazione associata.
+     * Il risultato viene servito, quando possibile, dalla cache {@link DaoCaches#PROJECTS_BY_COLTURE}.
      * @param coltureId L'ID della coltivazione per cui recuperare il progetto padre.
      * @return Un oggetto {@link ProjectDTO} che rappresenta il progetto trovato.
      * @throws IllegalStateException se nessun progetto è associato all'ID della coltivazione specificato.
      * @throws RuntimeException se si verifica un errore SQL durante il recupero del progetto.
      */
     public ProjectDTO fetchProjectByColtureId(int coltureId) {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT progetto.* FROM progetto INNER JOIN coltivazione ON coltivazione.idprogetto = progetto.id WHERE coltivazione.id = ?");
-            stmnt.setInt(1, coltureId);
-            ResultSet rs = stmnt.executeQuery();
-
-            if (rs.next()) {
-                return new ProjectDTO(
-                        rs.getInt("id"),
-                        rs.getString("nome"),
-                        rs.getObject("datainizio", LocalDate.class),
-                        rs.getObject("datafine", LocalDate.class),
-                        rs.getInt("idlotto")
-                );
-            } else {
-                throw new IllegalStateException("Progetto con ID coltura " + coltureId + " non trovato.");
-            }
+        ProjectDTO project;
+        try {
+            project = DaoCaches.PROJECTS_BY_COLTURE.get(coltureId, key -> jdbc.queryForObject(
+                    PROJECT_QUERY + " INNER JOIN coltivazione c ON c.idprogetto = p.id WHERE c.id = ?",
+                    stmnt -> stmnt.setInt(1, key), PROJECT_MAPPER));
         } catch (SQLException ex) {
             throw new RuntimeException("Errore durante il recupero del progetto con ID coltura " + coltureId, ex);
         }
+        if (project == null) {
+            throw new IllegalStateException("Progetto con ID coltura " + coltureId + " non trovato.");
+        }
+        return project;
+    }
+
+    /**
+     * Converte la riga corrente di una query basata su {@link #PROJECT_QUERY} in un {@link ProjectDTO}.
+     * @param rs Il {@link ResultSet} posizionato sulla riga da convertire.
+     * @return Il {@link ProjectDTO} corrispondente.
+     * @throws SQLException se si verifica un errore durante la lettura della riga.
+     */
+    private static ProjectDTO mapProject(ResultSet rs) throws SQLException {
+        return new ProjectDTO(
+                rs.getInt(1),
+                rs.getString(2),
+                rs.getObject(3, LocalDate.class),
+                rs.getObject(4, LocalDate.class),
+                rs.getInt(5)
+        );
+    }
+
+    /**
+     * Converte la riga corrente di una query basata su {@link #PROJECT_WITH_LOT_QUERY} in un {@link ProjectWithLotDTO}.
+     * @param rs Il {@link ResultSet} posizionato sulla riga da convertire.
+     * @return Il {@link ProjectWithLotDTO} corrispondente.
+     * @throws SQLException se si verifica un errore durante la lettura della riga.
+     */
+    private static ProjectWithLotDTO mapWithLot(ResultSet rs) throws SQLException {
+        return new ProjectWithLotDTO(
+                rs.getInt(1),
+                rs.getString(2),
+                rs.getObject(3, LocalDate.class),
+                rs.getObject(4, LocalDate.class),
+                rs.getInt(5),
+                rs.getString(6)
+        );
     }
-}
\ No newline at end of file
+}
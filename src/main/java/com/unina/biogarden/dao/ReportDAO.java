@@ -0,0 +1,113 @@
+package com.unina.biogarden.dao;
+
+import com.unina.biogarden.database.ConnectionManager;
+import com.unina.biogarden.dto.HarvestAggregateDTO;
+import com.unina.biogarden.dto.HarvestSampleDTO;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) per le interrogazioni di reportistica.
+ * Le aggregazioni vengono calcolate direttamente dal database, così che il numero di round trip
+ * e la quantità di dati trasferiti non dipendano dalla quantità di progetti, coltivazioni o attività presenti.
+ * Utilizza {@link ConnectionManager} per ottenere connessioni al database, tramite {@link JdbcTemplate}.
+ * @author Il Tuo Nome
+ */
+public class ReportDAO {
+
+    /**
+     * Statistiche delle raccolte con una quantità effettiva registrata; le raccolte senza quantità
+     * (ad esempio quelle ancora pianificate) non contano né nel numero né in media, minimo e massimo.
+     */
+    private static final String HARVEST_AGGREGATE_QUERY =
+            "SELECT l.id, l.nome, c.tipologia, a.UnitaMisuraRaccolta, COUNT(*), SUM(a.QuantitaEffettivaRaccolta), " +
+                    "MIN(a.QuantitaEffettivaRaccolta), MAX(a.QuantitaEffettivaRaccolta) " +
+                    "FROM Attivita a " +
+                    "INNER JOIN Coltivazione cv ON cv.id = a.idcoltivazione " +
+                    "INNER JOIN Coltura c ON c.id = cv.idcoltura " +
+                    "INNER JOIN progetto p ON p.id = cv.idprogetto " +
+                    "INNER JOIN lotto l ON l.id = p.idlotto " +
+                    "WHERE a.TipoAttivita = 'raccolta' AND a.QuantitaEffettivaRaccolta IS NOT NULL";
+
+    private static final String HARVEST_AGGREGATE_GROUP = " GROUP BY l.id, l.nome, c.tipologia, a.UnitaMisuraRaccolta";
+
+    private static final JdbcTemplate.RowMapper<HarvestAggregateDTO> HARVEST_AGGREGATE_MAPPER =
+            rs -> new HarvestAggregateDTO(
+                    rs.getInt(1),
+                    rs.getString(2),
+                    rs.getString(3),
+                    rs.getString(4),
+                    rs.getInt(5),
+                    rs.getLong(6),
+                    rs.getInt(7),
+                    rs.getInt(8)
+            );
+
+    private static final String HARVEST_SAMPLE_QUERY =
+            "SELECT l.id, c.tipologia, a.UnitaMisuraRaccolta, a.QuantitaEffettivaRaccolta " +
+                    "FROM Attivita a " +
+                    "INNER JOIN Coltivazione cv ON cv.id = a.idcoltivazione " +
+                    "INNER JOIN Coltura c ON c.id = cv.idcoltura " +
+                    "INNER JOIN progetto p ON p.id = cv.idprogetto " +
+                    "INNER JOIN lotto l ON l.id = p.idlotto " +
+                    "WHERE a.id = ? AND a.TipoAttivita = 'raccolta'";
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
+
+    /**
+     * Calcola le statistiche delle raccolte dei soli lotti posseduti dall'utente indicato,
+     * raggruppate per lotto, coltura e unità di misura, con un'unica query aggregata.
+     * Il filtro parte da {@code lotto.idutente} e scende per indice su progetti, coltivazioni e raccolte,
+     * così che il costo dipenda solo dai dati del proprietario.
+     * @param ownerId L'ID dell'utente proprietario dei lotti.
+     * @return Una {@link List} di {@link HarvestAggregateDTO}, una per chiave.
+     * @throws RuntimeException se si verifica un errore SQL durante il calcolo delle statistiche.
+     */
+    public List<HarvestAggregateDTO> fetchHarvestAggregatesByOwner(int ownerId) {
+        try {
+            return jdbc.query(HARVEST_AGGREGATE_QUERY + " AND l.idutente = ?" + HARVEST_AGGREGATE_GROUP,
+                    stmnt -> stmnt.setInt(1, ownerId), HARVEST_AGGREGATE_MAPPER);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il calcolo delle statistiche di raccolta: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Calcola le statistiche delle raccolte di una sola chiave (lotto, coltura e unità di misura),
+     * per ricalcolarne minimo e massimo dopo che una modifica o un'eliminazione li ha rimossi.
+     * @param lotId L'ID del lotto.
+     * @param cropName Il nome della coltura.
+     * @param unit L'unità di misura, anche {@code null}.
+     * @return Le statistiche della chiave, o {@code null} se non restano raccolte con quantità registrata.
+     * @throws RuntimeException se si verifica un errore SQL durante il calcolo delle statistiche.
+     */
+    public HarvestAggregateDTO fetchHarvestAggregate(int lotId, String cropName, String unit) {
+        try {
+            return jdbc.queryForObject(HARVEST_AGGREGATE_QUERY + " AND l.id = ? AND c.tipologia = ? " +
+                            "AND a.UnitaMisuraRaccolta IS NOT DISTINCT FROM ?" + HARVEST_AGGREGATE_GROUP,
+                    stmnt -> {
+                        stmnt.setInt(1, lotId);
+                        stmnt.setString(2, cropName);
+                        stmnt.setString(3, unit);
+                    }, HARVEST_AGGREGATE_MAPPER);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il calcolo delle statistiche di raccolta: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Recupera lotto, coltura, unità di misura e quantità effettiva di un'attività di raccolta.
+     * @param activityId L'ID dell'attività.
+     * @return Il {@link HarvestSampleDTO} dell'attività, o {@code null} se non esiste una raccolta con quell'ID.
+     * @throws RuntimeException se si verifica un errore SQL durante il recupero della raccolta.
+     */
+    public HarvestSampleDTO fetchHarvestSample(int activityId) {
+        try {
+            return jdbc.queryForObject(HARVEST_SAMPLE_QUERY, stmnt -> stmnt.setInt(1, activityId),
+                    rs -> new HarvestSampleDTO(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getObject(4, Integer.class)));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il recupero della raccolta: " + ex.getMessage(), ex);
+        }
+    }
+}
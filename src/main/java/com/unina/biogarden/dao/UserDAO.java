@@ -6,23 +6,28 @@ import com.unina.biogarden.enumerations.UserType;
 import com.unina.biogarden.exceptions.LoginFallitoException;
 import com.unina.biogarden.exceptions.UtenteEsistenteException;
 import com.unina.biogarden.utils.Utils;
-import org.postgresql.util.PGobject;
 
-import javax.sql.DataSource;
-import java.sql.CallableStatement;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.util.List;
 
 /**
  * Data Access Object (DAO) per la gestione delle operazioni di database relative agli utenti.
  * Questa classe fornisce metodi per la registrazione e il login degli utenti, interagendo con il database
- * tramite un pool di connessioni gestito da {@link ConnectionManager}.
+ * tramite un pool di connessioni gestito da {@link ConnectionManager} e {@link JdbcTemplate}.
  * @author Il Tuo Nome
  */
 public class UserDAO {
-    private final DataSource dataSource = ConnectionManager.getDataSource();
+    private static final String USER_COLUMNS = "id, nome, cognome, password, email, tipo";
+
+    private static final JdbcTemplate.RowMapper<UserDTO> USER_MAPPER =
+            rs -> new UserDTO(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                    rs.getString(5), UserType.fromString(rs.getString(6)));
+
+    private static final JdbcTemplate.RowMapper<UserDTO> PROFILE_MAPPER =
+            rs -> new UserDTO(rs.getInt(1), rs.getString(2), rs.getString(3), null,
+                    rs.getString(4), UserType.fromString(rs.getString(5)));
+
+    private final JdbcTemplate jdbc = new JdbcTemplate(ConnectionManager.getDataSource());
 
     /**
      * Registra un nuovo utente nel database.
@@ -39,22 +44,14 @@ public class UserDAO {
     public void registerUser(String nome, String cognome, String email, String password, UserType tipo) throws UtenteEsistenteException {
         String hashedPassword = Utils.encryptPassword(password);
 
-        try (Connection conn = dataSource.getConnection()) {
-            CallableStatement stmt = conn.prepareCall("{ ? = call RegistraUtente(?, ?, ?, ?, ?::TipoUtente) }");
-
-            stmt.registerOutParameter(1, java.sql.Types.INTEGER); // output
-            stmt.setString(2, nome);
-            stmt.setString(3, cognome);
-            stmt.setString(4, email);
-            stmt.setString(5, hashedPassword);  // password hashata
-
-            PGobject tipoUtenteObj = new PGobject();
-            tipoUtenteObj.setType("TipoUtente");
-            tipoUtenteObj.setValue(tipo.getType().toLowerCase());
-
-            stmt.setObject(6, tipoUtenteObj);
-
-            stmt.executeUpdate();
+        try {
+            jdbc.callForInt("{ ? = call RegistraUtente(?, ?, ?, ?, ?::TipoUtente) }", stmt -> {
+                stmt.setString(2, nome);
+                stmt.setString(3, cognome);
+                stmt.setString(4, email);
+                stmt.setString(5, hashedPassword);  // password hashata
+                stmt.setObject(6, JdbcTemplate.enumValue("TipoUtente", tipo.getType().toLowerCase()));
+            });
         } catch (SQLException ex) {
             // "P0001" è un codice SQLSTATE per errori definiti dall'utente, qui usato per utente esistente.
             if (ex.getSQLState().equalsIgnoreCase("P0001")) {
@@ -68,7 +65,8 @@ public class UserDAO {
     /**
      * Autentica un utente verificando la sua email e password rispetto alle credenziali memorizzate.
      * Recupera i dati dell'utente basandosi sull'email e quindi verifica la password fornita
-     * rispetto alla password hashata memorizzata.
+     * rispetto alla password hashata memorizzata. La verifica avviene dopo aver restituito
+     * la connessione al pool, così che il calcolo dell'hash non la tenga occupata.
      *
      * @param email L'indirizzo email dell'utente che tenta di accedere.
      * @param password La password in chiaro fornita dall'utente.
@@ -77,57 +75,55 @@ public class UserDAO {
      * @throws RuntimeException Se si verifica un errore SQL generale durante il processo di login.
      */
     public UserDTO loginUser(String email, String password) throws LoginFallitoException {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM utente WHERE email = ?");
-            stmnt.setString(1, email);
-
-            var rs = stmnt.executeQuery();
-            if (rs.next()) {
-                String storedPassword = rs.getString("password");
+        UserDTO user;
+        try {
+            user = jdbc.queryForObject("SELECT " + USER_COLUMNS + " FROM utente WHERE email = ?",
+                    stmnt -> stmnt.setString(1, email), USER_MAPPER);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante il login dell'utente.", ex);
+        }
 
-                if (Utils.verifyPassword(password, storedPassword)) {
-                    int id = rs.getInt("id");
-                    String nome = rs.getString("nome");
-                    String cognome = rs.getString("cognome");
-                    String tipo = rs.getString("tipo");
+        if (user == null) {
+            throw new LoginFallitoException("Utente non trovato.");
+        }
+        if (!Utils.verifyPassword(password, user.password())) {
+            throw new LoginFallitoException("Password errata.");
+        }
+        return new UserDTO(user.id(), user.nome(), user.cognome(), user.password(), email, user.tipo());
+    }
 
-                    return new UserDTO(id, nome, cognome, email, storedPassword, UserType.fromString(tipo));
-                } else {
-                    throw new LoginFallitoException("Password errata.");
-                }
-            } else {
-                throw new LoginFallitoException("Utente non trovato.");
-            }
+    /**
+     * Sostituisce l'hash della password di un utente, ad esempio per ricalcolarlo con un numero di iterazioni aggiornato.
+     *
+     * @param id L'ID dell'utente.
+     * @param hashedPassword Il nuovo hash della password, nel formato prodotto da {@link Utils#encryptPassword(String)}.
+     * @throws RuntimeException Se si verifica un errore SQL durante l'aggiornamento.
+     */
+    public void updatePasswordHash(int id, String hashedPassword) {
+        try {
+            jdbc.update("UPDATE utente SET password = ? WHERE id = ?", stmnt -> {
+                stmnt.setString(1, hashedPassword);
+                stmnt.setInt(2, id);
+            });
         } catch (SQLException ex) {
-            throw new RuntimeException("Errore durante il login dell'utente.", ex);
+            throw new RuntimeException("Errore durante l'aggiornamento della password dell'utente.", ex);
         }
     }
 
     /**
-     * Recupera una collezione di tutti gli utenti registrati nel database.
+     * Recupera i profili di tutti gli utenti registrati, senza le password.
+     * Vengono lette solo le colonne necessarie alla visualizzazione (ID, nome, cognome, email e tipo),
+     * così che gli hash delle password non vengano mai caricati in memoria.
      *
-     * @return Una {@link Collection} di {@link UserDTO} che rappresenta tutti gli utenti.
+     * @return Una {@link List} di {@link UserDTO} con il campo {@code password} impostato a {@code null}.
      * @throws RuntimeException Se si verifica un errore SQL durante il recupero degli utenti.
      */
-    public Collection<UserDTO> fetchAllUsers() {
-        try (Connection conn = dataSource.getConnection()) {
-            PreparedStatement stmnt = conn.prepareStatement("SELECT * FROM utente");
-            var rs = stmnt.executeQuery();
-            Collection<UserDTO> users = new java.util.ArrayList<>();
-
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                String nome = rs.getString("nome");
-                String cognome = rs.getString("cognome");
-                String email = rs.getString("email");
-                String password = rs.getString("password"); // Nota: questa sarà la password hashata
-                String tipo = rs.getString("tipo");
-
-                users.add(new UserDTO(id, nome, cognome, email, password, UserType.fromString(tipo)));
-            }
-            return users;
+    public List<UserDTO> fetchAllUserProfiles() {
+        try {
+            return jdbc.query("SELECT id, nome, cognome, email, tipo FROM utente",
+                    JdbcTemplate.StatementBinder.NONE, PROFILE_MAPPER);
         } catch (SQLException ex) {
             throw new RuntimeException("Errore durante il recupero degli utenti.", ex);
         }
     }
-}
\ No newline at end of file
+}
@@ -4,24 +4,41 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.UUID;
 
 /**
  * Gestisce le connessioni al database utilizzando HikariCP per il connection pooling.
  * Questa classe fornisce un'istanza singleton di {@link HikariDataSource} per garantire
  * un accesso efficiente e robusto al database. Inizializza il pool di connessioni
- * al caricamento della classe e offre metodi per recuperare il data source e chiudere il pool.
+ * al caricamento della classe, allinea lo schema del database tramite {@link SchemaMigrations}
+ * e offre metodi per recuperare il data source e chiudere il pool.
  * @author Il Tuo Nome
  */
 public class ConnectionManager {
+    private static final String JDBC_URL = "jdbc:postgresql://localhost:5432/BioGarden";
+    private static final String USERNAME = "postgres";
+    private static final String PASSWORD = "admin";
+
+    /**
+     * Identificativo di questa istanza dell'applicazione, usato come {@code application_name} delle sue connessioni.
+     * Permette di riconoscere le notifiche generate dalle proprie scritture (vedi {@link DatabaseNotifications}).
+     */
+    private static final String CLIENT_ID = "biogarden-" + UUID.randomUUID();
+
     private static final HikariDataSource dataSource;
 
     static {
         try {
             HikariConfig config = new HikariConfig();
-            config.setJdbcUrl("jdbc:postgresql://localhost:5432/BioGarden");
-            config.setUsername("postgres");
-            config.setPassword("admin");
+            config.setJdbcUrl(JDBC_URL);
+            config.setUsername(USERNAME);
+            config.setPassword(PASSWORD);
             config.setDriverClassName("org.postgresql.Driver");
+            config.addDataSourceProperty("ApplicationName", CLIENT_ID);
 
             config.setMaximumPoolSize(10); // Dimensione massima del pool di connessioni
             config.setConnectionTimeout(10000); // Timeout per ottenere una connessione dal pool (10 secondi)
@@ -29,6 +46,7 @@ public class ConnectionManager {
             config.setMaxLifetime(1800000); // Tempo massimo di vita di una connessione nel pool (30 minuti)
 
             dataSource = new HikariDataSource(config);
+            SchemaMigrations.migrate(dataSource);
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException("Errore nella configurazione del DB", e);
@@ -51,6 +69,32 @@ public class ConnectionManager {
         return dataSource;
     }
 
+    /**
+     * Restituisce l'identificativo di questa istanza dell'applicazione,
+     * impostato come {@code application_name} su tutte le sue connessioni.
+     *
+     * @return L'identificativo del client.
+     */
+    public static String getClientId() {
+        return CLIENT_ID;
+    }
+
+    /**
+     * Apre una nuova connessione al database esterna al pool, per gli usi che la tengono occupata
+     * a tempo indeterminato (come l'ascolto delle notifiche) e che quindi non devono sottrarre connessioni al pool.
+     * La connessione deve essere chiusa dal chiamante.
+     *
+     * @return Una nuova {@link Connection} dedicata.
+     * @throws SQLException Se non è possibile stabilire la connessione.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", USERNAME);
+        properties.setProperty("password", PASSWORD);
+        properties.setProperty("ApplicationName", CLIENT_ID);
+        return DriverManager.getConnection(JDBC_URL, properties);
+    }
+
     /**
      * Chiude il pool di connessioni di HikariCP.
      * Questo metodo dovrebbe essere chiamato quando l'applicazione si sta chiudendo in modo controllato
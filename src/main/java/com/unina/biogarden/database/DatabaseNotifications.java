@@ -0,0 +1,335 @@
+package com.unina.biogarden.database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ascolta le notifiche PostgreSQL ({@code LISTEN/NOTIFY}) pubblicate dai trigger sulle tabelle del sistema BioGarden,
+ * così che le modifiche fatte da altri client raggiungano cache e schermate aperte senza polling.
+ * I trigger (vedi {@code db/migration/V4__notifiche.sql}) pubblicano sul canale {@code biogarden_<tabella>} un payload
+ * nella forma {@code id:idPadre:client}, dove {@code client} è l'{@code application_name} della connessione che ha scritto.
+ * Le attività sono notificate per istruzione (vedi {@code V11__notifiche_attivita_per_istruzione.sql}):
+ * il payload ha l'{@code id} vuoto e viene pubblicato una volta per ogni coltivazione toccata.
+ * L'ascolto usa una connessione dedicata, esterna al pool, su un thread daemon. Le notifiche che arrivano
+ * a breve distanza l'una dall'altra vengono raggruppate in un'unica {@link Change}; quelle generate dalle scritture
+ * di questo stesso client vengono ignorate, poiché i suoi percorsi di scrittura aggiornano già le cache locali.
+ * Se la connessione cade, viene ristabilita con attese crescenti e ai sottoscrittori viene inviata una
+ * {@link Change} di risincronizzazione, dato che nel frattempo alcune notifiche potrebbero essere andate perse.
+ * @author Il Tuo Nome
+ */
+public final class DatabaseNotifications {
+
+    private static final String CHANNEL_PREFIX = "biogarden_";
+    private static final int POLL_MILLIS = 1000;
+    private static final int COALESCE_MILLIS = 200;
+    private static final long KEEPALIVE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    /**
+     * Tabelle osservate, ciascuna con il proprio canale di notifica.
+     */
+    public enum Table {
+        ATTIVITA("attivita"),
+        PROGETTO("progetto"),
+        COLTIVAZIONE("coltivazione"),
+        LOTTO("lotto"),
+        COLTURA("coltura"),
+        UTENTE("utente");
+
+        private final String tableName;
+
+        Table(String tableName) {
+            this.tableName = tableName;
+        }
+
+        /**
+         * Restituisce il nome del canale su cui vengono pubblicate le modifiche della tabella.
+         * @return Il nome del canale.
+         */
+        public String channel() {
+            return CHANNEL_PREFIX + tableName;
+        }
+
+        /**
+         * Cerca la tabella associata a un canale.
+         * @param channel Il nome del canale.
+         * @return La {@link Table} corrispondente, o {@code null} se il canale non è noto.
+         */
+        private static Table fromChannel(String channel) {
+            for (Table table : values()) {
+                if (table.channel().equals(channel.toLowerCase(Locale.ROOT))) {
+                    return table;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Insieme di modifiche raggruppate.
+     * Per ogni tabella toccata riporta gli ID delle righe modificate e gli ID dei rispettivi padri
+     * (la coltivazione per un'attività, il progetto per una coltivazione, il lotto per un progetto,
+     * l'utente per un lotto). Per le attività, notificate per istruzione, gli ID delle righe non sono noti:
+     * la tabella compare tra quelle toccate con un insieme di ID vuoto e sono disponibili solo i padri.
+     * @param ids Gli ID delle righe modificate, per tabella.
+     * @param parentIds Gli ID dei padri delle righe modificate, per tabella.
+     * @param resync {@code true} se qualsiasi dato può essere cambiato e va ricaricato.
+     */
+    public record Change(Map<Table, Set<Integer>> ids, Map<Table, Set<Integer>> parentIds, boolean resync) {
+
+        /**
+         * Modifica che richiede di ricaricare tutto.
+         */
+        public static final Change RESYNC = new Change(Map.of(), Map.of(), true);
+
+        /**
+         * Indica se la modifica può riguardare la tabella indicata.
+         * @param table La tabella.
+         * @return {@code true} se la tabella è stata toccata o se è richiesta una risincronizzazione.
+         */
+        public boolean touches(Table table) {
+            return resync || ids.containsKey(table);
+        }
+
+        /**
+         * Indica se la modifica può riguardare le righe della tabella indicata figlie del padre specificato.
+         * @param table La tabella.
+         * @param parentId L'ID del padre.
+         * @return {@code true} se una riga con quel padre è stata toccata o se è richiesta una risincronizzazione.
+         */
+        public boolean touches(Table table, int parentId) {
+            return resync || parentIds.getOrDefault(table, Set.of()).contains(parentId);
+        }
+
+        /**
+         * Restituisce gli ID delle righe modificate della tabella indicata.
+         * @param table La tabella.
+         * @return Un {@link Set} di ID, vuoto se la tabella non è stata toccata.
+         */
+        public Set<Integer> ids(Table table) {
+            return ids.getOrDefault(table, Set.of());
+        }
+    }
+
+    private static final List<Consumer<Change>> subscribers = new CopyOnWriteArrayList<>();
+    private static volatile boolean running = false;
+    private static volatile Connection connection;
+    private static Thread worker;
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private DatabaseNotifications() {
+    }
+
+    /**
+     * Registra un sottoscrittore che riceverà le modifiche raggruppate.
+     * Il sottoscrittore viene invocato sul thread di ascolto: non deve eseguire operazioni lente
+     * e deve passare al thread JavaFX per aggiornare l'interfaccia.
+     * @param subscriber Il sottoscrittore.
+     * @return Un {@link Runnable} che annulla la sottoscrizione.
+     */
+    public static Runnable subscribe(Consumer<Change> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Avvia l'ascolto delle notifiche, se non già avviato.
+     */
+    public static synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("db-notifications").start(DatabaseNotifications::run);
+    }
+
+    /**
+     * Arresta l'ascolto delle notifiche e chiude la connessione dedicata.
+     */
+    public static synchronized void stop() {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        Connection current = connection;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException ignored) {
+                // La connessione viene comunque abbandonata
+            }
+        }
+        worker.interrupt();
+        worker = null;
+    }
+
+    /**
+     * Ciclo principale del thread di ascolto: apre la connessione, si iscrive ai canali e riceve le notifiche,
+     * ricollegandosi con attese crescenti in caso di errore.
+     */
+    private static void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        boolean missed = false;
+        while (running) {
+            try (Connection conn = ConnectionManager.openDedicatedConnection()) {
+                connection = conn;
+                try (Statement stmnt = conn.createStatement()) {
+                    for (Table table : Table.values()) {
+                        stmnt.execute("LISTEN " + table.channel());
+                    }
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+                if (missed) {
+                    publish(Change.RESYNC);
+                    missed = false;
+                }
+                receive(conn);
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                missed = true;
+                System.err.println("Connessione per le notifiche non disponibile: " + e.getMessage()
+                        + ". Nuovo tentativo tra " + backoff + " ms.");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    /**
+     * Riceve le notifiche finché la connessione è valida, raggruppando quelle ravvicinate.
+     * Se non arrivano notifiche per un certo tempo, verifica la connessione con una query banale,
+     * così che una caduta silenziosa venga rilevata.
+     * @param conn La connessione dedicata, già iscritta ai canali.
+     * @throws SQLException se la connessione cade.
+     */
+    private static void receive(Connection conn) throws SQLException {
+        PGConnection pgConnection = conn.unwrap(PGConnection.class);
+        String clientId = ConnectionManager.getClientId();
+        Batch pending = null;
+        long pendingSince = 0;
+        long lastActivity = System.nanoTime();
+
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pending == null ? POLL_MILLIS : COALESCE_MILLIS);
+            long now = System.nanoTime();
+
+            if (notifications != null && notifications.length > 0) {
+                lastActivity = now;
+                for (PGNotification notification : notifications) {
+                    if (pending == null) {
+                        pending = new Batch();
+                        pendingSince = now;
+                    }
+                    pending.add(notification, clientId);
+                }
+                if (now - pendingSince < TimeUnit.MILLISECONDS.toNanos(COALESCE_MILLIS)) {
+                    continue;
+                }
+            }
+
+            if (pending != null) {
+                if (!pending.isEmpty()) {
+                    publish(pending.toChange());
+                }
+                pending = null;
+            } else if (now - lastActivity >= KEEPALIVE_NANOS) {
+                try (Statement stmnt = conn.createStatement()) {
+                    stmnt.execute("SELECT 1");
+                }
+                lastActivity = now;
+            }
+        }
+    }
+
+    /**
+     * Consegna una modifica a tutti i sottoscrittori. Un errore di un sottoscrittore non impedisce la consegna agli altri.
+     * @param change La modifica da consegnare.
+     */
+    private static void publish(Change change) {
+        for (Consumer<Change> subscriber : subscribers) {
+            try {
+                subscriber.accept(change);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Accumulatore delle notifiche ricevute in una finestra di raggruppamento.
+     */
+    private static final class Batch {
+        private final Map<Table, Set<Integer>> ids = new EnumMap<>(Table.class);
+        private final Map<Table, Set<Integer>> parentIds = new EnumMap<>(Table.class);
+        private boolean resync = false;
+
+        /**
+         * Aggiunge una notifica, ignorandola se proviene da questo client o da un canale sconosciuto.
+         * Un ID vuoto segnala la tabella come toccata senza aggiungere righe.
+         * Un payload non interpretabile provoca una risincronizzazione.
+         * @param notification La notifica ricevuta.
+         * @param clientId L'identificativo di questo client.
+         */
+        private void add(PGNotification notification, String clientId) {
+            Table table = Table.fromChannel(notification.getName());
+            if (table == null) {
+                return;
+            }
+            String[] parts = notification.getParameter().split(":", 3);
+            if (parts.length == 3 && parts[2].equals(clientId)) {
+                return;
+            }
+            try {
+                Set<Integer> tableIds = ids.computeIfAbsent(table, t -> new HashSet<>());
+                if (!parts[0].isEmpty()) {
+                    tableIds.add(Integer.parseInt(parts[0]));
+                }
+                if (parts.length > 1 && !parts[1].isEmpty()) {
+                    parentIds.computeIfAbsent(table, t -> new HashSet<>()).add(Integer.parseInt(parts[1]));
+                }
+            } catch (NumberFormatException e) {
+                resync = true;
+            }
+        }
+
+        private boolean isEmpty() {
+            return !resync && ids.isEmpty();
+        }
+
+        private Change toChange() {
+            if (resync) {
+                return Change.RESYNC;
+            }
+            Map<Table, Set<Integer>> idsCopy = new EnumMap<>(Table.class);
+            ids.forEach((table, values) -> idsCopy.put(table, Set.copyOf(values)));
+            Map<Table, Set<Integer>> parentsCopy = new EnumMap<>(Table.class);
+            parentIds.forEach((table, values) -> parentsCopy.put(table, Set.copyOf(values)));
+            return new Change(Collections.unmodifiableMap(idsCopy), Collections.unmodifiableMap(parentsCopy), false);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.unina.biogarden.database;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Esegue all'avvio le migrazioni versionate dello schema del database BioGarden.
+ * Ogni migrazione è uno script SQL nelle risorse {@code db/migration/V<versione>__<descrizione>.sql}
+ * e viene applicata una sola volta, in ordine di versione, registrandola nella tabella {@code schema_version}.
+ * Ogni script viene eseguito nella propria transazione, così che una migrazione fallita non lasci lo schema
+ * a metà. Più client avviati contemporaneamente si serializzano su un advisory lock di PostgreSQL.
+ * <p>
+ * Le prime migrazioni creano le tabelle con {@code IF NOT EXISTS}, ma eliminano e ricreano funzioni e procedure:
+ * non sono quindi sicure su un database creato a mano. Se il database contiene già le tabelle ma nessuna migrazione
+ * registrata, una migrazione che ridefinirebbe una funzione o procedura già esistente non viene eseguita e l'avvio
+ * fallisce. Con la proprietà di sistema {@code -Dbiogarden.migrations.baseline=<versione>} le migrazioni fino a
+ * quella versione, già rispecchiate dal database, vengono registrate senza essere eseguite.
+ * <p>
+ * L'esecuzione può essere disattivata con la proprietà di sistema {@code -Dbiogarden.migrations=false}.
+ * @author Il Tuo Nome
+ */
+public final class SchemaMigrations {
+
+    private static final String LOCATION = "/db/migration/";
+
+    /**
+     * Migrazioni da applicare, in ordine di versione.
+     * Una migrazione già rilasciata non va mai modificata: le modifiche allo schema vanno aggiunte in una nuova versione.
+     */
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__schema.sql",
+            "V2__procedure.sql",
+            "V3__indici.sql",
+            "V4__notifiche.sql",
+            "V5__partizionamento_attivita.sql",
+            "V6__versione_attivita.sql",
+            "V7__piani_irrigazione.sql",
+            "V8__stato_coltivazioni.sql",
+            "V9__coda_stato_coltivazioni.sql",
+            "V10__partizioni_concorrenti.sql",
+            "V11__notifiche_attivita_per_istruzione.sql"
+    );
+
+    /**
+     * Chiave dell'advisory lock che serializza le migrazioni tra client diversi.
+     */
+    private static final long LOCK_KEY = 0x42696F47617264L;
+
+    /**
+     * Funzioni e procedure definite da uno script di migrazione.
+     */
+    private static final Pattern ROUTINE = Pattern.compile(
+            "CREATE\\s+(?:OR\\s+REPLACE\\s+)?(?:FUNCTION|PROCEDURE)\\s+(?:\\w+\\.)?\"?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private static final String CREATE_VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                versione    INTEGER PRIMARY KEY,
+                descrizione TEXT        NOT NULL,
+                checksum    TEXT        NOT NULL,
+                applicata_il TIMESTAMPTZ NOT NULL DEFAULT now()
+            )""";
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Applica al database tutte le migrazioni non ancora eseguite.
+     * @param dataSource Il {@link DataSource} da cui ottenere la connessione.
+     * @throws RuntimeException Se una migrazione non può essere letta o eseguita, o se ridefinirebbe
+     * una funzione o procedura di un database creato a mano.
+     */
+    public static void migrate(DataSource dataSource) {
+        if (!Boolean.parseBoolean(System.getProperty("biogarden.migrations", "true"))) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Adoption[] adoption = new Adoption[1];
+                inTransaction(conn, () -> {
+                    try (Statement stmnt = conn.createStatement()) {
+                        stmnt.execute(CREATE_VERSION_TABLE);
+                    }
+                    adoption[0] = Adoption.detect(conn);
+                });
+                for (String name : MIGRATIONS) {
+                    apply(conn, Migration.load(name), adoption[0]);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | IOException ex) {
+            throw new RuntimeException("Errore durante la migrazione dello schema: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Applica una migrazione se non è già registrata in {@code schema_version}.
+     * Se è già registrata con un contenuto diverso, segnala la discrepanza senza rieseguirla.
+     * Durante l'adozione di un database creato a mano, le migrazioni fino alla versione di partenza vengono solo
+     * registrate e le successive vengono verificate con {@link Adoption#check(Migration)} prima dell'esecuzione.
+     * @param conn La connessione, con autocommit disattivato.
+     * @param migration La migrazione da applicare.
+     * @param adoption L'adozione in corso, o {@code null} se il database è gestito dalle migrazioni.
+     * @throws SQLException Se l'esecuzione dello script fallisce.
+     */
+    private static void apply(Connection conn, Migration migration, Adoption adoption) throws SQLException {
+        inTransaction(conn, () -> {
+            String applied = null;
+            try (PreparedStatement stmnt = conn.prepareStatement("SELECT checksum FROM schema_version WHERE versione = ?")) {
+                stmnt.setInt(1, migration.version());
+                try (ResultSet rs = stmnt.executeQuery()) {
+                    if (rs.next()) {
+                        applied = rs.getString(1);
+                    }
+                }
+            }
+            if (applied != null) {
+                if (!applied.equals(migration.checksum())) {
+                    System.err.println("La migrazione " + migration.name() + " è stata modificata dopo essere stata applicata.");
+                }
+                return;
+            }
+
+            boolean baseline = adoption != null && migration.version() <= adoption.baseline();
+            if (!baseline) {
+                if (adoption != null) {
+                    adoption.check(migration);
+                }
+                try (Statement stmnt = conn.createStatement()) {
+                    stmnt.execute(migration.script());
+                }
+            }
+            try (PreparedStatement stmnt = conn.prepareStatement(
+                    "INSERT INTO schema_version (versione, descrizione, checksum) VALUES (?, ?, ?)")) {
+                stmnt.setInt(1, migration.version());
+                stmnt.setString(2, migration.description());
+                stmnt.setString(3, migration.checksum());
+                stmnt.executeUpdate();
+            }
+            System.out.println((baseline ? "Migrazione registrata senza esecuzione: " : "Migrazione applicata: ") + migration.name());
+        });
+    }
+
+    /**
+     * Esegue il blocco in una transazione che detiene l'advisory lock delle migrazioni,
+     * rilasciato automaticamente al commit o al rollback.
+     * @param conn La connessione, con autocommit disattivato.
+     * @param block Il blocco da eseguire.
+     * @throws SQLException Se il blocco fallisce; in tal caso, o se il blocco lancia un'eccezione non controllata,
+     * la transazione viene annullata.
+     */
+    private static void inTransaction(Connection conn, SqlBlock block) throws SQLException {
+        try {
+            try (PreparedStatement stmnt = conn.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+                stmnt.setLong(1, LOCK_KEY);
+                stmnt.execute();
+            }
+            block.run();
+            conn.commit();
+        } catch (SQLException | RuntimeException ex) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackEx) {
+                ex.addSuppressed(rollbackEx);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Adozione di un database creato a mano: tabelle già presenti, ma nessuna migrazione registrata.
+     * @param baseline La versione fino alla quale le migrazioni vengono registrate senza essere eseguite.
+     * @param routines I nomi, in minuscolo, delle funzioni e procedure già presenti nello schema prima dell'adozione.
+     */
+    private record Adoption(int baseline, Set<String> routines) {
+
+        /**
+         * Rileva se il database è stato creato a mano e va quindi adottato.
+         * @param conn La connessione, nella transazione che detiene l'advisory lock delle migrazioni.
+         * @return L'adozione da eseguire, o {@code null} se il database è vuoto o già gestito dalle migrazioni.
+         * @throws SQLException Se la lettura del catalogo fallisce.
+         */
+        private static Adoption detect(Connection conn) throws SQLException {
+            try (Statement stmnt = conn.createStatement();
+                 ResultSet rs = stmnt.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM schema_version) " +
+                         "AND to_regclass('utente') IS NOT NULL")) {
+                if (!rs.next() || !rs.getBoolean(1)) {
+                    return null;
+                }
+            }
+            Set<String> routines = new HashSet<>();
+            try (Statement stmnt = conn.createStatement();
+                 ResultSet rs = stmnt.executeQuery("SELECT DISTINCT lower(proname) FROM pg_proc " +
+                         "WHERE pronamespace = current_schema()::regnamespace")) {
+                while (rs.next()) {
+                    routines.add(rs.getString(1));
+                }
+            }
+            return new Adoption(Integer.getInteger("biogarden.migrations.baseline", 0), Set.copyOf(routines));
+        }
+
+        /**
+         * Verifica che una migrazione non ridefinisca funzioni o procedure già presenti prima dell'adozione,
+         * che verrebbero sostituite o sovraccaricate senza preavviso.
+         * @param migration La migrazione da eseguire.
+         * @throws IllegalStateException Se la migrazione ridefinisce una funzione o procedura esistente.
+         */
+        private void check(Migration migration) {
+            Set<String> conflicts = new HashSet<>();
+            Matcher matcher = ROUTINE.matcher(migration.script());
+            while (matcher.find()) {
+                String routine = matcher.group(1).toLowerCase(Locale.ROOT);
+                if (routines.contains(routine)) {
+                    conflicts.add(routine);
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                throw new IllegalStateException("Il database è stato creato senza migrazioni e contiene già " + conflicts +
+                        ", che la migrazione " + migration.name() + " ridefinirebbe. Verificare lo schema e indicare " +
+                        "l'ultima migrazione già rispecchiata con -Dbiogarden.migrations.baseline=<versione>.");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlBlock {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Script di migrazione caricato dalle risorse.
+     * @param name Il nome del file.
+     * @param version La versione, ricavata dal nome.
+     * @param description La descrizione, ricavata dal nome.
+     * @param script Il contenuto SQL.
+     * @param checksum L'impronta SHA-256 del contenuto, per rilevare modifiche a migrazioni già applicate.
+     */
+    private record Migration(String name, int version, String description, String script, String checksum) {
+
+        /**
+         * Carica una migrazione dalle risorse, ricavando versione e descrizione dal nome {@code V<versione>__<descrizione>.sql}.
+         * @param name Il nome del file.
+         * @return La migrazione caricata.
+         * @throws IOException Se la risorsa non esiste o non può essere letta.
+         */
+        private static Migration load(String name) throws IOException {
+            String script;
+            try (InputStream in = SchemaMigrations.class.getResourceAsStream(LOCATION + name)) {
+                if (in == null) {
+                    throw new IOException("Migrazione non trovata: " + name);
+                }
+                script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            int separator = name.indexOf("__");
+            int version = Integer.parseInt(name.substring(1, separator));
+            String description = name.substring(separator + 2, name.length() - ".sql".length()).replace('_', ' ');
+            return new Migration(name, version, description, script, sha256(script));
+        }
+
+        private static String sha256(String script) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 non disponibile", e);
+            }
+        }
+    }
+}
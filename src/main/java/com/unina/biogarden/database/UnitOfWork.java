@@ -0,0 +1,157 @@
+package com.unina.biogarden.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unità di lavoro che lega una sola connessione del pool al thread corrente per la durata di una chiamata di servizio.
+ * Tutti i DAO eseguiti all'interno di {@link #inTransaction(Work)} o {@link #readOnly(Work)} ottengono implicitamente
+ * questa connessione invece di prenderne una nuova dal pool ad ogni istruzione: si evita così il continuo
+ * prelievo e rilascio di connessioni e le istruzioni vedono tutte lo stesso stato del database.
+ * <ul>
+ *     <li>{@link #inTransaction(Work)} esegue il lavoro in una transazione, confermata al termine
+ *     e annullata se il lavoro solleva un'eccezione;</li>
+ *     <li>{@link #readOnly(Work)} esegue il lavoro in una transazione di sola lettura {@code REPEATABLE READ},
+ *     così che tutte le query leggano la stessa fotografia (snapshot) del database.</li>
+ * </ul>
+ * Le unità di lavoro annidate partecipano a quella più esterna. Lo stato della connessione (autocommit,
+ * sola lettura, isolamento) viene ripristinato da HikariCP quando la connessione torna nel pool.
+ * @author Il Tuo Nome
+ */
+public final class UnitOfWork {
+
+    /**
+     * Lavoro da eseguire all'interno di un'unità di lavoro.
+     * @param <T> Il tipo del risultato.
+     * @param <E> Il tipo di eccezione che il lavoro può sollevare.
+     */
+    @FunctionalInterface
+    public interface Work<T, E extends Exception> {
+        T execute() throws E;
+    }
+
+    private static final ThreadLocal<Bound> current = new ThreadLocal<>();
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private UnitOfWork() {
+    }
+
+    /**
+     * Esegue il lavoro in una transazione legata al thread corrente.
+     * Se il thread è già in un'unità di lavoro di scrittura, il lavoro vi partecipa.
+     * @param work Il lavoro da eseguire.
+     * @param <T> Il tipo del risultato.
+     * @param <E> Il tipo di eccezione sollevata dal lavoro.
+     * @return Il risultato del lavoro.
+     * @throws E se il lavoro fallisce; in tal caso la transazione viene annullata.
+     * @throws IllegalStateException se il thread è in un'unità di lavoro di sola lettura.
+     * @throws RuntimeException se non è possibile aprire, confermare o annullare la transazione.
+     */
+    public static <T, E extends Exception> T inTransaction(Work<T, E> work) throws E {
+        return execute(work, false);
+    }
+
+    /**
+     * Esegue il lavoro in una transazione di sola lettura con isolamento {@code REPEATABLE READ},
+     * così che tutte le query vedano la stessa fotografia del database.
+     * Se il thread è già in un'unità di lavoro, il lavoro vi partecipa.
+     * @param work Il lavoro da eseguire.
+     * @param <T> Il tipo del risultato.
+     * @param <E> Il tipo di eccezione sollevata dal lavoro.
+     * @return Il risultato del lavoro.
+     * @throws E se il lavoro fallisce.
+     * @throws RuntimeException se non è possibile aprire o chiudere la transazione.
+     */
+    public static <T, E extends Exception> T readOnly(Work<T, E> work) throws E {
+        return execute(work, true);
+    }
+
+    /**
+     * Restituisce la connessione legata al thread corrente. Usato dai DAO per partecipare all'unità di lavoro.
+     * La connessione restituita non deve essere chiusa dal chiamante.
+     * @return La connessione dell'unità di lavoro corrente, o {@code null} se il thread non è in un'unità di lavoro.
+     */
+    public static Connection currentConnection() {
+        Bound bound = current.get();
+        return bound == null ? null : bound.connection;
+    }
+
+    /**
+     * Apre (o riusa) l'unità di lavoro ed esegue il lavoro.
+     * @param work Il lavoro da eseguire.
+     * @param readOnly {@code true} per una transazione di sola lettura.
+     * @param <T> Il tipo del risultato.
+     * @param <E> Il tipo di eccezione sollevata dal lavoro.
+     * @return Il risultato del lavoro.
+     * @throws E se il lavoro fallisce.
+     */
+    private static <T, E extends Exception> T execute(Work<T, E> work, boolean readOnly) throws E {
+        Bound outer = current.get();
+        if (outer != null) {
+            if (outer.readOnly && !readOnly) {
+                throw new IllegalStateException("Impossibile aprire una transazione di scrittura in un'unità di lavoro di sola lettura.");
+            }
+            return work.execute();
+        }
+
+        Connection conn;
+        try {
+            conn = ConnectionManager.getDataSource().getConnection();
+            if (readOnly) {
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                conn.setReadOnly(true);
+            }
+            conn.setAutoCommit(false);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Errore durante l'apertura della transazione: " + ex.getMessage(), ex);
+        }
+
+        current.set(new Bound(conn, readOnly));
+        try {
+            T result;
+            try {
+                result = work.execute();
+            } catch (Exception ex) {
+                rollback(conn, ex);
+                throw ex;
+            }
+            try {
+                conn.commit();
+            } catch (SQLException ex) {
+                rollback(conn, ex);
+                throw new RuntimeException("Errore durante la conferma della transazione: " + ex.getMessage(), ex);
+            }
+            return result;
+        } finally {
+            current.remove();
+            try {
+                conn.close();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Annulla la transazione, allegando un eventuale errore di annullamento all'eccezione originale.
+     * @param conn La connessione dell'unità di lavoro.
+     * @param cause L'eccezione che ha provocato l'annullamento.
+     */
+    private static void rollback(Connection conn, Exception cause) {
+        try {
+            conn.rollback();
+        } catch (SQLException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    /**
+     * Connessione legata al thread, con il tipo di transazione aperta.
+     * @param connection La connessione.
+     * @param readOnly {@code true} se la transazione è di sola lettura.
+     */
+    private record Bound(Connection connection, boolean readOnly) {
+    }
+}
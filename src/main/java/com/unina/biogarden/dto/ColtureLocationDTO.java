@@ -0,0 +1,17 @@
+package com.unina.biogarden.dto;
+
+/**
+ * Data Transfer Object (DTO) che rappresenta una coltivazione identificata tramite i nomi di lotto, progetto e coltura.
+ * Questa è una classe record immutabile utilizzata per risolvere in blocco i riferimenti testuali
+ * (ad esempio le righe di un file importato) negli ID di lotto e coltivazione.
+ *
+ * @param lotName Il nome del lotto.
+ * @param projectName Il nome del progetto.
+ * @param cropName Il nome del tipo di coltura.
+ * @param lotId L'ID del lotto.
+ * @param coltureId L'ID della coltivazione.
+ * @author Il Tuo Nome
+ */
+public record ColtureLocationDTO(String lotName, String projectName, String cropName, int lotId, int coltureId) {
+
+}
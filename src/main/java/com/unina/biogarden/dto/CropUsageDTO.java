@@ -0,0 +1,16 @@
+package com.unina.biogarden.dto;
+
+/**
+ * Data Transfer Object (DTO) che rappresenta un tipo di coltura insieme al numero di coltivazioni che lo utilizzano.
+ * Questa è una classe record immutabile popolata da un'unica query aggregata (Coltura LEFT JOIN Coltivazione),
+ * così da evitare un conteggio separato per ogni tipo di coltura.
+ *
+ * @param id L'identificatore univoco del tipo di coltura.
+ * @param nome Il nome del tipo di coltura (es. "Pomodoro", "Basilico").
+ * @param giorniMaturazione Il numero di giorni stimato per la maturazione di questa coltura.
+ * @param progetti Il numero di coltivazioni, nei vari progetti, che utilizzano questa coltura.
+ * @author Il Tuo Nome
+ */
+public record CropUsageDTO(int id, String nome, int giorniMaturazione, int progetti) {
+
+}
@@ -0,0 +1,21 @@
+package com.unina.biogarden.dto;
+
+/**
+ * Data Transfer Object (DTO) che rappresenta le statistiche delle raccolte di una coltura in un lotto, per unità di misura.
+ * Questa è una classe record immutabile popolata da un'unica query aggregata (GROUP BY lotto, coltura e unità),
+ * utilizzata per inizializzare le statistiche di raccolta in memoria e per produrre il report.
+ * Sono considerate solo le raccolte con una quantità effettiva registrata.
+ *
+ * @param lotId L'ID del lotto su cui sono avvenute le raccolte.
+ * @param lotName Il nome del lotto.
+ * @param cropName Il nome del tipo di coltura raccolto.
+ * @param unit L'unità di misura delle quantità raccolte.
+ * @param count Il numero di raccolte.
+ * @param sum La somma delle quantità raccolte.
+ * @param min La quantità minima raccolta in una singola raccolta.
+ * @param max La quantità massima raccolta in una singola raccolta.
+ * @author Il Tuo Nome
+ */
+public record HarvestAggregateDTO(int lotId, String lotName, String cropName, String unit, int count, long sum, int min, int max) {
+
+}
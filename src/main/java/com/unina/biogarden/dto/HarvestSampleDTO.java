@@ -0,0 +1,16 @@
+package com.unina.biogarden.dto;
+
+/**
+ * Data Transfer Object (DTO) che rappresenta il contributo di una singola attività di raccolta alle statistiche.
+ * Questa è una classe record immutabile letta prima di modificare o eliminare una raccolta,
+ * così da poter togliere dalle statistiche in memoria il valore precedente.
+ *
+ * @param lotId L'ID del lotto su cui è avvenuta la raccolta.
+ * @param cropName Il nome del tipo di coltura raccolto.
+ * @param unit L'unità di misura della quantità raccolta.
+ * @param quantity La quantità effettivamente raccolta, o {@code null} se non registrata.
+ * @author Il Tuo Nome
+ */
+public record HarvestSampleDTO(int lotId, String cropName, String unit, Integer quantity) {
+
+}
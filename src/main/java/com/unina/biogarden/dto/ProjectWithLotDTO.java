@@ -0,0 +1,20 @@
+package com.unina.biogarden.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object (DTO) che rappresenta un progetto insieme al nome del lotto a cui appartiene.
+ * Questa è una classe record immutabile popolata da un'unica query (progetto JOIN lotto),
+ * così da poter costruire i modelli di presentazione senza interrogare il lotto riga per riga.
+ *
+ * @param id L'identificatore univoco del progetto.
+ * @param nome Il nome del progetto.
+ * @param dataInizio La data di inizio del progetto.
+ * @param dataFine La data di fine prevista del progetto.
+ * @param idLotto L'ID del lotto di terreno su cui si svolge il progetto.
+ * @param nomeLotto Il nome del lotto di terreno su cui si svolge il progetto.
+ * @author Il Tuo Nome
+ */
+public record ProjectWithLotDTO(int id, String nome, LocalDate dataInizio, LocalDate dataFine, int idLotto, String nomeLotto) {
+
+}
@@ -0,0 +1,25 @@
+package com.unina.biogarden.dto.activity;
+
+import com.unina.biogarden.enumerations.ActivityStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Data Transfer Object (DTO) che descrive le modifiche da applicare in blocco a più attività.
+ * Questa è una classe record immutabile: i campi {@code null} non vengono modificati.
+ *
+ * @param status Il nuovo stato delle attività.
+ * @param date La nuova data delle attività.
+ * @param farmerId L'ID del nuovo agricoltore responsabile delle attività.
+ * @author Il Tuo Nome
+ */
+public record ActivityBulkUpdateDTO(ActivityStatus status, LocalDate date, Integer farmerId) {
+
+    /**
+     * Indica se non è impostata alcuna modifica.
+     * @return {@code true} se tutti i campi sono {@code null}.
+     */
+    public boolean isEmpty() {
+        return status == null && date == null && farmerId == null;
+    }
+}
@@ -20,6 +20,7 @@ public class ActivityDTO {
     private final ActivityStatus status;
     private final ActivityType type;
     private final int lotID, coltureID, farmerID;
+    private int version;
 
     /**
      * Costruisce una nuova istanza di {@code ActivityDTO}.
@@ -96,4 +97,20 @@ public class ActivityDTO {
     public int getFarmerID() {
         return farmerID;
     }
+
+    /**
+     * Restituisce la versione dell'attività letta dal database, usata per rilevare modifiche concorrenti.
+     * @return La versione dell'attività.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Imposta la versione dell'attività.
+     * @param version La versione dell'attività.
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.unina.biogarden.dto.activity;
+
+import com.unina.biogarden.enumerations.ActivityStatus;
+import com.unina.biogarden.enumerations.ActivityType;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) che descrive un insieme di attività a cui applicare un'operazione in blocco.
+ * Questa è una classe record immutabile: ogni criterio è facoltativo ({@code null} se non usato)
+ * e un'attività è inclusa solo se soddisfa tutti i criteri impostati.
+ *
+ * @param ids Gli ID delle attività, oppure {@code null} per non filtrare per ID.
+ * @param coltureId L'ID della coltivazione a cui appartengono le attività.
+ * @param type Il tipo delle attività.
+ * @param status Lo stato attuale delle attività.
+ * @param from La data minima delle attività (inclusa).
+ * @param to La data massima delle attività (inclusa).
+ * @author Il Tuo Nome
+ */
+public record ActivityFilterDTO(Collection<Integer> ids, Integer coltureId, ActivityType type, ActivityStatus status,
+                                LocalDate from, LocalDate to) {
+
+    /**
+     * Crea un filtro che seleziona le attività con gli ID indicati, appartenenti a una coltivazione.
+     * @param coltureId L'ID della coltivazione.
+     * @param ids Gli ID delle attività.
+     * @return Il filtro.
+     */
+    public static ActivityFilterDTO ofIds(int coltureId, Collection<Integer> ids) {
+        return new ActivityFilterDTO(List.copyOf(ids), coltureId, null, null, null, null);
+    }
+}
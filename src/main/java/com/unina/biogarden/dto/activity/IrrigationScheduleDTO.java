@@ -0,0 +1,47 @@
+package com.unina.biogarden.dto.activity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) per un piano di irrigazione periodica di una coltivazione.
+ * Il piano prevede un'irrigazione ogni {@code intervalDays} giorni a partire da {@code startDate},
+ * fino a {@code endDate} inclusa, svolta dall'agricoltore indicato.
+ * Questa è una classe record immutabile.
+ *
+ * @param id L'ID del piano, 0 se non ancora salvato.
+ * @param coltureId L'ID della coltivazione a cui appartiene il piano.
+ * @param farmerId L'ID dell'agricoltore che svolge le irrigazioni.
+ * @param startDate La data della prima irrigazione.
+ * @param endDate L'ultima data in cui può cadere un'irrigazione.
+ * @param intervalDays Il numero di giorni tra due irrigazioni consecutive.
+ * @author Il Tuo Nome
+ */
+public record IrrigationScheduleDTO(int id, int coltureId, int farmerId, LocalDate startDate, LocalDate endDate, int intervalDays) {
+
+    /**
+     * Espande il piano nelle date delle sue irrigazioni, a partire da una data minima.
+     * Le date precedenti a {@code from} vengono escluse, ma la ricorrenza resta allineata a {@code startDate}.
+     * @param from La prima data da includere.
+     * @return Le date delle irrigazioni, in ordine crescente.
+     */
+    public List<LocalDate> occurrences(LocalDate from) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(intervalDays)) {
+            if (!date.isBefore(from)) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Restituisce una copia del piano con l'ID indicato.
+     * @param id Il nuovo ID.
+     * @return Il piano con l'ID aggiornato.
+     */
+    public IrrigationScheduleDTO withId(int id) {
+        return new IrrigationScheduleDTO(id, coltureId, farmerId, startDate, endDate, intervalDays);
+    }
+}
@@ -0,0 +1,13 @@
+package com.unina.biogarden.dto.activity;
+
+/**
+ * Data Transfer Object (DTO) con l'esito del riallineamento delle attività di un piano di irrigazione.
+ * Questa è una classe record immutabile.
+ *
+ * @param added Il numero di irrigazioni aggiunte.
+ * @param removed Il numero di irrigazioni pianificate rimosse perché non più previste dal piano.
+ * @param reassigned Il numero di irrigazioni pianificate assegnate al nuovo agricoltore del piano.
+ * @author Il Tuo Nome
+ */
+public record ScheduleSyncDTO(int added, int removed, int reassigned) {
+}
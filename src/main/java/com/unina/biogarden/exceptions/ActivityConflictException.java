@@ -0,0 +1,32 @@
+package com.unina.biogarden.exceptions;
+
+/**
+ * Eccezione personalizzata lanciata quando si tenta di aggiornare un'attività
+ * che nel frattempo è stata modificata da un altro utente.
+ * La modifica viene rifiutata perché basata su una versione dell'attività non più corrente:
+ * il chiamante deve rileggere l'attività e decidere come unire le modifiche.
+ * @author Il Tuo Nome
+ */
+public class ActivityConflictException extends Exception {
+
+    private final int activityId;
+
+    /**
+     * Costruisce una nuova istanza di {@code ActivityConflictException} con il messaggio di dettaglio specificato.
+     *
+     * @param activityId L'ID dell'attività in conflitto.
+     * @param message Il messaggio di dettaglio (che può essere recuperato in seguito tramite il metodo {@link Throwable#getMessage()}).
+     */
+    public ActivityConflictException(int activityId, String message) {
+        super(message);
+        this.activityId = activityId;
+    }
+
+    /**
+     * Restituisce l'ID dell'attività in conflitto.
+     * @return L'ID dell'attività.
+     */
+    public int getActivityId() {
+        return activityId;
+    }
+}
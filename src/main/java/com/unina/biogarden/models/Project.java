@@ -36,6 +36,7 @@ import java.util.function.Function;
 public class Project extends RecursiveTreeObject<Project> {
     private final int id;
     private final SimpleStringProperty name, lot, season, status;
+    private final LocalDate startDate, endDate;
 
     private final Collection<Colture> coltures = new ArrayList<>();
 
@@ -53,6 +54,8 @@ public class Project extends RecursiveTreeObject<Project> {
         this.id = id;
         this.name = new SimpleStringProperty(name);
         this.lot = new SimpleStringProperty(lotName);
+        this.startDate = startDate;
+        this.endDate = endDate;
         this.season = new SimpleStringProperty(getSeason(startDate));
         this.status = new SimpleStringProperty(getStatus(startDate, endDate));
     }
@@ -141,6 +144,22 @@ public class Project extends RecursiveTreeObject<Project> {
         return id;
     }
 
+    /**
+     * Restituisce la data di inizio del progetto.
+     * @return La data di inizio.
+     */
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Restituisce la data di fine prevista del progetto.
+     * @return La data di fine.
+     */
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
     /**
      * Imposta la collezione di coltivazioni associate a questo progetto, rimpiazzando le esistenti.
      * @param coltures La nuova {@link Collection} di {@link Colture} da associare.
@@ -153,15 +172,17 @@ public class Project extends RecursiveTreeObject<Project> {
     /**
      * Costruisce e restituisce un {@link Node} (un {@link VBox}) che rappresenta visivamente questo progetto
      * per l'interfaccia utente JavaFX. Carica un layout da FXML e popola i suoi elementi con i dati del progetto.
-     * Permette di associare handler per l'aggiunta di nuove coltivazioni e per il click su coltivazioni esistenti.
+     * Permette di associare handler per l'aggiunta di nuove coltivazioni, per la copia del progetto
+     * e per il click su coltivazioni esistenti.
      *
      * @param onAddCultivation Un {@link EventHandler} per l'azione di click sul pulsante "Aggiungi Coltivazione".
      * Il {@code userData} del pulsante conterrà l'ID del progetto.
+     * @param onClone Un {@link Consumer} che riceve questo progetto quando viene cliccato il pulsante "Clona Progetto".
      * @param onCultivationClick Un {@link Consumer} che riceve l'oggetto {@link Colture} quando un blocco coltivazione viene cliccato.
      * @return Un {@link Node} (VBox) che rappresenta il progetto con i suoi controlli e coltivazioni.
      * @throws RuntimeException Se si verifica un errore I/O durante il caricamento del file FXML.
      */
-    public Node buildProjectPane(EventHandler<ActionEvent> onAddCultivation, Consumer<Colture> onCultivationClick) {
+    public Node buildProjectPane(EventHandler<ActionEvent> onAddCultivation, Consumer<Project> onClone, Consumer<Colture> onCultivationClick) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/unina/biogarden/pane/project-pane.fxml"));
             VBox projectBlock = new VBox();
@@ -171,6 +192,7 @@ public class Project extends RecursiveTreeObject<Project> {
 
             Label projectTitleLabel = (Label) projectBlock.lookup("#projectTitleLabel");
             JFXButton addCultivationButton = (JFXButton) projectBlock.lookup("#addCultivationButton");
+            JFXButton cloneProjectButton = (JFXButton) projectBlock.lookup("#cloneProjectButton");
             ScrollPane scrollPane = (ScrollPane) projectBlock.lookup(".scroll-pane");
             HBox cultivationsContainer = (HBox) scrollPane.getContent();
 
@@ -179,6 +201,7 @@ public class Project extends RecursiveTreeObject<Project> {
             // Associa l'ID del progetto al pulsante per un facile recupero nell'handler
             addCultivationButton.setUserData(getId());
             addCultivationButton.setOnAction(onAddCultivation);
+            cloneProjectButton.setOnAction(e -> onClone.accept(this));
 
             // Aggiunge dinamicamente i pannelli delle coltivazioni
             for (Colture cultivation : coltures) {
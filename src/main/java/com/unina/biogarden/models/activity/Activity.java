@@ -21,6 +21,7 @@ public abstract class Activity {
 
     private int farmerID;
     private String farmer;
+    private int version;
 
     /**
      * Costruisce una nuova istanza di {@code Activity}.
@@ -137,6 +138,23 @@ public abstract class Activity {
         return farmer;
     }
 
+    /**
+     * Restituisce la versione dell'attività su cui si basano i dati di questo oggetto.
+     * Un aggiornamento viene accettato solo se questa è ancora la versione corrente nel database.
+     * @return La versione dell'attività.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Imposta la versione dell'attività.
+     * @param version La nuova versione dell'attività.
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * Restituisce una stringa descrittiva dei dettagli specifici dell'attività.
      * Questo metodo deve essere implementato dalle classi concrete che estendono {@code Activity}.
@@ -0,0 +1,472 @@
+package com.unina.biogarden.service;
+
+import com.unina.biogarden.dao.ActivityDAO;
+import com.unina.biogarden.dao.ColtureDAO;
+import com.unina.biogarden.dto.ColtureLocationDTO;
+import com.unina.biogarden.enumerations.ActivityStatus;
+import com.unina.biogarden.enumerations.ActivityType;
+import com.unina.biogarden.models.Farmer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Importazione in blocco di attività da un file CSV (ad esempio registri cartacei o fogli di calcolo di inizio stagione).
+ * La prima riga del file è l'intestazione: le colonne vengono riconosciute per nome, ignorando maiuscole e colonne sconosciute.
+ * Il separatore è la virgola oppure il punto e virgola, riconosciuto dall'intestazione; i campi possono essere tra virgolette.
+ * <ul>
+ *     <li>Colonne obbligatorie: {@code data} (aaaa-mm-gg o gg/mm/aaaa), {@code tipo} (semina, irrigazione, raccolta),
+ *     {@code stato} (pianificata, in_corso, terminata), {@code lotto}, {@code progetto}, {@code coltura}
+ *     e {@code agricoltore} (email).</li>
+ *     <li>Colonne facoltative: {@code quantita_semi}, {@code unita_semi} (obbligatorie per la semina),
+ *     {@code quantita_prevista}, {@code quantita_effettiva} e {@code unita_raccolta} (obbligatorie per la raccolta).</li>
+ * </ul>
+ * Il file viene diviso in blocchi di righe analizzati e validati in parallelo. Lotto, progetto e coltura vengono risolti
+ * nella coltivazione con un'unica query sui lotti del proprietario, gli agricoltori tramite la {@link FarmerDirectory}.
+ * I blocchi validi vengono inviati a PostgreSQL con {@code COPY} man mano che sono pronti e infine uniti alle attività
+ * con un'unica istruzione (vedi {@link ActivityDAO#importActivities(Iterable)}).
+ * Le righe non valide non bloccano l'importazione: vengono scritte, con il motivo dello scarto, in un file
+ * {@code <nome>-scarti.csv} accanto al file importato, che dopo la correzione può essere importato di nuovo.
+ * @author Il Tuo Nome
+ */
+public final class ActivityCsvImport {
+
+    private static final int CHUNK_LINES = 2000;
+    private static final int MAX_TEXT_LENGTH = 50;
+    private static final List<String> REQUIRED_COLUMNS =
+            List.of("data", "tipo", "stato", "lotto", "progetto", "coltura", "agricoltore");
+    private static final DateTimeFormatter ITALIAN_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /**
+     * Avanzamento dell'importazione, per l'interfaccia.
+     * @param phase La descrizione della fase in corso.
+     * @param done Il numero di righe elaborate.
+     * @param total Il numero totale di righe, o un valore non positivo se la fase non è misurabile.
+     */
+    public record ImportProgress(String phase, long done, long total) {
+
+        /**
+         * Restituisce la frazione completata, nel formato atteso da una {@code ProgressBar} JavaFX.
+         * @return Un valore tra 0 e 1, o -1 se l'avanzamento non è misurabile.
+         */
+        public double fraction() {
+            return total <= 0 ? -1 : (double) done / total;
+        }
+    }
+
+    /**
+     * Esito dell'importazione.
+     * @param rows Il numero di righe di dati lette dal file.
+     * @param imported Il numero di attività inserite.
+     * @param duplicates Il numero di righe valide non inserite perché identiche a un'attività già presente o a una riga precedente del file.
+     * @param rejected Il numero di righe scartate perché non valide.
+     * @param rejectFile Il file con le righe scartate, o {@code null} se nessuna riga è stata scartata.
+     */
+    public record ImportResult(int rows, int imported, int duplicates, int rejected, Path rejectFile) {
+    }
+
+    private final ActivityDAO activityDao = new ActivityDAO();
+    private final ColtureDAO coltureDao = new ColtureDAO();
+
+    /**
+     * Importa le attività dal file CSV nei lotti del proprietario indicato.
+     * Per un'importazione atomica va eseguita all'interno di una {@link com.unina.biogarden.database.UnitOfWork}.
+     * @param csv Il file da importare, codificato in UTF-8.
+     * @param ownerId L'ID dell'utente proprietario dei lotti di destinazione.
+     * @param progress Il consumatore che riceve l'avanzamento; viene invocato sul thread chiamante.
+     * @return L'{@link ImportResult} dell'importazione.
+     * @throws IOException Se il file non può essere letto o il file degli scarti non può essere scritto.
+     * @throws IllegalArgumentException Se l'intestazione del file non contiene le colonne obbligatorie.
+     * @throws RuntimeException Se si verifica un errore SQL durante il caricamento.
+     */
+    public ImportResult importFile(Path csv, int ownerId, Consumer<ImportProgress> progress) throws IOException {
+        progress.accept(new ImportProgress("Lettura del file", 0, 0));
+
+        String header;
+        List<List<String>> chunks = new ArrayList<>();
+        int rows = 0;
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("Il file è vuoto.");
+            }
+            // Marcatore BOM aggiunto da alcuni fogli di calcolo
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> chunk = new ArrayList<>(CHUNK_LINES);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunk.add(line);
+                rows++;
+                if (chunk.size() == CHUNK_LINES) {
+                    chunks.add(chunk);
+                    chunk = new ArrayList<>(CHUNK_LINES);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+        }
+
+        char separator = header.indexOf(';') >= 0 ? ';' : ',';
+        Columns columns = Columns.of(split(header, separator));
+        Resolver resolver = new Resolver(coltureDao.fetchColtureLocationsByOwner(ownerId), FarmerDirectory.getFarmers());
+
+        // Ogni blocco viene analizzato in parallelo; i numeri di riga partono da 2 (la riga 1 è l'intestazione)
+        List<CompletableFuture<ParsedChunk>> parsed = new ArrayList<>(chunks.size());
+        int firstLine = 2;
+        for (List<String> chunk : chunks) {
+            int start = firstLine;
+            parsed.add(CompletableFuture.supplyAsync(() -> parse(chunk, start, separator, columns, resolver)));
+            firstLine += chunk.size();
+        }
+
+        int totalRows = rows;
+        int[] accepted = {0};
+        List<Reject> rejects = new ArrayList<>();
+        Iterable<byte[]> copyData = () -> new Iterator<>() {
+            private int next = 0;
+            private int done = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < parsed.size();
+            }
+
+            @Override
+            public byte[] next() {
+                ParsedChunk chunk = parsed.get(next++).join();
+                accepted[0] += chunk.accepted();
+                rejects.addAll(chunk.rejects());
+                done += chunk.lines();
+                progress.accept(new ImportProgress("Caricamento delle attività", done, totalRows));
+                return chunk.copyData();
+            }
+        };
+
+        int imported = 0;
+        if (!parsed.isEmpty()) {
+            imported = activityDao.importActivities(copyData);
+        }
+        progress.accept(new ImportProgress("Importazione completata", totalRows, totalRows));
+
+        Path rejectFile = rejects.isEmpty() ? null : writeRejects(csv, header, separator, rejects);
+        return new ImportResult(rows, imported, accepted[0] - imported, rejects.size(), rejectFile);
+    }
+
+    /**
+     * Analizza e valida un blocco di righe, producendo i dati {@code COPY} delle righe valide e gli scarti.
+     * @param lines Le righe del blocco.
+     * @param firstLine Il numero di riga nel file della prima riga del blocco.
+     * @param separator Il separatore dei campi.
+     * @param columns La posizione delle colonne.
+     * @param resolver Il risolutore di coltivazioni e agricoltori.
+     * @return Il blocco analizzato.
+     */
+    private static ParsedChunk parse(List<String> lines, int firstLine, char separator, Columns columns, Resolver resolver) {
+        StringBuilder copy = new StringBuilder(lines.size() * 96);
+        List<Reject> rejects = new ArrayList<>();
+        int accepted = 0;
+        int lineNumber = firstLine;
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                try {
+                    appendRow(copy, lineNumber, split(line, separator), columns, resolver);
+                    accepted++;
+                } catch (IllegalArgumentException e) {
+                    rejects.add(new Reject(line, "Riga " + lineNumber + ": " + e.getMessage()));
+                }
+            }
+            lineNumber++;
+        }
+        return new ParsedChunk(copy.toString().getBytes(StandardCharsets.UTF_8), lines.size(), accepted, rejects);
+    }
+
+    /**
+     * Valida una riga e ne aggiunge la rappresentazione {@code COPY} (formato testo) al buffer.
+     * @param copy Il buffer dei dati {@code COPY}.
+     * @param lineNumber Il numero di riga nel file.
+     * @param fields I campi della riga.
+     * @param columns La posizione delle colonne.
+     * @param resolver Il risolutore di coltivazioni e agricoltori.
+     * @throws IllegalArgumentException Se la riga non è valida; il messaggio descrive il motivo.
+     */
+    private static void appendRow(StringBuilder copy, int lineNumber, List<String> fields, Columns columns, Resolver resolver) {
+        LocalDate date = parseDate(columns.required(fields, "data"));
+        ActivityType type = ActivityType.fromString(columns.required(fields, "tipo"));
+        ActivityStatus status = parseStatus(columns.required(fields, "stato"));
+        ColtureLocationDTO location = resolver.colture(columns.required(fields, "lotto"),
+                columns.required(fields, "progetto"), columns.required(fields, "coltura"));
+        int farmerId = resolver.farmer(columns.required(fields, "agricoltore"));
+
+        Integer seedQuantity = null;
+        String seedUnit = null;
+        Integer plannedQuantity = null;
+        Integer actualQuantity = null;
+        String harvestUnit = null;
+        switch (type) {
+            case SEEDING -> {
+                seedQuantity = parseQuantity(columns.required(fields, "quantita_semi"), "quantita_semi");
+                seedUnit = text(columns.required(fields, "unita_semi"), "unita_semi");
+            }
+            case HARVEST -> {
+                plannedQuantity = parseQuantity(columns.required(fields, "quantita_prevista"), "quantita_prevista");
+                actualQuantity = parseQuantity(columns.required(fields, "quantita_effettiva"), "quantita_effettiva");
+                harvestUnit = text(columns.required(fields, "unita_raccolta"), "unita_raccolta");
+            }
+            case IRRIGATION -> {
+                // Nessun campo specifico: restano null
+            }
+        }
+
+        copy.append(lineNumber).append('\t')
+                .append(date).append('\t')
+                .append(status.getStatus()).append('\t')
+                .append(type.getDescription()).append('\t')
+                .append(location.lotId()).append('\t')
+                .append(location.coltureId()).append('\t')
+                .append(farmerId).append('\t');
+        appendValue(copy, seedQuantity).append('\t');
+        appendValue(copy, seedUnit).append('\t');
+        appendValue(copy, plannedQuantity).append('\t');
+        appendValue(copy, actualQuantity).append('\t');
+        appendValue(copy, harvestUnit).append('\n');
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return value.indexOf('/') >= 0 ? LocalDate.parse(value, ITALIAN_DATE) : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data non valida: " + value);
+        }
+    }
+
+    /**
+     * Riconosce lo stato sia dal valore del database (es. {@code in_corso}) sia dall'etichetta mostrata (es. {@code In Corso}).
+     */
+    private static ActivityStatus parseStatus(String value) {
+        for (ActivityStatus status : ActivityStatus.values()) {
+            if (status.getLabel().equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        return ActivityStatus.fromString(value);
+    }
+
+    private static int parseQuantity(String value, String column) {
+        try {
+            int quantity = Integer.parseInt(value);
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Quantità negativa nella colonna " + column + ": " + value);
+            }
+            return quantity;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Quantità non valida nella colonna " + column + ": " + value);
+        }
+    }
+
+    private static String text(String value, String column) {
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Valore troppo lungo nella colonna " + column + " (massimo " + MAX_TEXT_LENGTH + " caratteri)");
+        }
+        return value;
+    }
+
+    /**
+     * Aggiunge un valore nel formato testo di {@code COPY}: {@code \N} per i nulli, con i caratteri speciali protetti.
+     */
+    private static StringBuilder appendValue(StringBuilder copy, Object value) {
+        if (value == null) {
+            return copy.append("\\N");
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> copy.append("\\\\");
+                case '\t' -> copy.append("\\t");
+                case '\n' -> copy.append("\\n");
+                case '\r' -> copy.append("\\r");
+                default -> copy.append(c);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Divide una riga CSV nei suoi campi, rispettando le virgolette (con {@code ""} per una virgoletta letterale).
+     * I campi vengono restituiti senza spazi iniziali e finali.
+     * @param line La riga da dividere.
+     * @param separator Il separatore dei campi.
+     * @return La lista dei campi.
+     * @throws IllegalArgumentException Se una virgoletta non è chiusa.
+     */
+    private static List<String> split(String line, char separator) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString().strip());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Virgolette non chiuse");
+        }
+        fields.add(field.toString().strip());
+        return fields;
+    }
+
+    /**
+     * Scrive le righe scartate in un file accanto a quello importato, con l'intestazione originale
+     * e una colonna aggiuntiva con il motivo dello scarto.
+     * @return Il percorso del file scritto.
+     */
+    private static Path writeRejects(Path csv, String header, char separator, List<Reject> rejects) throws IOException {
+        String name = csv.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path rejectFile = csv.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + "-scarti.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+            writer.write(header + separator + "errore");
+            writer.newLine();
+            for (Reject reject : rejects) {
+                writer.write(reject.line() + separator + '"' + reject.reason().replace("\"", "\"\"") + '"');
+                writer.newLine();
+            }
+        }
+        return rejectFile;
+    }
+
+    /**
+     * Posizione delle colonne riconosciute nell'intestazione.
+     */
+    private record Columns(Map<String, Integer> indexes) {
+
+        private static Columns of(List<String> header) {
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                indexes.putIfAbsent(header.get(i).toLowerCase(Locale.ROOT), i);
+            }
+            for (String column : REQUIRED_COLUMNS) {
+                if (!indexes.containsKey(column)) {
+                    throw new IllegalArgumentException("Colonna obbligatoria mancante nel file: " + column);
+                }
+            }
+            return new Columns(Map.copyOf(indexes));
+        }
+
+        /**
+         * Restituisce il valore non vuoto di una colonna.
+         * @throws IllegalArgumentException Se la colonna manca o il valore è vuoto.
+         */
+        private String required(List<String> fields, String column) {
+            Integer index = indexes.get(column);
+            String value = index == null || index >= fields.size() ? "" : fields.get(index);
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Valore mancante nella colonna " + column);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Risolve i riferimenti testuali delle righe negli ID del database, a partire da dati caricati una sola volta.
+     * È immutabile dopo la costruzione e può quindi essere usato da più thread.
+     */
+    private static final class Resolver {
+        private final Map<String, ColtureLocationDTO> coltures = new HashMap<>();
+        private final Set<String> ambiguous = new HashSet<>();
+        private final Map<String, Integer> farmers = new HashMap<>();
+
+        private Resolver(Iterable<ColtureLocationDTO> locations, Iterable<Farmer> farmerList) {
+            for (ColtureLocationDTO location : locations) {
+                String key = key(location.lotName(), location.projectName(), location.cropName());
+                if (coltures.putIfAbsent(key, location) != null) {
+                    ambiguous.add(key);
+                }
+            }
+            for (Farmer farmer : farmerList) {
+                if (farmer.getEmail() != null) {
+                    farmers.put(farmer.getEmail().toLowerCase(Locale.ROOT), farmer.getId());
+                }
+            }
+        }
+
+        private ColtureLocationDTO colture(String lot, String project, String crop) {
+            String key = key(lot, project, crop);
+            if (ambiguous.contains(key)) {
+                throw new IllegalArgumentException("Più coltivazioni corrispondono a lotto, progetto e coltura indicati");
+            }
+            ColtureLocationDTO location = coltures.get(key);
+            if (location == null) {
+                throw new IllegalArgumentException("Coltivazione non trovata: " + lot + " / " + project + " / " + crop);
+            }
+            return location;
+        }
+
+        private int farmer(String email) {
+            Integer id = farmers.get(email.toLowerCase(Locale.ROOT));
+            if (id == null) {
+                throw new IllegalArgumentException("Agricoltore non trovato: " + email);
+            }
+            return id;
+        }
+
+        private static String key(String lot, String project, String crop) {
+            return (lot + '\0' + project + '\0' + crop).toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Blocco di righe analizzato.
+     * @param copyData Le righe valide in formato {@code COPY}, codificate in UTF-8.
+     * @param lines Il numero di righe del blocco.
+     * @param accepted Il numero di righe valide.
+     * @param rejects Le righe scartate.
+     */
+    private record ParsedChunk(byte[] copyData, int lines, int accepted, List<Reject> rejects) {
+    }
+
+    /**
+     * Riga scartata.
+     * @param line La riga originale.
+     * @param reason Il motivo dello scarto.
+     */
+    private record Reject(String line, String reason) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.unina.biogarden.service;
+
+import com.unina.biogarden.dao.ActivityDAO;
+import com.unina.biogarden.dao.ColtureDAO;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manutenzione periodica della tabella delle attività, eseguita in background.
+ * Ad ogni esecuzione:
+ * <ul>
+ *     <li>crea le partizioni annuali delle attività correnti per l'anno in corso e per quello successivo,
+ *     così che le nuove attività non finiscano nella partizione di default;</li>
+ *     <li>sposta nella partizione di archivio le attività dei progetti terminati da più di
+ *     {@code biogarden.archive.months} mesi (24 per default; un valore non positivo disattiva l'archiviazione);</li>
+ *     <li>aggiorna lo stato delle coltivazioni, così che quelle seminate diventino mature allo scadere del
+ *     tempo di maturazione anche se nessuno le consulta.</li>
+ * </ul>
+ * La prima esecuzione avviene poco dopo l'avvio, le successive una volta al giorno.
+ * @author Il Tuo Nome
+ */
+public final class ActivityMaintenance {
+
+    private static final long INITIAL_DELAY_SECONDS = 30;
+    private static final long PERIOD_HOURS = 24;
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private ActivityMaintenance() {
+    }
+
+    /**
+     * Avvia la manutenzione periodica, se non già avviata.
+     */
+    public static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("activity-maintenance").factory());
+        scheduler.scheduleWithFixedDelay(ActivityMaintenance::runSafely, INITIAL_DELAY_SECONDS,
+                TimeUnit.HOURS.toSeconds(PERIOD_HOURS), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Arresta la manutenzione periodica. Un'esecuzione in corso viene interrotta.
+     */
+    public static synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    /**
+     * Esegue subito una manutenzione completa: creazione delle partizioni, aggiornamento dello stato
+     * delle coltivazioni e archiviazione.
+     * @return Il numero di attività archiviate.
+     * @throws RuntimeException se si verifica un errore SQL durante la manutenzione.
+     */
+    public static int run() {
+        ActivityDAO activityDao = new ActivityDAO();
+        LocalDate today = LocalDate.now();
+        activityDao.createActivityPartitions(today.getYear(), today.getYear() + 1);
+        new ColtureDAO().refreshStatuses(today);
+
+        int months = Integer.getInteger("biogarden.archive.months", 24);
+        if (months <= 0) {
+            return 0;
+        }
+        return activityDao.archiveActivities(today.minusMonths(months));
+    }
+
+    /**
+     * Esegue la manutenzione senza propagare gli errori, che interromperebbero le esecuzioni successive.
+     */
+    private static void runSafely() {
+        try {
+            int archived = run();
+            if (archived > 0) {
+                System.out.println("Attività archiviate: " + archived);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.unina.biogarden.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Facciata asincrona sopra un servizio del sistema BioGarden (ad esempio {@link ProjectService} o {@link UserService}).
+ * Ogni chiamata viene eseguita su un thread virtuale dedicato e restituisce un {@link CompletableFuture},
+ * così che le operazioni sul database non blocchino mai il thread dell'interfaccia JavaFX.
+ * Per riportare il risultato sull'interfaccia si usa {@link com.unina.biogarden.utils.Utils#onFxThread}.
+ * @param <S> Il tipo del servizio sottostante.
+ * @author Il Tuo Nome
+ */
+public final class AsyncService<S> {
+
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final S service;
+
+    /**
+     * Crea una facciata asincrona sopra il servizio fornito.
+     * Il servizio deve poter essere usato da più thread contemporaneamente, come lo sono i servizi
+     * di questo package (i DAO ottengono una nuova connessione dal pool ad ogni chiamata).
+     * @param service Il servizio sottostante.
+     */
+    public AsyncService(S service) {
+        this.service = service;
+    }
+
+    /**
+     * Operazione sul servizio che produce un risultato.
+     * @param <S> Il tipo del servizio.
+     * @param <T> Il tipo del risultato.
+     */
+    @FunctionalInterface
+    public interface Call<S, T> {
+        T call(S service) throws Exception;
+    }
+
+    /**
+     * Operazione sul servizio senza risultato.
+     * @param <S> Il tipo del servizio.
+     */
+    @FunctionalInterface
+    public interface Task<S> {
+        void run(S service) throws Exception;
+    }
+
+    /**
+     * Esegue un'operazione sul servizio in un thread virtuale.
+     * Le eccezioni, anche controllate, completano il future in modo eccezionale.
+     * @param call L'operazione da eseguire.
+     * @param <T> Il tipo del risultato.
+     * @return Un {@link CompletableFuture} completato con il risultato dell'operazione.
+     */
+    public <T> CompletableFuture<T> supply(Call<? super S, ? extends T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call(service);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Esegue un'operazione senza risultato sul servizio in un thread virtuale.
+     * @param task L'operazione da eseguire.
+     * @return Un {@link CompletableFuture} completato al termine dell'operazione.
+     */
+    public CompletableFuture<Void> run(Task<? super S> task) {
+        return supply(s -> {
+            task.run(s);
+            return null;
+        });
+    }
+
+    /**
+     * Arresta l'esecutore condiviso. Da invocare alla chiusura dell'applicazione.
+     */
+    public static void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,64 @@
+package com.unina.biogarden.service;
+
+import com.unina.biogarden.dao.DaoCaches;
+import com.unina.biogarden.database.DatabaseNotifications;
+import com.unina.biogarden.database.DatabaseNotifications.Change;
+import com.unina.biogarden.database.DatabaseNotifications.Table;
+
+import java.util.Set;
+
+/**
+ * Applica alle cache in memoria del processo le modifiche segnalate da {@link DatabaseNotifications}:
+ * le cache dei DAO ({@link DaoCaches}), le statistiche di raccolta ({@link HarvestStatistics})
+ * e la rubrica degli utenti ({@link FarmerDirectory}).
+ * @author Il Tuo Nome
+ */
+public final class CacheInvalidation {
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private CacheInvalidation() {
+    }
+
+    /**
+     * Registra l'invalidazione delle cache tra i sottoscrittori delle notifiche del database.
+     * Da invocare prima di {@link DatabaseNotifications#start()}, così che le cache vengano aggiornate
+     * prima delle schermate.
+     */
+    public static void register() {
+        DatabaseNotifications.subscribe(CacheInvalidation::apply);
+    }
+
+    /**
+     * Invalida le voci delle cache toccate da una modifica.
+     * Le statistiche di raccolta vengono scartate per qualsiasi modifica che possa cambiarne
+     * il contenuto (attività, coltivazioni, progetti, nomi di lotti e colture) e verranno ricaricate alla prossima richiesta.
+     * @param change La modifica ricevuta.
+     */
+    public static void apply(Change change) {
+        if (change.resync()) {
+            DaoCaches.invalidateAll();
+            HarvestStatistics.invalidate();
+            FarmerDirectory.invalidate();
+            return;
+        }
+
+        change.parentIds().getOrDefault(Table.LOTTO, Set.of()).forEach(DaoCaches::invalidateOwnerLots);
+        if (change.touches(Table.PROGETTO)) {
+            DaoCaches.invalidateProjects();
+        }
+        change.ids(Table.COLTIVAZIONE).forEach(DaoCaches::invalidateColture);
+        if (change.touches(Table.COLTURA)) {
+            DaoCaches.invalidateCrops();
+        }
+
+        if (change.touches(Table.ATTIVITA) || change.touches(Table.COLTIVAZIONE) || change.touches(Table.PROGETTO)
+                || change.touches(Table.LOTTO) || change.touches(Table.COLTURA)) {
+            HarvestStatistics.invalidate();
+        }
+        if (change.touches(Table.UTENTE)) {
+            FarmerDirectory.invalidate();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.unina.biogarden.service;
+
+import com.unina.biogarden.dao.UserDAO;
+import com.unina.biogarden.dto.UserDTO;
+import com.unina.biogarden.enumerations.UserType;
+import com.unina.biogarden.models.Farmer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rubrica in memoria degli utenti registrati nel sistema BioGarden, indicizzata per ID ed email.
+ * Il contenuto è una fotografia (snapshot) immutabile che viene sostituita in blocco ad ogni
+ * {@link #refresh()}, così che i lettori vedano sempre uno stato coerente senza sincronizzazione.
+ * La ricerca per ID avviene in tempo costante tramite una tabella hash a chiavi {@code int} primitive.
+ * La rubrica contiene solo i profili degli utenti (senza password) e la lista già pronta degli agricoltori.
+ * Viene caricata al login; trascorso {@link #TTL}, o dopo una scrittura segnalata con {@link #invalidate()},
+ * il primo accesso avvia un aggiornamento in background e continua a restituire la fotografia corrente
+ * finché quella nuova non è pronta.
+ * @author Il Tuo Nome
+ */
+public final class FarmerDirectory {
+
+    /**
+     * Durata di validità di una fotografia prima che venga aggiornata.
+     */
+    public static final Duration TTL = Duration.ofMinutes(5);
+
+    private static volatile Snapshot snapshot = Snapshot.EMPTY;
+    private static final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private FarmerDirectory() {
+    }
+
+    /**
+     * Ricarica la rubrica leggendo dal database i profili di tutti gli utenti, senza password.
+     * La nuova fotografia viene pubblicata atomicamente al termine del caricamento.
+     * @throws RuntimeException Se si verifica un errore SQL durante il recupero degli utenti.
+     */
+    public static void refresh() {
+        refresh(new UserDAO().fetchAllUserProfiles());
+    }
+
+    /**
+     * Sostituisce il contenuto della rubrica con la collezione di utenti fornita.
+     * Eventuali password presenti nei DTO non vengono conservate.
+     * @param users Gli utenti da indicizzare.
+     */
+    public static void refresh(Collection<UserDTO> users) {
+        snapshot = Snapshot.of(users, System.nanoTime() + TTL.toNanos());
+    }
+
+    /**
+     * Segnala che gli utenti sono cambiati (ad esempio dopo una registrazione).
+     * La fotografia corrente resta utilizzabile, ma il prossimo accesso ne avvierà l'aggiornamento.
+     */
+    public static void invalidate() {
+        Snapshot current = snapshot;
+        if (current != Snapshot.EMPTY) {
+            snapshot = current.expired();
+        }
+    }
+
+    /**
+     * Indica se la rubrica è stata caricata almeno una volta.
+     * @return {@code true} se è stato eseguito almeno un {@link #refresh()}, {@code false} altrimenti.
+     */
+    public static boolean isLoaded() {
+        return snapshot != Snapshot.EMPTY;
+    }
+
+    /**
+     * Cerca un utente tramite il suo ID.
+     * @param id L'ID dell'utente.
+     * @return Il {@link UserDTO} corrispondente, o {@code null} se non presente nella rubrica.
+     */
+    public static UserDTO findById(int id) {
+        return current().byId(id);
+    }
+
+    /**
+     * Cerca un utente tramite il suo indirizzo email (ignorando maiuscole/minuscole).
+     * @param email L'indirizzo email dell'utente.
+     * @return Il {@link UserDTO} corrispondente, o {@code null} se non presente nella rubrica.
+     */
+    public static UserDTO findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return current().byEmail.get(email.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Restituisce tutti gli utenti presenti nella rubrica.
+     * @return Una collezione immutabile di {@link UserDTO}, senza password.
+     */
+    public static Collection<UserDTO> getUsers() {
+        return current().users;
+    }
+
+    /**
+     * Restituisce gli utenti di tipo {@link UserType#FARMER}, già convertiti in {@link Farmer}.
+     * La lista viene costruita una sola volta per fotografia.
+     * @return Una lista immutabile di {@link Farmer}.
+     */
+    public static List<Farmer> getFarmers() {
+        return current().farmers;
+    }
+
+    /**
+     * Restituisce la fotografia corrente, caricandola se la rubrica è vuota
+     * e avviandone l'aggiornamento in background se è scaduta.
+     * @return La fotografia da usare per la lettura.
+     */
+    private static Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == Snapshot.EMPTY) {
+            refresh();
+            return snapshot;
+        }
+        if (System.nanoTime() - current.expiresAt >= 0 && refreshing.compareAndSet(false, true)) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * Fotografia immutabile della rubrica.
+     * Gli ID sono memorizzati in una tabella hash ad indirizzamento aperto (probing lineare)
+     * con chiavi {@code int} primitive, evitando il boxing e la scansione lineare degli utenti.
+     */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = of(List.of(), 0);
+
+        private final int[] keys;
+        private final UserDTO[] values;
+        private final int mask;
+        private final Map<String, UserDTO> byEmail;
+        private final List<UserDTO> users;
+        private final List<Farmer> farmers;
+        private final long expiresAt;
+
+        private Snapshot(int[] keys, UserDTO[] values, Map<String, UserDTO> byEmail, List<UserDTO> users,
+                         List<Farmer> farmers, long expiresAt) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.byEmail = byEmail;
+            this.users = users;
+            this.farmers = farmers;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Costruisce una fotografia indicizzando gli utenti forniti.
+         * @param source Gli utenti da indicizzare.
+         * @param expiresAt L'istante (in {@link System#nanoTime()}) oltre il quale la fotografia è scaduta.
+         * @return La nuova fotografia.
+         */
+        private static Snapshot of(Collection<UserDTO> source, long expiresAt) {
+            // Capacità potenza di due con fattore di carico massimo 0.5
+            int capacity = Integer.highestOneBit(Math.max(2, source.size() * 2 - 1)) << 1;
+            int[] keys = new int[capacity];
+            UserDTO[] values = new UserDTO[capacity];
+            Map<String, UserDTO> byEmail = new HashMap<>();
+            List<UserDTO> users = new ArrayList<>(source.size());
+            List<Farmer> farmers = new ArrayList<>();
+
+            for (UserDTO dto : source) {
+                UserDTO user = dto.password() == null ? dto
+                        : new UserDTO(dto.id(), dto.nome(), dto.cognome(), null, dto.email(), dto.tipo());
+                users.add(user);
+                if (user.tipo() == UserType.FARMER) {
+                    farmers.add(new Farmer(user.id(), user.nome(), user.cognome(), user.email()));
+                }
+
+                int slot = hash(user.id()) & (capacity - 1);
+                while (values[slot] != null && keys[slot] != user.id()) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = user.id();
+                values[slot] = user;
+                if (user.email() != null) {
+                    byEmail.put(user.email().toLowerCase(Locale.ROOT), user);
+                }
+            }
+            return new Snapshot(keys, values, Map.copyOf(byEmail), List.copyOf(users), List.copyOf(farmers), expiresAt);
+        }
+
+        /**
+         * Restituisce una copia di questa fotografia già scaduta, con gli stessi indici.
+         * @return La fotografia scaduta.
+         */
+        private Snapshot expired() {
+            return new Snapshot(keys, values, byEmail, users, farmers, System.nanoTime());
+        }
+
+        /**
+         * Cerca un utente per ID nella tabella hash.
+         * @param id L'ID dell'utente.
+         * @return Il {@link UserDTO} trovato, o {@code null}.
+         */
+        private UserDTO byId(int id) {
+            int slot = hash(id) & mask;
+            UserDTO value;
+            while ((value = values[slot]) != null) {
+                if (keys[slot] == id) {
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Distribuisce i bit dell'ID per ridurre le collisioni su ID sequenziali.
+         * @param id L'ID da distribuire.
+         * @return Il valore hash.
+         */
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
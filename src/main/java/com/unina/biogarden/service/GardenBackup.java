@@ -0,0 +1,227 @@
+package com.unina.biogarden.service;
+
+import com.unina.biogarden.dao.ActivityDAO;
+import com.unina.biogarden.dao.BackupDAO;
+import com.unina.biogarden.database.ConnectionManager;
+import com.unina.biogarden.database.UnitOfWork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Esportazione e ripristino dei dati dell'orto di un proprietario: lotti, progetti, coltivazioni e attività,
+ * insieme alle colture coltivate e agli utenti coinvolti.
+ * Ogni tabella viene trasferita con {@code COPY} in un file CSV compresso con gzip ({@code <tabella>.csv.gz}),
+ * scritto e letto in streaming: la memoria usata non dipende dalla quantità di dati.
+ * L'esportazione legge tutte le tabelle dalla stessa fotografia del database ({@link UnitOfWork#readOnly})
+ * e scrive per ultimo il file {@code backup.properties}, la cui assenza indica un'esportazione incompleta.
+ * Il ripristino carica un'esportazione in un database vuoto in un'unica transazione.
+ * <p>
+ * L'esportazione contiene gli hash delle password del proprietario e degli agricoltori coinvolti,
+ * così che dopo il ripristino tutti possano accedere con le proprie credenziali: va quindi conservata come dato sensibile.
+ * Dove il file system lo consente, la cartella dell'esportazione è accessibile al solo utente che la crea.
+ * <p>
+ * La classe non dipende da JavaFX e può essere eseguita da riga di comando, ad esempio da un job notturno:
+ * <pre>
+ * java -cp ... com.unina.biogarden.service.GardenBackup export &lt;email proprietario&gt; &lt;cartella&gt;
+ * java -cp ... com.unina.biogarden.service.GardenBackup restore &lt;cartella esportazione&gt;
+ * </pre>
+ * @author Il Tuo Nome
+ */
+public final class GardenBackup {
+
+    /**
+     * Versione del formato di esportazione, da incrementare se cambia la struttura dei file.
+     */
+    private static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST = "backup.properties";
+    private static final String EXTENSION = ".csv.gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter FOLDER_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * Riepilogo di un'esportazione o di un ripristino.
+     * @param directory La cartella dell'esportazione.
+     * @param rows Il numero di righe trasferite per ogni tabella, nell'ordine di ripristino.
+     */
+    public record BackupSummary(Path directory, Map<BackupDAO.Table, Long> rows) {
+
+        /**
+         * Restituisce il numero totale di righe trasferite.
+         * @return Il totale delle righe di tutte le tabelle.
+         */
+        public long totalRows() {
+            return rows.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    private final BackupDAO backupDao = new BackupDAO();
+    private final ActivityDAO activityDao = new ActivityDAO();
+
+    /**
+     * Esporta i dati di un proprietario in una nuova sottocartella di {@code parent},
+     * chiamata {@code biogarden-<id proprietario>-<data e ora>}.
+     * @param ownerId L'ID del proprietario.
+     * @param parent La cartella in cui creare l'esportazione; viene creata se non esiste.
+     * @return Il {@link BackupSummary} dell'esportazione.
+     * @throws IOException se i file non possono essere scritti.
+     * @throws RuntimeException se si verifica un errore SQL durante l'esportazione.
+     */
+    public BackupSummary export(int ownerId, Path parent) throws IOException {
+        Path directory = parent.resolve("biogarden-" + ownerId + "-" + LocalDateTime.now().format(FOLDER_FORMAT));
+        Files.createDirectories(directory);
+        if (Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+        }
+
+        return UnitOfWork.readOnly(() -> {
+            Map<BackupDAO.Table, Long> rows = new LinkedHashMap<>();
+            for (BackupDAO.Table table : BackupDAO.Table.values()) {
+                try (OutputStream out = new GZIPOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(fileOf(directory, table)), BUFFER_SIZE), BUFFER_SIZE)) {
+                    rows.put(table, backupDao.exportTable(table, ownerId, out));
+                }
+            }
+
+            Properties manifest = new Properties();
+            manifest.setProperty("formato", String.valueOf(FORMAT_VERSION));
+            manifest.setProperty("versioneSchema", String.valueOf(backupDao.fetchSchemaVersion()));
+            manifest.setProperty("proprietario", String.valueOf(ownerId));
+            manifest.setProperty("creato", LocalDateTime.now().toString());
+            manifest.setProperty("anniAttivita", backupDao.fetchActivityYears(ownerId).stream()
+                    .map(String::valueOf).collect(Collectors.joining(",")));
+            rows.forEach((table, count) -> manifest.setProperty("righe." + table.fileName(), String.valueOf(count)));
+            try (Writer writer = Files.newBufferedWriter(directory.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+                manifest.store(writer, "Esportazione BioGarden");
+            }
+            return new BackupSummary(directory, rows);
+        });
+    }
+
+    /**
+     * Ripristina un'esportazione in un database vuoto, mantenendo gli ID originali.
+     * Le partizioni annuali delle attività vengono create prima del caricamento, così che le righe
+     * finiscano direttamente nella partizione del loro anno. Se una qualsiasi tabella non può essere caricata,
+     * l'intero ripristino viene annullato e il database resta vuoto.
+     * @param directory La cartella dell'esportazione.
+     * @return Il {@link BackupSummary} del ripristino.
+     * @throws IOException se l'esportazione è incompleta o i file non possono essere letti.
+     * @throws IllegalStateException se il database non è vuoto o l'esportazione proviene da uno schema più recente.
+     * @throws RuntimeException se si verifica un errore SQL durante il ripristino.
+     */
+    public BackupSummary restore(Path directory) throws IOException {
+        Properties manifest = readManifest(directory);
+        for (BackupDAO.Table table : BackupDAO.Table.values()) {
+            if (!Files.isRegularFile(fileOf(directory, table))) {
+                throw new IOException("File mancante nell'esportazione: " + fileOf(directory, table).getFileName());
+            }
+        }
+
+        return UnitOfWork.inTransaction(() -> {
+            int schemaVersion = Integer.parseInt(manifest.getProperty("versioneSchema", "0"));
+            if (schemaVersion > backupDao.fetchSchemaVersion()) {
+                throw new IllegalStateException("L'esportazione proviene da una versione più recente dello schema (" + schemaVersion + ").");
+            }
+            if (!backupDao.isDatabaseEmpty()) {
+                throw new IllegalStateException("Il database di destinazione non è vuoto.");
+            }
+
+            for (String year : manifest.getProperty("anniAttivita", "").split(",")) {
+                if (!year.isBlank()) {
+                    activityDao.createActivityPartitions(Integer.parseInt(year), Integer.parseInt(year));
+                }
+            }
+
+            Map<BackupDAO.Table, Long> rows = new LinkedHashMap<>();
+            for (BackupDAO.Table table : BackupDAO.Table.values()) {
+                try (InputStream in = new GZIPInputStream(
+                        new BufferedInputStream(Files.newInputStream(fileOf(directory, table)), BUFFER_SIZE), BUFFER_SIZE)) {
+                    rows.put(table, backupDao.restoreTable(table, in));
+                }
+            }
+            backupDao.completeRestore();
+            return new BackupSummary(directory, rows);
+        });
+    }
+
+    /**
+     * Legge il file descrittivo di un'esportazione, verificandone il formato.
+     * @param directory La cartella dell'esportazione.
+     * @return Le proprietà dell'esportazione.
+     * @throws IOException se il file non esiste, non può essere letto o ha un formato non supportato.
+     */
+    private static Properties readManifest(Path directory) throws IOException {
+        Path file = directory.resolve(MANIFEST);
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("Esportazione incompleta o non valida: manca " + MANIFEST + " in " + directory);
+        }
+        Properties manifest = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            manifest.load(reader);
+        }
+        if (!String.valueOf(FORMAT_VERSION).equals(manifest.getProperty("formato"))) {
+            throw new IOException("Formato di esportazione non supportato: " + manifest.getProperty("formato"));
+        }
+        return manifest;
+    }
+
+    private static Path fileOf(Path directory, BackupDAO.Table table) {
+        return directory.resolve(table.fileName() + EXTENSION);
+    }
+
+    /**
+     * Punto di ingresso da riga di comando, utilizzabile senza avviare l'interfaccia JavaFX.
+     * @param args {@code export <email proprietario> <cartella>} oppure {@code restore <cartella esportazione>}.
+     */
+    public static void main(String[] args) {
+        List<String> arguments = Arrays.asList(args);
+        int exitCode = 0;
+        try {
+            GardenBackup backup = new GardenBackup();
+            if (arguments.size() == 3 && arguments.get(0).equals("export")) {
+                Integer ownerId = new BackupDAO().fetchOwnerId(arguments.get(1));
+                if (ownerId == null) {
+                    throw new IllegalArgumentException("Nessun proprietario con email " + arguments.get(1));
+                }
+                print("Esportazione completata", backup.export(ownerId, Path.of(arguments.get(2))));
+            } else if (arguments.size() == 2 && arguments.get(0).equals("restore")) {
+                print("Ripristino completato", backup.restore(Path.of(arguments.get(1))));
+            } else {
+                System.err.println("Uso: GardenBackup export <email proprietario> <cartella>");
+                System.err.println("     GardenBackup restore <cartella esportazione>");
+                exitCode = 2;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Errore: " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            ConnectionManager.shutdown();
+        }
+        System.exit(exitCode);
+    }
+
+    private static void print(String message, BackupSummary summary) {
+        System.out.println(message + ": " + summary.directory());
+        summary.rows().forEach((table, count) -> System.out.println("  " + table.fileName() + ": " + count));
+    }
+}
@@ -0,0 +1,295 @@
+package com.unina.biogarden.service;
+
+import com.unina.biogarden.dto.HarvestAggregateDTO;
+import com.unina.biogarden.dto.HarvestSampleDTO;
+import com.unina.biogarden.models.report.HarvestReportEntry;
+
+import java.util.*;
+
+/**
+ * Statistiche di raccolta mantenute in memoria e aggiornate in modo incrementale.
+ * Per ogni chiave (lotto, coltura, unità di misura) vengono conservati solo numero, somma, minimo e massimo
+ * delle quantità effettivamente raccolte, così che il report possa essere prodotto senza interrogare il database
+ * e la memoria usata dipenda dal numero di chiavi e non dal numero di raccolte.
+ * Le statistiche riguardano i soli lotti di un proprietario: vengono caricate una prima volta dal database,
+ * con una query aggregata, per l'utente della sessione e poi aggiornate ad ogni inserimento, modifica o eliminazione
+ * di un'attività di raccolta. Le raccolte senza quantità effettiva registrata non vengono considerate.
+ * Se una modifica o un'eliminazione rimuove il valore minimo o massimo di una chiave, il chiamante ricalcola
+ * dal database solo quella chiave e la sostituisce con {@link #recompute}.
+ * Il caricamento dal database avviene fuori dal lock: un contatore di generazione, incrementato da ogni scrittura
+ * registrata e da ogni invalidazione, permette di scartare un caricamento che potrebbe non includere
+ * una scrittura avvenuta nel frattempo (come in {@link com.unina.biogarden.utils.BoundedCache}).
+ * @author Il Tuo Nome
+ */
+public final class HarvestStatistics {
+
+    private static final Map<Key, Stats> stats = new HashMap<>();
+    private static final Map<Integer, String> lotNames = new HashMap<>();
+    private static boolean loaded = false;
+    private static int ownerId;
+    private static long generation;
+
+    /**
+     * Costruttore privato per prevenire l'istanziazione diretta di questa classe utility.
+     */
+    private HarvestStatistics() {
+    }
+
+    /**
+     * Indica se le statistiche sono state caricate e sono quindi utilizzabili.
+     * @return {@code true} se le statistiche sono caricate, {@code false} altrimenti.
+     */
+    public static synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Indica se le statistiche sono caricate per il proprietario indicato.
+     * @param owner L'ID dell'utente proprietario.
+     * @return {@code true} se le statistiche caricate riguardano i lotti di quel proprietario, {@code false} altrimenti.
+     */
+    public static synchronized boolean isLoadedFor(int owner) {
+        return loaded && ownerId == owner;
+    }
+
+    /**
+     * Restituisce la generazione corrente, da leggere prima di calcolare le statistiche dal database
+     * e da passare a {@link #load(int, long, Collection)} o a {@link #recompute}.
+     * @return La generazione corrente.
+     */
+    public static synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Sostituisce interamente le statistiche con quelle calcolate dal database, a meno che nel frattempo
+     * sia stata registrata una scrittura o un'invalidazione: in tal caso le statistiche fornite potrebbero
+     * non includerla e vengono scartate.
+     * @param owner L'ID dell'utente proprietario dei lotti a cui si riferiscono le statistiche.
+     * @param loadGeneration La generazione letta con {@link #generation()} prima del calcolo delle statistiche.
+     * @param aggregates Le statistiche delle raccolte dei lotti del proprietario, una per chiave.
+     * @return {@code true} se le statistiche sono state caricate, {@code false} se sono state scartate.
+     */
+    public static synchronized boolean load(int owner, long loadGeneration, Collection<HarvestAggregateDTO> aggregates) {
+        if (loadGeneration != generation) {
+            return false;
+        }
+        stats.clear();
+        lotNames.clear();
+        for (HarvestAggregateDTO aggregate : aggregates) {
+            lotNames.put(aggregate.lotId(), aggregate.lotName());
+            stats.put(new Key(aggregate.lotId(), aggregate.cropName(), aggregate.unit()), Stats.of(aggregate));
+        }
+        ownerId = owner;
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Scarta le statistiche in memoria; verranno ricaricate dal database alla prossima richiesta.
+     */
+    public static synchronized void invalidate() {
+        generation++;
+        stats.clear();
+        lotNames.clear();
+        loaded = false;
+    }
+
+    /**
+     * Indica se il nome del lotto specificato è già noto alle statistiche.
+     * @param lotId L'ID del lotto.
+     * @return {@code true} se il nome del lotto è noto, {@code false} altrimenti.
+     */
+    public static synchronized boolean knowsLot(int lotId) {
+        return lotNames.containsKey(lotId);
+    }
+
+    /**
+     * Registra una nuova attività di raccolta. Se le statistiche non sono ancora caricate non fa nulla,
+     * poiché il caricamento successivo includerà già l'attività; un caricamento già in corso viene invece scartato.
+     * @param lotId L'ID del lotto dell'attività.
+     * @param lotName Il nome del lotto, o {@code null} se già noto (vedi {@link #knowsLot(int)}).
+     * @param cropName Il nome della coltura raccolta.
+     * @param unit L'unità di misura della raccolta.
+     * @param quantity La quantità effettivamente raccolta.
+     */
+    public static synchronized void recordInsert(int lotId, String lotName, String cropName, String unit, int quantity) {
+        generation++;
+        if (!loaded) {
+            return;
+        }
+        if (lotName != null) {
+            lotNames.put(lotId, lotName);
+        }
+        add(new Key(lotId, cropName, unit), quantity);
+    }
+
+    /**
+     * Registra la modifica di un'attività di raccolta esistente.
+     * Lotto e coltura non cambiano con una modifica, quindi vengono ricavati dal valore precedente.
+     * Se il valore precedente non è noto, le statistiche vengono invalidate.
+     * @param before Il contributo dell'attività prima della modifica, letto dal database, o {@code null} se non disponibile.
+     * @param unit La nuova unità di misura.
+     * @param quantity La nuova quantità effettivamente raccolta.
+     * @return {@code true} se la chiave di {@code before} va ricalcolata con {@link #recompute},
+     * perché la modifica ne ha rimosso il minimo o il massimo.
+     */
+    public static synchronized boolean recordUpdate(HarvestSampleDTO before, String unit, int quantity) {
+        generation++;
+        if (!loaded) {
+            return false;
+        }
+        if (before == null) {
+            invalidate();
+            return false;
+        }
+        boolean stale = remove(before);
+        add(new Key(before.lotId(), before.cropName(), unit), quantity);
+        return stale;
+    }
+
+    /**
+     * Registra l'eliminazione di un'attività di raccolta.
+     * Se il valore precedente non è noto, le statistiche vengono invalidate.
+     * @param before Il contributo dell'attività prima dell'eliminazione, letto dal database, o {@code null} se non disponibile.
+     * @return {@code true} se la chiave di {@code before} va ricalcolata con {@link #recompute},
+     * perché l'eliminazione ne ha rimosso il minimo o il massimo.
+     */
+    public static synchronized boolean recordDelete(HarvestSampleDTO before) {
+        generation++;
+        if (!loaded) {
+            return false;
+        }
+        if (before == null) {
+            invalidate();
+            return false;
+        }
+        return remove(before);
+    }
+
+    /**
+     * Sostituisce le statistiche di una sola chiave con quelle ricalcolate dal database.
+     * Se nel frattempo è stata registrata un'altra scrittura, le statistiche ricalcolate potrebbero includerla
+     * o meno: in tal caso tutte le statistiche vengono invalidate.
+     * @param loadGeneration La generazione letta con {@link #generation()} prima del ricalcolo.
+     * @param sample Il contributo che identifica la chiave (lotto, coltura e unità di misura).
+     * @param aggregate Le statistiche ricalcolate, o {@code null} se alla chiave non restano raccolte.
+     */
+    public static synchronized void recompute(long loadGeneration, HarvestSampleDTO sample, HarvestAggregateDTO aggregate) {
+        if (!loaded) {
+            return;
+        }
+        if (loadGeneration != generation) {
+            invalidate();
+            return;
+        }
+        Key key = new Key(sample.lotId(), sample.cropName(), sample.unit());
+        if (aggregate == null) {
+            stats.remove(key);
+        } else {
+            stats.put(key, Stats.of(aggregate));
+        }
+    }
+
+    /**
+     * Produce il report di raccolta a partire dalle statistiche in memoria.
+     * @param lotId L'ID del lotto per filtrare il report. Se {@code null}, il report include tutti i lotti.
+     * @return Una {@link List} di {@link HarvestReportEntry}, ordinata per lotto e coltura.
+     * @throws IllegalStateException se le statistiche non sono caricate.
+     */
+    public static synchronized List<HarvestReportEntry> report(Integer lotId) {
+        if (!loaded) {
+            throw new IllegalStateException("Statistiche di raccolta non caricate.");
+        }
+        List<HarvestReportEntry> entries = new ArrayList<>();
+        for (Map.Entry<Key, Stats> entry : stats.entrySet()) {
+            Key key = entry.getKey();
+            if (lotId != null && key.lotId() != lotId) {
+                continue;
+            }
+            Stats value = entry.getValue();
+            entries.add(new HarvestReportEntry(
+                    lotNames.get(key.lotId()),
+                    key.cropName(),
+                    value.count,
+                    (double) value.sum / value.count,
+                    value.min,
+                    value.max,
+                    key.unit()
+            ));
+        }
+        entries.sort(Comparator.comparing(HarvestReportEntry::getLotName, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(HarvestReportEntry::getCultivationName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return entries;
+    }
+
+    /**
+     * Aggiunge una quantità raccolta alla chiave indicata.
+     * @param key La chiave (lotto, coltura, unità).
+     * @param quantity La quantità raccolta.
+     */
+    private static void add(Key key, int quantity) {
+        Stats value = stats.computeIfAbsent(key, k -> new Stats());
+        if (value.count == 0 || quantity < value.min) {
+            value.min = quantity;
+        }
+        if (value.count == 0 || quantity > value.max) {
+            value.max = quantity;
+        }
+        value.count++;
+        value.sum += quantity;
+    }
+
+    /**
+     * Rimuove il contributo di un'attività dalla sua chiave. Una raccolta senza quantità registrata non contribuisce.
+     * @param sample Il contributo dell'attività.
+     * @return {@code true} se il valore rimosso era il minimo o il massimo della chiave, o se la chiave non era nota,
+     * e la chiave va quindi ricalcolata.
+     */
+    private static boolean remove(HarvestSampleDTO sample) {
+        if (sample.quantity() == null) {
+            return false;
+        }
+        Key key = new Key(sample.lotId(), sample.cropName(), sample.unit());
+        Stats value = stats.get(key);
+        if (value == null) {
+            return true;
+        }
+        int quantity = sample.quantity();
+        value.count--;
+        value.sum -= quantity;
+        if (value.count == 0) {
+            stats.remove(key);
+            return false;
+        }
+        return quantity == value.min || quantity == value.max;
+    }
+
+    /**
+     * Chiave di aggregazione delle statistiche.
+     * @param lotId L'ID del lotto.
+     * @param cropName Il nome della coltura.
+     * @param unit L'unità di misura.
+     */
+    private record Key(int lotId, String cropName, String unit) {
+    }
+
+    /**
+     * Statistiche accumulate per una chiave.
+     */
+    private static final class Stats {
+        private int count;
+        private long sum;
+        private int min;
+        private int max;
+
+        private static Stats of(HarvestAggregateDTO aggregate) {
+            Stats value = new Stats();
+            value.count = aggregate.count();
+            value.sum = aggregate.sum();
+            value.min = aggregate.min();
+            value.max = aggregate.max();
+            return value;
+        }
+    }
+}
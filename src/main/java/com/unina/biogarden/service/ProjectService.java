@@ -1,14 +1,23 @@
 package com.unina.biogarden.service;
 
 import com.unina.biogarden.dao.*;
+import com.unina.biogarden.database.UnitOfWork;
+import com.unina.biogarden.dto.ColtureDTO;
+import com.unina.biogarden.dto.HarvestSampleDTO;
 import com.unina.biogarden.dto.LotDTO;
 import com.unina.biogarden.dto.ProjectDTO;
+import com.unina.biogarden.dto.ProjectWithLotDTO;
 import com.unina.biogarden.dto.UserDTO;
+import com.unina.biogarden.dto.activity.ActivityBulkUpdateDTO;
 import com.unina.biogarden.dto.activity.ActivityDTO;
+import com.unina.biogarden.dto.activity.ActivityFilterDTO;
 import com.unina.biogarden.dto.activity.HarvestingActivityDTO;
 import com.unina.biogarden.dto.activity.IrrigationActivityDTO;
+import com.unina.biogarden.dto.activity.IrrigationScheduleDTO;
+import com.unina.biogarden.dto.activity.ScheduleSyncDTO;
 import com.unina.biogarden.dto.activity.SeedingActivityDTO;
 import com.unina.biogarden.enumerations.ActivityType;
+import com.unina.biogarden.exceptions.ActivityConflictException;
 import com.unina.biogarden.exceptions.ColtureAlreadyExists;
 import com.unina.biogarden.models.Colture;
 import com.unina.biogarden.models.Crop;
@@ -19,8 +28,14 @@ import com.unina.biogarden.models.activity.HarvestingActivity;
 import com.unina.biogarden.models.activity.IrrigationActivity;
 import com.unina.biogarden.models.activity.SeedingActivity;
 import com.unina.biogarden.models.report.HarvestReportEntry;
+import com.unina.biogarden.session.Session;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Servizio per la gestione dei progetti nel sistema BioGarden.
@@ -32,12 +47,19 @@ import java.util.*;
  * @author Il Tuo Nome
  */
 public class ProjectService extends AbstractService<ProjectDTO> {
+    /**
+     * Numero massimo di letture delle raccolte per inizializzare le statistiche del report.
+     */
+    private static final int HARVEST_LOAD_ATTEMPTS = 3;
+
     private final ProjectDAO projectDao = new ProjectDAO();
     private final LotDAO lotDao = new LotDAO();
     private final CropDAO cropDao = new CropDAO();
     private final ColtureDAO coltureDao = new ColtureDAO();
 
     private final ActivityDAO activityDAO = new ActivityDAO();
+    private final IrrigationScheduleDAO scheduleDao = new IrrigationScheduleDAO();
+    private final ReportDAO reportDao = new ReportDAO();
 
 
     /**
@@ -74,6 +96,7 @@ public class ProjectService extends AbstractService<ProjectDTO> {
     /**
      * Aggiunge una nuova attività a una specifica coltivazione.
      * Il tipo di attività determina quale DTO specifico verrà creato e inviato al DAO.
+     * La ricerca del progetto e l'inserimento avvengono in un'unica {@link UnitOfWork}, con una sola connessione.
      *
      * @param colture L'oggetto {@link Colture} a cui aggiungere l'attività.
      * @param activity L'oggetto {@link Activity} da aggiungere. L'ID verrà generato dal database.
@@ -81,56 +104,125 @@ public class ProjectService extends AbstractService<ProjectDTO> {
      * @throws IllegalArgumentException Se il tipo di attività non è supportato.
      */
     public void addActivityToColture(Colture colture, Activity activity) {
-        ProjectDTO projectDTO = projectDao.fetchProjectByColtureId(colture.getId());
-        if (projectDTO == null) {
-            throw new IllegalStateException("Colture non associata a nessun progetto");
+        ProjectDTO projectDTO = UnitOfWork.inTransaction(() -> {
+            ProjectDTO project = projectDao.fetchProjectByColtureId(colture.getId());
+            if (project == null) {
+                throw new IllegalStateException("Colture non associata a nessun progetto");
+            }
+
+            int id = activityDAO.insertActivity(toNewActivityDTO(activity, colture.getId(), project.idLotto()));
+            activity.setId(id);
+            return project;
+        });
+        recordHarvestInsert(colture, projectDTO.idLotto(), activity);
+    }
+
+    /**
+     * Aggiunge più attività a una specifica coltivazione in un'unica operazione.
+     * Il progetto (e quindi il lotto) della coltivazione viene risolto una sola volta,
+     * e tutte le attività vengono inviate al database con un solo round trip tramite
+     * {@link ActivityDAO#insertActivities(Collection)}, all'interno di un'unica {@link UnitOfWork}.
+     *
+     * @param colture L'oggetto {@link Colture} a cui aggiungere le attività.
+     * @param activities Le attività da aggiungere. Gli ID verranno generati dal database.
+     * @return La {@link List} degli ID generati, nello stesso ordine delle attività fornite.
+     * @throws IllegalStateException Se la coltivazione non è associata a nessun progetto.
+     * @throws IllegalArgumentException Se il tipo di una delle attività non è supportato.
+     */
+    public List<Integer> addActivitiesToColture(Colture colture, Collection<? extends Activity> activities) {
+        if (activities.isEmpty()) {
+            return List.of();
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        ProjectDTO projectDTO = UnitOfWork.inTransaction(() -> {
+            ProjectDTO project = projectDao.fetchProjectByColtureId(colture.getId());
+            if (project == null) {
+                throw new IllegalStateException("Colture non associata a nessun progetto");
+            }
+
+            List<ActivityDTO> dtos = new ArrayList<>(activities.size());
+            for (Activity activity : activities) {
+                dtos.add(toNewActivityDTO(activity, colture.getId(), project.idLotto()));
+            }
+            ids.addAll(activityDAO.insertActivities(dtos));
+            return project;
+        });
+
+        Iterator<Integer> generatedIds = ids.iterator();
+        for (Activity activity : activities) {
+            activity.setId(generatedIds.next());
+            recordHarvestInsert(colture, projectDTO.idLotto(), activity);
         }
+        return ids;
+    }
 
-        ActivityDTO dto;
-        switch (activity.getType()) {
+    /**
+     * Metodo privato per aggiornare le {@link HarvestStatistics} dopo l'inserimento di un'attività.
+     * Le attività diverse dalla raccolta vengono ignorate.
+     *
+     * @param colture La coltivazione a cui è stata aggiunta l'attività.
+     * @param lotId L'ID del lotto della coltivazione.
+     * @param activity L'attività inserita, con l'ID già assegnato.
+     */
+    private void recordHarvestInsert(Colture colture, int lotId, Activity activity) {
+        if (activity.getType() != ActivityType.HARVEST || !HarvestStatistics.isLoaded()) {
+            return;
+        }
+        HarvestingActivity harvest = (HarvestingActivity) activity;
+        String lotName = HarvestStatistics.knowsLot(lotId) ? null : lotDao.getAllLots().stream()
+                .filter(lot -> lot.id() == lotId).map(LotDTO::nome).findFirst().orElse(null);
+        HarvestStatistics.recordInsert(lotId, lotName, colture.getCrop().nameProperty().get(),
+                harvest.getUnit(), harvest.getActualQuantity());
+    }
+
+    /**
+     * Metodo privato per convertire un'attività da inserire nel {@link ActivityDTO} specifico del suo tipo.
+     *
+     * @param activity L'attività da convertire.
+     * @param coltureId L'ID della coltivazione a cui appartiene l'attività.
+     * @param lotId L'ID del lotto della coltivazione.
+     * @return Il DTO corrispondente, con ID pari a 0 (verrà generato dal database).
+     * @throws IllegalArgumentException Se il tipo di attività non è supportato.
+     */
+    private ActivityDTO toNewActivityDTO(Activity activity, int coltureId, int lotId) {
+        return switch (activity.getType()) {
             case SEEDING -> {
                 SeedingActivity seedingActivity = (SeedingActivity) activity;
-                dto = new SeedingActivityDTO(
+                yield new SeedingActivityDTO(
                         0, // ID will be generated by the database
                         activity.getDate(),
                         activity.getStatus(),
                         seedingActivity.getQuantity(),
                         seedingActivity.getUnit(),
-                        colture.getId(),
-                        projectDTO.idLotto(),
-                        activity.getFarmerID()
-                );
-            }
-            case IRRIGATION -> {
-                dto = new IrrigationActivityDTO(
-                        0, // ID will be generated by the database
-                        activity.getDate(),
-                        activity.getStatus(),
-                        colture.getId(),
-                        projectDTO.idLotto(),
+                        coltureId,
+                        lotId,
                         activity.getFarmerID()
                 );
             }
+            case IRRIGATION -> new IrrigationActivityDTO(
+                    0, // ID will be generated by the database
+                    activity.getDate(),
+                    activity.getStatus(),
+                    coltureId,
+                    lotId,
+                    activity.getFarmerID()
+            );
             case HARVEST -> {
                 HarvestingActivity harvestingActivity = (HarvestingActivity) activity;
-                dto = new HarvestingActivityDTO(
+                yield new HarvestingActivityDTO(
                         0, // ID will be generated by the database
                         activity.getDate(),
                         activity.getStatus(),
                         harvestingActivity.getPlannedQuantity(),
                         harvestingActivity.getActualQuantity(),
                         harvestingActivity.getUnit(),
-                        colture.getId(),
-                        projectDTO.idLotto(),
+                        coltureId,
+                        lotId,
                         activity.getFarmerID()
                 );
             }
-            default -> {
-                throw new IllegalArgumentException("Tipo di attività non supportato: " + activity.getType());
-            }
-        }
-
-        activityDAO.insertActivity(dto);
+        };
     }
 
     /**
@@ -166,45 +258,92 @@ public class ProjectService extends AbstractService<ProjectDTO> {
     }
 
     /**
-     * Recupera tutte le attività associate a una specifica coltivazione.
-     * Le attività vengono mappate da {@link ActivityDTO} a oggetti {@link Activity} concreti.
+     * Recupera una pagina di attività di una specifica coltivazione, ordinate per data e ID.
+     * Per ottenere la pagina successiva si passa l'ultima attività della pagina precedente.
      *
      * @param coltureId L'ID della coltivazione di cui recuperare le attività.
-     * @return Una collezione di oggetti {@link Activity} associati alla coltivazione specificata.
-     */
-    public Collection<Activity> fetchActivities(int coltureId) {
-        return activityDAO.fetchActivityByColture(coltureId).stream()
-                .map(activity -> {
-                    String farmerFullName = getFarmerById(activity.getFarmerID()).getFullName();
-                    return switch (activity.getType()) {
-                        case SEEDING -> new SeedingActivity(
-                                activity.getId(),
-                                activity.getDate(),
-                                activity.getStatus(),
-                                activity.getFarmerID(),
-                                farmerFullName,
-                                ((SeedingActivityDTO) activity).getQuantity(),
-                                ((SeedingActivityDTO) activity).getUnit()
-                        );
-                        case HARVEST -> new HarvestingActivity(
-                                activity.getId(),
-                                activity.getDate(),
-                                activity.getStatus(),
-                                activity.getFarmerID(),
-                                farmerFullName,
-                                ((HarvestingActivityDTO) activity).getExpectedQuantity(),
-                                ((HarvestingActivityDTO) activity).getActualQuantity(),
-                                ((HarvestingActivityDTO) activity).getUnit()
-                        );
-                        case IRRIGATION -> new IrrigationActivity(
-                                activity.getId(),
-                                activity.getDate(),
-                                activity.getStatus(),
-                                activity.getFarmerID(),
-                                farmerFullName
-                        );
-                    };
-                }).toList();
+     * @param after L'ultima attività già caricata, o {@code null} per la prima pagina.
+     * @param pageSize Il numero massimo di attività da restituire.
+     * @return Una lista di al più {@code pageSize} oggetti {@link Activity}.
+     */
+    public List<Activity> fetchActivitiesPage(int coltureId, Activity after, int pageSize) {
+        return activityDAO.fetchActivityPageByColture(coltureId,
+                        after == null ? null : after.getDate(),
+                        after == null ? 0 : after.getId(),
+                        pageSize).stream()
+                .map(this::toActivity)
+                .toList();
+    }
+
+    /**
+     * Recupera una pagina dell'agenda di un agricoltore, cioè delle attività a lui assegnate, ordinate per data e ID.
+     * Per ottenere la pagina successiva si passa l'ultima attività della pagina precedente.
+     *
+     * @param farmerId L'ID dell'agricoltore.
+     * @param after L'ultima attività già caricata, o {@code null} per la prima pagina.
+     * @param pageSize Il numero massimo di attività da restituire.
+     * @return Una lista di al più {@code pageSize} oggetti {@link Activity}.
+     */
+    public List<Activity> fetchFarmerActivitiesPage(int farmerId, Activity after, int pageSize) {
+        return activityDAO.fetchActivityPageByFarmer(farmerId,
+                        after == null ? null : after.getDate(),
+                        after == null ? 0 : after.getId(),
+                        pageSize).stream()
+                .map(this::toActivity)
+                .toList();
+    }
+
+    /**
+     * Metodo privato per convertire un {@link ActivityDTO} nell'oggetto {@link Activity} concreto,
+     * completo del nome dell'agricoltore.
+     *
+     * @param activity Il DTO dell'attività.
+     * @return L'oggetto {@link Activity} corrispondente.
+     */
+    private Activity toActivity(ActivityDTO activity) {
+        String farmerFullName = getFarmerById(activity.getFarmerID()).getFullName();
+        Activity converted = switch (activity.getType()) {
+            case SEEDING -> new SeedingActivity(
+                    activity.getId(),
+                    activity.getDate(),
+                    activity.getStatus(),
+                    activity.getFarmerID(),
+                    farmerFullName,
+                    ((SeedingActivityDTO) activity).getQuantity(),
+                    ((SeedingActivityDTO) activity).getUnit()
+            );
+            case HARVEST -> new HarvestingActivity(
+                    activity.getId(),
+                    activity.getDate(),
+                    activity.getStatus(),
+                    activity.getFarmerID(),
+                    farmerFullName,
+                    ((HarvestingActivityDTO) activity).getExpectedQuantity(),
+                    ((HarvestingActivityDTO) activity).getActualQuantity(),
+                    ((HarvestingActivityDTO) activity).getUnit()
+            );
+            case IRRIGATION -> new IrrigationActivity(
+                    activity.getId(),
+                    activity.getDate(),
+                    activity.getStatus(),
+                    activity.getFarmerID(),
+                    farmerFullName
+            );
+        };
+        converted.setVersion(activity.getVersion());
+        return converted;
+    }
+
+    /**
+     * Recupera lo stato corrente di un'attività, ad esempio per confrontarlo con una modifica rifiutata
+     * da {@link #updateActivity(Activity)}.
+     *
+     * @param activityId L'ID dell'attività.
+     * @return L'oggetto {@link Activity} con la versione corrente, o {@code null} se l'attività non esiste più.
+     */
+    public Activity fetchActivity(int activityId) {
+        ActivityDTO activity = activityDAO.fetchActivity(activityId);
+        return activity == null ? null : toActivity(activity);
     }
 
     /**
@@ -213,7 +352,45 @@ public class ProjectService extends AbstractService<ProjectDTO> {
      * @param activity L'oggetto {@link Activity} da eliminare (l'eliminazione avviene tramite l'ID dell'attività).
      */
     public void deleteActivity(Activity activity) {
+        HarvestSampleDTO before = fetchHarvestSampleBeforeWrite(activity);
         activityDAO.deleteActivity(activity.getId());
+        if (activity.getType() == ActivityType.HARVEST && HarvestStatistics.recordDelete(before)) {
+            recomputeHarvestKey(before);
+        }
+    }
+
+    /**
+     * Metodo privato per leggere, prima di modificarla o eliminarla, il contributo di una raccolta
+     * alle {@link HarvestStatistics}. La lettura viene saltata se l'attività non è una raccolta
+     * o se le statistiche non sono caricate.
+     *
+     * @param activity L'attività che sta per essere modificata o eliminata.
+     * @return Il contributo della raccolta, o {@code null} se la lettura è stata saltata o la raccolta non esiste.
+     */
+    private HarvestSampleDTO fetchHarvestSampleBeforeWrite(Activity activity) {
+        if (activity.getType() != ActivityType.HARVEST || !HarvestStatistics.isLoaded()) {
+            return null;
+        }
+        return reportDao.fetchHarvestSample(activity.getId());
+    }
+
+    /**
+     * Metodo privato per ricalcolare dal database una sola chiave delle {@link HarvestStatistics},
+     * dopo che una modifica o un'eliminazione ne ha rimosso il minimo o il massimo.
+     * Se il ricalcolo fallisce, le statistiche vengono invalidate e ricaricate alla prossima richiesta,
+     * senza far fallire la scrittura già eseguita.
+     *
+     * @param sample Il contributo precedente della raccolta, che identifica la chiave.
+     */
+    private void recomputeHarvestKey(HarvestSampleDTO sample) {
+        long generation = HarvestStatistics.generation();
+        try {
+            HarvestStatistics.recompute(generation, sample,
+                    reportDao.fetchHarvestAggregate(sample.lotId(), sample.cropName(), sample.unit()));
+        } catch (RuntimeException e) {
+            HarvestStatistics.invalidate();
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -224,68 +401,82 @@ public class ProjectService extends AbstractService<ProjectDTO> {
      */
     public Collection<Colture> getColtures(int projectId) {
         return coltureDao.fetchColtures(projectId).stream()
-                .map(colture -> new Colture(
-                        colture.id(), colture.startDate(),
-                        colture.status(),
-                        // Si crea un Crop parziale qui, poiché CropDAO sarebbe necessario per i dettagli completi
-                        new Crop(0, colture.cropName(), 0, 0)
-                )).toList();
+                .map(ProjectService::toColture)
+                .toList();
+    }
+
+    /**
+     * Converte un {@link ColtureDTO} nel modello {@link Colture}.
+     *
+     * @param colture Il DTO della coltivazione.
+     * @return La {@link Colture} corrispondente.
+     */
+    private static Colture toColture(ColtureDTO colture) {
+        return new Colture(
+                colture.id(), colture.startDate(),
+                colture.status(),
+                // Si crea un Crop parziale qui, poiché CropDAO sarebbe necessario per i dettagli completi
+                new Crop(0, colture.cropName(), 0, 0)
+        );
     }
 
     /**
      * Recupera tutti i tipi di coltura disponibili.
+     * Il numero di coltivazioni per ogni coltura viene calcolato nella stessa query aggregata.
      *
      * @return Una collezione di oggetti {@link Crop} che rappresentano tutti i tipi di coltura.
+     * @throws RuntimeException Se si verifica un errore durante il recupero delle colture.
      */
     public Collection<Crop> getCrops() {
-        return cropDao.fetchAllCrop().stream()
-                .map(crop -> new Crop(crop.id(), crop.nome(), crop.giorniMaturazione(), cropDao.countCropProjects(crop.id())))
+        return cropDao.fetchAllCropWithUsage().stream()
+                .map(crop -> new Crop(crop.id(), crop.nome(), crop.giorniMaturazione(), crop.progetti()))
                 .toList();
     }
 
     /**
-     * Recupera tutti i progetti esistenti, popolando i dettagli del lotto associato.
+     * Legge i progetti dei lotti dell'utente della sessione consegnandoli a blocchi man mano che arrivano dal database,
+     * così che la schermata possa mostrare i primi progetti senza attendere il caricamento completo.
+     * Ogni progetto viene consegnato già completo delle sue coltivazioni, lette con un'unica query per tutti
+     * i progetti del proprietario invece che con una query per progetto.
+     * Il consumatore viene invocato sul thread chiamante, all'interno di una {@link UnitOfWork} di sola lettura:
+     * progetti e coltivazioni vengono letti dalla stessa connessione e vedono la stessa fotografia del database.
+     * Prima della lettura viene aggiornato lo stato delle coltivazioni, ma solo se ci sono coltivazioni da ricalcolare:
+     * negli altri casi il caricamento non scrive nulla sul database.
      *
-     * @return Una collezione di oggetti {@link Project} completi di dettagli del lotto.
+     * @param chunkSize Il numero massimo di progetti per blocco.
+     * @param consumer Il consumatore che riceve ogni blocco di oggetti {@link Project}.
      */
-    public Collection<Project> getProjects() {
-        Collection<ProjectDTO> projects = projectDao.fetchAllProjects();
-
-        return projects.stream()
-                .map(project -> {
-                    LotDTO lotDTO = lotDao.getLotById(project.idLotto());
-                    return
-                            new Project(
-                                    project.id(),
-                                    project.nome(),
-                                    lotDTO.nome(),
-                                    project.dataInizio(),
-                                    project.dataFine()
-                            );
-                }).toList();
+    public void streamProjects(int chunkSize, Consumer<List<Project>> consumer) {
+        int ownerId = Session.getUtente().id();
+        LocalDate today = LocalDate.now();
+        if (coltureDao.hasStatusesToRefresh(today)) {
+            coltureDao.refreshStatuses(today);
+        }
+        UnitOfWork.readOnly(() -> {
+            Map<Integer, List<Colture>> colturesByProject = coltureDao.fetchColturesByOwner(ownerId).stream()
+                    .collect(Collectors.groupingBy(ColtureDTO::projectId, Collectors.mapping(ProjectService::toColture, Collectors.toList())));
+            projectDao.streamProjectsWithLotByOwner(ownerId, chunkSize, chunk -> consumer.accept(chunk.stream()
+                    .map(dto -> {
+                        Project project = toProject(dto);
+                        project.setColtures(colturesByProject.getOrDefault(project.getId(), List.of()));
+                        return project;
+                    })
+                    .toList()));
+            return null;
+        });
     }
 
     /**
      * Recupera i progetti associati a un lotto specifico.
+     * Il nome del lotto viene ottenuto nella stessa query dei progetti (progetto JOIN lotto).
      *
      * @param lot L'oggetto {@link Lot} di cui recuperare i progetti.
      * @return Una collezione di oggetti {@link Project} associati al lotto specificato.
      */
     public Collection<Project> fetchProjectByLot(Lot lot) {
-        Collection<ProjectDTO> projects = projectDao.fetchProjectsByLot(lot.getId());
-
-        return projects.stream()
-                .map(project -> {
-                    LotDTO lotDTO = lotDao.getLotById(project.idLotto());
-                    return
-                            new Project(
-                                    project.id(),
-                                    project.nome(),
-                                    lotDTO.nome(),
-                                    project.dataInizio(),
-                                    project.dataFine()
-                            );
-                }).toList();
+        return projectDao.fetchProjectsWithLotByLot(lot.getId()).stream()
+                .map(ProjectService::toProject)
+                .toList();
     }
 
     /**
@@ -295,13 +486,51 @@ public class ProjectService extends AbstractService<ProjectDTO> {
      * @return L'oggetto {@link Project} corrispondente all'ID.
      */
     public Project fetchProjectById(int projectId) {
-        ProjectDTO project = projectDao.fetchProjectById(projectId);
-        Lot lot = new Lot(lotDao.getLotById(project.idLotto()));
+        return toProject(projectDao.fetchProjectWithLotById(projectId));
+    }
 
+    /**
+     * Crea una copia di un progetto dell'utente della sessione, ad esempio per ripetere lo stesso piano nella stagione successiva.
+     * Il nuovo progetto usa lo stesso lotto e le stesse colture, con tutte le date spostate di {@code dayOffset} giorni;
+     * le coltivazioni ripartono dallo stato di attesa. Se richiesto, viene copiato anche il piano delle attività,
+     * limitato alle attività ancora pianificate e non archiviate. La copia avviene sul database con poche istruzioni {@code INSERT ... SELECT}
+     * in un'unica transazione: se un passaggio fallisce, non viene creato nulla.
+     *
+     * @param projectId L'ID del progetto da copiare.
+     * @param name Il nome del nuovo progetto.
+     * @param dayOffset Il numero di giorni di cui spostare le date (ad esempio 365 per l'anno successivo).
+     * @param withActivities {@code true} per copiare anche le attività.
+     * @return L'oggetto {@link Project} del nuovo progetto.
+     * @throws IllegalArgumentException Se il nome del nuovo progetto è vuoto.
+     * @throws IllegalStateException Se il progetto da copiare non esiste o non appartiene all'utente.
+     */
+    public Project cloneProject(int projectId, String name, int dayOffset, boolean withActivities) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Il nome del nuovo progetto è obbligatorio.");
+        }
+        int ownerId = Session.getUtente().id();
+        ProjectDTO clone = UnitOfWork.inTransaction(() -> {
+            ProjectDTO project = projectDao.cloneProject(ownerId, projectId, name, dayOffset);
+            projectDao.cloneColtures(projectId, project.id(), dayOffset);
+            if (withActivities) {
+                projectDao.cloneActivities(projectId, project.id(), dayOffset);
+            }
+            return project;
+        });
+        return fetchProjectById(clone.id());
+    }
+
+    /**
+     * Metodo privato per costruire un {@link Project} a partire da un {@link ProjectWithLotDTO}.
+     *
+     * @param project Il DTO del progetto, comprensivo del nome del lotto.
+     * @return L'oggetto {@link Project} corrispondente.
+     */
+    private static Project toProject(ProjectWithLotDTO project) {
         return new Project(
                 project.id(),
                 project.nome(),
-                lot.getName(),
+                project.nomeLotto(),
                 project.dataInizio(),
                 project.dataFine()
         );
@@ -320,29 +549,53 @@ public class ProjectService extends AbstractService<ProjectDTO> {
                 .toList();
     }
 
+    /**
+     * Legge tutti i lotti dell'utente corrente consegnandoli a blocchi man mano che arrivano dal database.
+     * Il consumatore viene invocato sul thread chiamante.
+     *
+     * @param chunkSize Il numero massimo di lotti per blocco.
+     * @param consumer Il consumatore che riceve ogni blocco di oggetti {@link Lot}.
+     */
+    public void streamLots(int chunkSize, Consumer<List<Lot>> consumer) {
+        lotDao.streamAllLots(chunkSize, chunk -> consumer.accept(chunk.stream()
+                .map(Lot::new)
+                .toList()));
+    }
+
     /**
      * Metodo privato per ottenere i dettagli di un agricoltore tramite il suo ID.
      * Utilizzato per popolare il nome completo dell'agricoltore nelle attività.
+     * La ricerca avviene in tempo costante sulla {@link FarmerDirectory}; se l'agricoltore non è presente
+     * (ad esempio perché registrato dopo l'ultimo aggiornamento), la rubrica viene ricaricata una sola volta.
      *
      * @param farmerId L'ID dell'agricoltore.
      * @return L'oggetto {@link UserDTO} che rappresenta l'agricoltore.
      * @throws IllegalArgumentException Se l'agricoltore con l'ID specificato non viene trovato.
      */
     private UserDTO getFarmerById(int farmerId) {
-        return UserService.getUsers().stream()
-                .filter(user -> user.id() == farmerId)
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Farmer not found with ID: " + farmerId));
+        UserDTO farmer = FarmerDirectory.findById(farmerId);
+        if (farmer == null) {
+            FarmerDirectory.refresh();
+            farmer = FarmerDirectory.findById(farmerId);
+        }
+        if (farmer == null) {
+            throw new IllegalArgumentException("Farmer not found with ID: " + farmerId);
+        }
+        return farmer;
     }
 
     /**
      * Aggiorna un'attività esistente nel database.
      * Il tipo di attività determina quale DTO specifico verrà creato e inviato al DAO.
+     * L'aggiornamento viene applicato solo se l'attività non è stata modificata da altri dopo la lettura
+     * della versione di {@code currentActivity}; in caso di successo la versione dell'oggetto viene aggiornata.
      *
      * @param currentActivity L'oggetto {@link Activity} da aggiornare.
+     * @throws ActivityConflictException Se l'attività è stata modificata da un altro utente nel frattempo.
      * @throws IllegalArgumentException Se il tipo di attività non è supportato.
      */
-    public void updateActivity(Activity currentActivity) {
+    public void updateActivity(Activity currentActivity) throws ActivityConflictException {
+        HarvestSampleDTO before = fetchHarvestSampleBeforeWrite(currentActivity);
         ActivityDTO activityDTO;
         switch (currentActivity.getType()) {
             case SEEDING -> {
@@ -385,74 +638,140 @@ public class ProjectService extends AbstractService<ProjectDTO> {
             default -> throw new IllegalArgumentException("Unsupported activity type: " + currentActivity.getType());
         }
 
-        activityDAO.updateActivity(activityDTO);
+        activityDTO.setVersion(currentActivity.getVersion());
+        currentActivity.setVersion(activityDAO.updateActivity(activityDTO));
+        if (currentActivity instanceof HarvestingActivity harvest
+                && HarvestStatistics.recordUpdate(before, harvest.getUnit(), harvest.getActualQuantity())) {
+            recomputeHarvestKey(before);
+        }
+    }
+
+    /**
+     * Modifica in blocco stato, data e/o agricoltore di più attività dell'utente della sessione,
+     * selezionate per ID oppure tramite un filtro, con un'unica istruzione sul database.
+     * Le attività che hanno già i valori richiesti non vengono toccate.
+     *
+     * @param filter Il filtro che seleziona le attività da modificare.
+     * @param changes Le modifiche da applicare.
+     * @return Il numero di attività modificate.
+     * @throws IllegalArgumentException Se non è indicata alcuna modifica.
+     */
+    public int updateActivities(ActivityFilterDTO filter, ActivityBulkUpdateDTO changes) {
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("Nessuna modifica da applicare alle attività.");
+        }
+        if (filter.ids() != null && filter.ids().isEmpty()) {
+            return 0;
+        }
+        return activityDAO.updateActivities(Session.getUtente().id(), filter, changes);
+    }
+
+    /**
+     * Recupera i piani di irrigazione periodica di una coltivazione dell'utente della sessione.
+     *
+     * @param colture La coltivazione di cui recuperare i piani.
+     * @return La {@link List} dei piani, ordinati per data di inizio.
+     */
+    public List<IrrigationScheduleDTO> fetchIrrigationSchedules(Colture colture) {
+        return scheduleDao.fetchSchedulesByColture(Session.getUtente().id(), colture.getId());
+    }
+
+    /**
+     * Salva un piano di irrigazione periodica e ne genera le irrigazioni pianificate.
+     * Un nuovo piano viene espanso in tutte le sue occorrenze, inserite con un'unica istruzione.
+     * Modificando un piano esistente vengono riallineate solo le occorrenze da oggi in poi, applicando le sole differenze:
+     * le irrigazioni già previste restano (con le eventuali modifiche fatte a mano), quelle non più previste
+     * vengono rimosse e quelle mancanti aggiunte. Le irrigazioni passate o già avviate non vengono toccate.
+     * Il salvataggio del piano e delle sue occorrenze avviene in un'unica {@link UnitOfWork}.
+     *
+     * @param schedule Il piano da salvare; con ID pari a 0 viene creato un nuovo piano.
+     * @return Il numero di irrigazioni aggiunte, rimosse e riassegnate.
+     * @throws IllegalArgumentException Se le date o l'intervallo del piano non sono validi.
+     * @throws IllegalStateException Se la coltivazione o il piano non appartengono all'utente.
+     */
+    public ScheduleSyncDTO saveIrrigationSchedule(IrrigationScheduleDTO schedule) {
+        if (schedule.startDate() == null || schedule.endDate() == null || schedule.endDate().isBefore(schedule.startDate())) {
+            throw new IllegalArgumentException("La data di fine del piano non può precedere la data di inizio.");
+        }
+        if (schedule.intervalDays() <= 0) {
+            throw new IllegalArgumentException("L'intervallo tra le irrigazioni deve essere di almeno un giorno.");
+        }
+        int ownerId = Session.getUtente().id();
+        return UnitOfWork.inTransaction(() -> {
+            LocalDate from;
+            IrrigationScheduleDTO saved;
+            if (schedule.id() == 0) {
+                saved = schedule.withId(scheduleDao.insertSchedule(ownerId, schedule));
+                from = schedule.startDate();
+            } else {
+                scheduleDao.updateSchedule(ownerId, schedule);
+                saved = schedule;
+                from = LocalDate.now();
+            }
+            return scheduleDao.syncActivities(saved.id(), saved.occurrences(from), from);
+        });
+    }
+
+    /**
+     * Elimina un piano di irrigazione periodica insieme alle sue irrigazioni ancora pianificate da oggi in poi.
+     * Le irrigazioni passate o già avviate restano come attività indipendenti.
+     * La proprietà del piano viene verificata prima di toccare le sue irrigazioni.
+     *
+     * @param schedule Il piano da eliminare.
+     * @return Il numero di irrigazioni rimosse.
+     * @throws IllegalStateException Se il piano non appartiene all'utente.
+     */
+    public ScheduleSyncDTO deleteIrrigationSchedule(IrrigationScheduleDTO schedule) {
+        int ownerId = Session.getUtente().id();
+        return UnitOfWork.inTransaction(() -> {
+            scheduleDao.lockSchedule(ownerId, schedule.id());
+            ScheduleSyncDTO result = scheduleDao.syncActivities(schedule.id(), List.of(), LocalDate.now());
+            scheduleDao.deleteSchedule(ownerId, schedule.id());
+            return result;
+        });
     }
 
     /**
      * Genera un report riassuntivo sulle attività di raccolta, facoltativamente filtrato per un lotto specifico.
      * Il report include statistiche come il numero totale di raccolte, la quantità media, minima e massima.
+     * Il report viene prodotto dalle {@link HarvestStatistics} in memoria, raggruppato per lotto, coltura e unità di misura;
+     * se le statistiche non sono ancora caricate per l'utente della sessione, vengono inizializzate con un'unica query
+     * aggregata per lotto, coltura e unità di misura sui soli lotti del proprietario, in una {@link UnitOfWork} di sola lettura. Se durante la lettura viene
+     * registrata una scrittura, la lettura viene scartata e ripetuta (al massimo {@value #HARVEST_LOAD_ATTEMPTS} volte).
      *
-     * @param lotId L'ID del lotto per filtrare il report. Se {@code null}, il report includerà dati da tutti i lotti.
+     * @param lotId L'ID del lotto per filtrare il report. Se {@code null}, il report includerà dati da tutti i lotti del proprietario.
      * @return Una {@link List} di {@link HarvestReportEntry} contenente le statistiche di raccolta.
      */
     public List<HarvestReportEntry> generateHarvestReport(Integer lotId) {
-        List<HarvestReportEntry> reportEntries = new ArrayList<>();
-
-        // Filtra i progetti per lotto se specificato
-        Collection<Project> projectsToConsider = lotId == null ? getProjects() : fetchProjectByLot(new Lot(lotDao.getLotById(lotId)));
-
-
-        for (Project project : projectsToConsider) {
-            for (Colture cultivation : getColtures(project.getId())) {
-                // Filtra le attività di raccolta per questa coltura
-                List<HarvestingActivity> harvestActivities = fetchActivities(cultivation.getId()).stream()
-                        .filter(activity -> activity.getType() == ActivityType.HARVEST)
-                        .map(activity -> (HarvestingActivity) activity)
-                        .toList();
-
-                if (!harvestActivities.isEmpty()) {
-                    int totalHarvests = harvestActivities.size();
-                    double sumQuantities = harvestActivities.stream()
-                            .mapToDouble(HarvestingActivity::getActualQuantity)
-                            .sum();
-                    double avgQuantity = sumQuantities / totalHarvests;
-
-                    Optional<Integer> minQuantity = harvestActivities.stream()
-                            .map(HarvestingActivity::getActualQuantity)
-                            .min(Comparator.naturalOrder());
-
-                    Optional<Integer> maxQuantity = harvestActivities.stream()
-                            .map(HarvestingActivity::getActualQuantity)
-                            .max(Comparator.naturalOrder());
-
-                    // Assumiamo che l'unità di misura sia la stessa per tutte le raccolte di una coltura
-                    // O prendiamo quella della prima attività
-                    String unit = harvestActivities.get(0).getUnit();
-
-                    String currentLotName;
-                    if (lotId == null) {
-                        // Se lotId è null, significa che stiamo generando il report per tutti i lotti.
-                        // Per ogni entry, dobbiamo trovare il nome del lotto specifico del progetto.
-                        currentLotName = project.lotProperty().get();
-                    } else {
-                        // Se lotId è specificato, tutti i progetti considerati appartengono a quel lotto.
-                        // Quindi possiamo semplicemente prendere il nome del lotto specificato.
-                        currentLotName = lotDao.getLotById(lotId).nome();
-                    }
-
-
-                    reportEntries.add(new HarvestReportEntry(
-                            currentLotName,
-                            cultivation.getCrop().nameProperty().get(),
-                            totalHarvests,
-                            avgQuantity,
-                            minQuantity.orElse(0).doubleValue(), // Gestisce il caso di Optional vuoto
-                            maxQuantity.orElse(0).doubleValue(), // Gestisce il caso di Optional vuoto
-                            unit
-                    ));
-                }
+        int ownerId = Session.getUtente().id();
+        for (int attempt = 0; !HarvestStatistics.isLoadedFor(ownerId); attempt++) {
+            if (attempt == HARVEST_LOAD_ATTEMPTS) {
+                throw new IllegalStateException("Le raccolte sono state modificate durante il caricamento del report, riprovare.");
             }
+            long generation = HarvestStatistics.generation();
+            HarvestStatistics.load(ownerId, generation, UnitOfWork.readOnly(() -> reportDao.fetchHarvestAggregatesByOwner(ownerId)));
+        }
+        return HarvestStatistics.report(lotId);
+    }
+
+    /**
+     * Importa in blocco le attività da un file CSV nei lotti dell'utente della sessione (vedi {@link ActivityCsvImport}).
+     * L'intera importazione avviene in una {@link UnitOfWork}: se il caricamento fallisce nessuna attività viene salvata.
+     * Le righe non valide non fanno fallire l'importazione, ma vengono scritte nel file degli scarti.
+     *
+     * @param csv Il file CSV da importare.
+     * @param progress Il consumatore che riceve l'avanzamento dell'importazione; viene invocato sul thread chiamante.
+     * @return L'{@link ActivityCsvImport.ImportResult} con il numero di attività importate, duplicate e scartate.
+     * @throws IOException Se il file non può essere letto o il file degli scarti non può essere scritto.
+     * @throws IllegalArgumentException Se il file non contiene le colonne obbligatorie.
+     */
+    public ActivityCsvImport.ImportResult importActivities(Path csv, Consumer<ActivityCsvImport.ImportProgress> progress) throws IOException {
+        int ownerId = Session.getUtente().id();
+        ActivityCsvImport.ImportResult result =
+                UnitOfWork.inTransaction(() -> new ActivityCsvImport().importFile(csv, ownerId, progress));
+        if (result.imported() > 0) {
+            HarvestStatistics.invalidate();
         }
-        return reportEntries;
+        return result;
     }
-}
\ No newline at end of file
+}
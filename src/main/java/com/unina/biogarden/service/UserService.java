@@ -7,8 +7,13 @@ import com.unina.biogarden.exceptions.LoginFallitoException;
 import com.unina.biogarden.exceptions.UtenteEsistenteException;
 import com.unina.biogarden.models.Farmer;
 import com.unina.biogarden.session.Session;
+import com.unina.biogarden.utils.Utils;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Servizio per la gestione degli utenti nel sistema BioGarden.
@@ -19,47 +24,83 @@ import java.util.Collection;
  */
 public class UserService extends AbstractService<UserDTO> {
 
-    private final UserDAO dao = new UserDAO();
-
-    private static Collection<UserDTO> users;
-
     /**
-     * Costruisce una nuova istanza di {@code UserService}.
-     * All'inizializzazione, recupera tutti gli utenti dal database e li memorizza in una cache statica.
+     * Pool limitato dedicato al calcolo degli hash delle password. Il numero di thread è limitato perché
+     * ogni hash PBKDF2 impegna a lungo un core; i thread sono di piattaforma e persistenti, così che ognuno
+     * possa riutilizzare la propria {@code SecretKeyFactory}.
      */
-    public UserService() {
-        this.users = dao.fetchAllUsers();
-    }
+    private static final ExecutorService authExecutor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)),
+            Thread.ofPlatform().name("auth-", 0).daemon(true).factory());
+
+    private final UserDAO dao = new UserDAO();
 
     /**
      * Recupera tutti gli utenti di tipo {@link UserType#FARMER} (coltivatore).
-     * Mappa i {@link UserDTO} a oggetti {@link Farmer}.
-     * @return Una collezione di oggetti {@link Farmer}.
+     * La lista viene letta dalla {@link FarmerDirectory} condivisa, senza interrogare il database
+     * se la rubrica è già caricata.
+     * @return Una collezione immutabile di oggetti {@link Farmer}.
      */
     public Collection<Farmer> fetchAllFarmer() {
-        return fetchAll().stream().filter(user -> user.tipo() == UserType.FARMER)
-                .map(user -> new Farmer(
-                        user.id(),
-                        user.nome(),
-                        user.cognome(),
-                        user.email()
-                ))
-                .toList();
+        return FarmerDirectory.getFarmers();
     }
 
     /**
      * Tenta di autenticare un utente con le credenziali fornite.
-     * In caso di successo, aggiorna la cache degli utenti e avvia una nuova sessione utente.
+     * In caso di successo, se l'hash memorizzato è stato calcolato con parametri diversi da quelli attuali
+     * lo ricalcola; carica la {@link FarmerDirectory} se non è ancora stata caricata e avvia una nuova sessione utente.
+     * Una rubrica già caricata non viene riletta: resta aggiornata tramite {@link FarmerDirectory#TTL}
+     * e le invalidazioni, e non contiene le password, quindi il ricalcolo dell'hash non la rende obsoleta.
      * @param email L'email dell'utente.
      * @param password La password dell'utente.
      * @throws LoginFallitoException Se le credenziali non sono valide e il login fallisce.
      */
     public void login(String email, String password) throws LoginFallitoException {
         UserDTO dto = dao.loginUser(email, password);
-        this.users = dao.fetchAllUsers(); // Aggiorna la cache dopo un login riuscito
+        if (Utils.needsRehash(dto.password())) {
+            dao.updatePasswordHash(dto.id(), Utils.encryptPassword(password));
+        }
+        if (!FarmerDirectory.isLoaded()) {
+            FarmerDirectory.refresh();
+        }
         Session.login(dto);
     }
 
+    /**
+     * Esegue {@link #login(String, String)} sul pool dedicato all'autenticazione,
+     * senza bloccare il thread chiamante.
+     * @param email L'email dell'utente.
+     * @param password La password dell'utente.
+     * @return Un {@link CompletableFuture} completato con l'utente della sessione, oppure in modo eccezionale
+     * con {@link LoginFallitoException} se le credenziali non sono valide.
+     */
+    public CompletableFuture<UserDTO> loginAsync(String email, String password) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                login(email, password);
+                return Session.getUtente();
+            } catch (LoginFallitoException e) {
+                throw new CompletionException(e);
+            }
+        }, authExecutor);
+    }
+
+    /**
+     * Esegue {@link #insert(UserDTO)} sul pool dedicato all'autenticazione, senza bloccare il thread chiamante.
+     * @param entity Il {@link UserDTO} contenente i dati del nuovo utente da registrare.
+     * @return Un {@link CompletableFuture} completato con l'utente registrato, oppure in modo eccezionale
+     * con {@link UtenteEsistenteException} se un utente con la stessa email esiste già.
+     */
+    public CompletableFuture<UserDTO> insertAsync(UserDTO entity) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return insert(entity);
+            } catch (UtenteEsistenteException e) {
+                throw new CompletionException(e);
+            }
+        }, authExecutor);
+    }
+
     /**
      * Inserisce un nuovo utente nel sistema.
      * @param entity Il {@link UserDTO} contenente i dati del nuovo utente da registrare.
@@ -69,24 +110,28 @@ public class UserService extends AbstractService<UserDTO> {
     @Override
     public UserDTO insert(UserDTO entity) throws UtenteEsistenteException {
         dao.registerUser(entity.nome(), entity.cognome(), entity.password(), entity.email(), entity.tipo());
+        FarmerDirectory.invalidate();
         return entity;
     }
 
     /**
-     * Recupera tutti gli utenti attualmente presenti nella cache del servizio.
-     * @return Una collezione di tutti i {@link UserDTO} memorizzati nella cache.
+     * Recupera tutti gli utenti attualmente presenti nella {@link FarmerDirectory}.
+     * Se la rubrica non è ancora stata caricata, viene caricata in questo momento.
+     * I {@link UserDTO} restituiti non contengono la password.
+     * @return Una collezione di tutti i {@link UserDTO} memorizzati nella rubrica.
      */
     @Override
     public Collection<UserDTO> fetchAll() {
-        return users;
+        return getUsers();
     }
 
     /**
-     * Fornisce accesso statico alla collezione di tutti gli utenti memorizzati nella cache.
+     * Fornisce accesso statico alla collezione di tutti gli utenti memorizzati nella {@link FarmerDirectory}.
      * Questo metodo è utile per accedere agli utenti senza istanziare il servizio.
-     * @return Una collezione statica di tutti i {@link UserDTO}.
+     * Se la rubrica non è ancora stata caricata, viene caricata in questo momento.
+     * @return Una collezione immutabile di tutti i {@link UserDTO}, senza password.
      */
     public static Collection<UserDTO> getUsers() {
-        return users;
+        return FarmerDirectory.getUsers();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package com.unina.biogarden.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache read-through a dimensione limitata, con politica di espulsione basata sulla frequenza d'accesso
+ * (schema W-TinyLFU semplificato).
+ * Le nuove voci entrano in una piccola finestra LRU (circa l'1% della capacità); quando la finestra è piena,
+ * la voce più vecchia viene ammessa nell'area principale (anch'essa LRU) solo se è stata richiesta più spesso
+ * della voce che dovrebbe sostituire. Le frequenze sono stimate con uno sketch count-min a contatori saturanti,
+ * dimezzati periodicamente così che gli accessi vecchi pesino sempre meno.
+ * In questo modo una scansione di chiavi usate una sola volta non scalza le voci richieste di frequente.
+ * I valori {@code null} non vengono memorizzati. Tutti i metodi sono thread-safe; il caricamento di una voce
+ * avviene fuori dal lock, e il suo risultato viene scartato se nel frattempo la cache è stata invalidata.
+ * @param <K> Il tipo delle chiavi.
+ * @param <V> Il tipo dei valori.
+ * @author Il Tuo Nome
+ */
+public final class BoundedCache<K, V> {
+
+    /**
+     * Funzione che carica il valore di una chiave assente dalla cache.
+     * @param <K> Il tipo delle chiavi.
+     * @param <V> Il tipo dei valori.
+     * @param <E> Il tipo di eccezione che il caricamento può sollevare.
+     */
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+        V load(K key) throws E;
+    }
+
+    /**
+     * Fotografia dei contatori di una cache, utile per dimensionarla.
+     * @param name Il nome della cache.
+     * @param hits Il numero di richieste servite dalla cache.
+     * @param misses Il numero di richieste che hanno richiesto un caricamento.
+     * @param evictions Il numero di voci espulse (o non ammesse) per mancanza di spazio.
+     * @param size Il numero di voci attualmente presenti.
+     * @param maximumSize La capacità massima.
+     */
+    public record Stats(String name, long hits, long misses, long evictions, int size, int maximumSize) {
+        /**
+         * Restituisce la frazione di richieste servite dalla cache.
+         * @return Il rapporto tra hit e richieste totali, o {@code 0} se non ci sono state richieste.
+         */
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    private final String name;
+    private final int maximumSize;
+    private final int windowSize;
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long generation;
+
+    /**
+     * Crea una cache vuota.
+     * @param name Il nome della cache, riportato nelle statistiche.
+     * @param maximumSize Il numero massimo di voci.
+     * @throws IllegalArgumentException se {@code maximumSize} non è positivo.
+     */
+    public BoundedCache(String name, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("La capacità della cache deve essere positiva: " + maximumSize);
+        }
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Restituisce il valore associato alla chiave, caricandolo con il {@link Loader} fornito se assente.
+     * Se il caricamento restituisce {@code null} o solleva un'eccezione, nulla viene memorizzato.
+     * @param key La chiave da cercare.
+     * @param loader La funzione che carica il valore in caso di assenza.
+     * @param <E> Il tipo di eccezione sollevata dal caricamento.
+     * @return Il valore associato alla chiave, o {@code null} se il caricamento non ha prodotto un valore.
+     * @throws E se il caricamento fallisce.
+     */
+    public <E extends Exception> V get(K key, Loader<? super K, ? extends V, E> loader) throws E {
+        long loadGeneration;
+        synchronized (this) {
+            sketch.increment(key);
+            V value = window.get(key);
+            if (value == null) {
+                value = main.get(key);
+            }
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        V loaded = loader.load(key);
+        if (loaded != null) {
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    put(key, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Rimuove la voce associata alla chiave, se presente.
+     * Gli eventuali caricamenti in corso non verranno memorizzati.
+     * @param key La chiave da invalidare.
+     */
+    public synchronized void invalidate(K key) {
+        window.remove(key);
+        main.remove(key);
+        generation++;
+    }
+
+    /**
+     * Rimuove tutte le voci. Le frequenze stimate vengono conservate.
+     * Gli eventuali caricamenti in corso non verranno memorizzati.
+     */
+    public synchronized void invalidateAll() {
+        window.clear();
+        main.clear();
+        generation++;
+    }
+
+    /**
+     * Restituisce una fotografia dei contatori della cache.
+     * @return Le {@link Stats} correnti.
+     */
+    public synchronized Stats stats() {
+        return new Stats(name, hits, misses, evictions, window.size() + main.size(), maximumSize);
+    }
+
+    /**
+     * Inserisce una voce nella finestra e, se questa supera la sua capacità, decide se ammettere
+     * nell'area principale la voce più vecchia della finestra.
+     * @param key La chiave.
+     * @param value Il valore.
+     */
+    private void put(K key, V value) {
+        if (main.containsKey(key)) {
+            main.put(key, value);
+            return;
+        }
+        window.put(key, value);
+        if (window.size() <= windowSize) {
+            return;
+        }
+
+        Iterator<Map.Entry<K, V>> windowIterator = window.entrySet().iterator();
+        Map.Entry<K, V> candidate = windowIterator.next();
+        windowIterator.remove();
+
+        if (window.size() + main.size() < maximumSize) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+
+        evictions++;
+        if (main.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<K, V>> mainIterator = main.entrySet().iterator();
+        Map.Entry<K, V> victim = mainIterator.next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            mainIterator.remove();
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Sketch count-min a quattro righe con contatori saturanti a 15.
+     * Dopo un numero di incrementi pari a dieci volte la capacità della cache tutti i contatori vengono dimezzati.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97CB3127, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int samples;
+
+        private FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize * 4 - 1)) << 1;
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = Math.max(10, maximumSize * 10);
+        }
+
+        private void increment(Object key) {
+            int hash = key.hashCode();
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(hash, row);
+                if (table[row][index] < MAX_COUNT) {
+                    table[row][index]++;
+                }
+            }
+            if (++samples >= sampleSize) {
+                age();
+            }
+        }
+
+        private int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, table[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private void age() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            samples /= 2;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.unina.biogarden.utils;
 
 import com.unina.biogarden.BioGarden;
+import com.unina.biogarden.database.DatabaseNotifications;
+import javafx.application.Platform;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
@@ -8,12 +11,14 @@ import javafx.stage.Stage;
 
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
-import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * Classe di utilità che fornisce metodi per la crittografia e verifica delle password,
@@ -26,52 +31,98 @@ import java.util.Base64;
  */
 public class Utils {
 
+    /**
+     * Numero di iterazioni PBKDF2 usato dagli hash memorizzati nel formato precedente ("salt:hash"),
+     * che non riportano il proprio numero di iterazioni.
+     */
+    public static final int LEGACY_PASSWORD_ITERATIONS = 65536;
+
+    /**
+     * Numero di iterazioni PBKDF2 usato per i nuovi hash. È configurabile con la proprietà di sistema
+     * {@code biogarden.password.iterations} per bilanciare il costo dell'hash con la latenza del login;
+     * gli hash esistenti con un numero diverso vengono ricalcolati al login successivo.
+     */
+    public static final int PASSWORD_ITERATIONS = Integer.getInteger("biogarden.password.iterations", LEGACY_PASSWORD_ITERATIONS);
+
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Una {@link SecretKeyFactory} per thread: {@code getInstance} scorre i provider di sicurezza ad ogni
+     * chiamata, mentre le factory non sono thread-safe e vanno quindi riutilizzate dallo stesso thread.
+     */
+    private static final ThreadLocal<SecretKeyFactory> keyFactory = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Errore nell'ottenimento dell'algoritmo di crittografia PBKDF2WithHmacSHA1", e);
+        }
+    });
+
     /**
      * Cripta una password in chiaro utilizzando un salt generato casualmente
-     * e l'algoritmo PBKDF2WithHmacSHA1.
-     * Il salt viene anteposto all'hash della password, separato da due punti,
-     * ed entrambi sono codificati in Base64.
+     * e l'algoritmo PBKDF2WithHmacSHA1 con {@link #PASSWORD_ITERATIONS} iterazioni.
+     * Il numero di iterazioni, il salt e l'hash vengono memorizzati insieme, separati da due punti;
+     * salt e hash sono codificati in Base64.
      *
      * @param password La password in chiaro da criptare.
-     * @return Una stringa codificata in Base64 contenente il salt e l'hash della password,
-     * separati da due punti (es. "saltBase64:hashBase64").
+     * @return Una stringa contenente iterazioni, salt e hash della password,
+     * separati da due punti (es. "65536:saltBase64:hashBase64").
      * @throws RuntimeException Se si verificano problemi con gli algoritmi di crittografia sottostanti.
      */
     public static String encryptPassword(String password) {
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[16];
         random.nextBytes(salt);
 
-        byte[] hash = encrypt(password, salt);
+        byte[] hash = encrypt(password, salt, PASSWORD_ITERATIONS);
 
         String saltBase64 = Base64.getEncoder().encodeToString(salt);
         String hashBase64 = Base64.getEncoder().encodeToString(hash);
-        return saltBase64 + ":" + hashBase64;
+        return PASSWORD_ITERATIONS + ":" + saltBase64 + ":" + hashBase64;
     }
 
     /**
      * Verifica una password in chiaro rispetto a una password crittografata memorizzata.
-     * Estrae il salt e l'hash dalla password memorizzata, ricalcola l'hash della password
-     * fornita con il salt estratto e confronta l'hash appena calcolato con quello memorizzato.
+     * Estrae numero di iterazioni, salt e hash dalla password memorizzata, ricalcola l'hash della password
+     * fornita con gli stessi parametri e confronta l'hash appena calcolato con quello memorizzato.
+     * È accettato anche il formato precedente "saltBase64:hashBase64", con {@link #LEGACY_PASSWORD_ITERATIONS} iterazioni.
      *
      * @param password La password in chiaro da verificare.
-     * @param storedPassword La stringa della password crittografata memorizzata (nel formato "saltBase64:hashBase64").
+     * @param storedPassword La stringa della password crittografata memorizzata
+     * (nel formato "iterazioni:saltBase64:hashBase64" o "saltBase64:hashBase64").
      * @return {@code true} se la password corrisponde a quella crittografata memorizzata, {@code false} altrimenti.
      * @throws IllegalArgumentException Se il formato della password memorizzata non è valido.
      * @throws RuntimeException Se si verificano problemi con gli algoritmi di crittografia sottostanti.
      */
     public static boolean verifyPassword(String password, String storedPassword) {
         String[] parts = storedPassword.split(":");
-        if (parts.length != 2) {
+        if (parts.length != 2 && parts.length != 3) {
+            throw new IllegalArgumentException("Il formato della password memorizzata non è valido");
+        }
+
+        int iterations;
+        try {
+            iterations = parts.length == 3 ? Integer.parseInt(parts[0]) : LEGACY_PASSWORD_ITERATIONS;
+        } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Il formato della password memorizzata non è valido");
         }
+        byte[] salt = Base64.getDecoder().decode(parts[parts.length - 2]);
+        byte[] hash = Base64.getDecoder().decode(parts[parts.length - 1]);
 
-        byte[] salt = Base64.getDecoder().decode(parts[0]);
-        byte[] hash = Base64.getDecoder().decode(parts[1]);
+        byte[] computedHash = encrypt(password, salt, iterations);
 
-        byte[] computedHash = encrypt(password, salt);
+        return MessageDigest.isEqual(hash, computedHash);
+    }
 
-        return Arrays.equals(hash, computedHash);
+    /**
+     * Indica se una password memorizzata va ricalcolata perché creata con parametri diversi da quelli attuali
+     * (formato precedente senza iterazioni, oppure un numero di iterazioni diverso da {@link #PASSWORD_ITERATIONS}).
+     *
+     * @param storedPassword La stringa della password crittografata memorizzata.
+     * @return {@code true} se l'hash andrebbe ricalcolato, {@code false} altrimenti.
+     */
+    public static boolean needsRehash(String storedPassword) {
+        String[] parts = storedPassword.split(":");
+        return parts.length != 3 || !parts[0].equals(String.valueOf(PASSWORD_ITERATIONS));
     }
 
     /**
@@ -80,26 +131,19 @@ public class Utils {
      *
      * @param password La password in chiaro di cui calcolare l'hash.
      * @param salt Il salt da utilizzare per l'hashing.
+     * @param iterations Il numero di iterazioni PBKDF2.
      * @return L'hash della password come array di byte.
      * @throws RuntimeException Se non viene trovato un algoritmo crittografico adatto o la specifica della chiave non è valida.
      */
-    private static byte[] encrypt(String password, byte[] salt) {
-        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 65536, 128);
-        SecretKeyFactory factory;
-        try {
-            factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Errore nell'ottenimento dell'algoritmo di crittografia PBKDF2WithHmacSHA1", e);
-        }
-
-        byte[] computedHash;
+    private static byte[] encrypt(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 128);
         try {
-            computedHash = factory.generateSecret(spec).getEncoded();
+            return keyFactory.get().generateSecret(spec).getEncoded();
         } catch (InvalidKeySpecException e) {
             throw new RuntimeException("Errore nella generazione della chiave segreta", e);
+        } finally {
+            spec.clearPassword();
         }
-
-        return computedHash;
     }
 
     /**
@@ -133,6 +177,52 @@ public class Utils {
         alert.showAndWait(); // Mostra l'avviso e attende che l'utente lo chiuda
     }
 
+    /**
+     * Riporta sul thread JavaFX l'esito di un'operazione asincrona.
+     * Al completamento del future viene invocato, tramite {@link Platform#runLater(Runnable)},
+     * {@code onSuccess} con il risultato oppure {@code onError} con l'eccezione originale
+     * (senza l'involucro {@link CompletionException}).
+     *
+     * @param future L'operazione asincrona.
+     * @param onSuccess L'azione da eseguire sul thread JavaFX con il risultato.
+     * @param onError L'azione da eseguire sul thread JavaFX con l'eccezione in caso di errore.
+     * @param <T> Il tipo del risultato.
+     */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<? super T> onSuccess, Consumer<? super Throwable> onError) {
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else {
+                onError.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }));
+    }
+
+    /**
+     * Inoltra a una schermata le modifiche del database fatte da altri client, finché la schermata è visualizzata.
+     * La sottoscrizione a {@link DatabaseNotifications} viene attivata quando il nodo entra in una scena
+     * e annullata quando ne esce, così che le schermate chiuse non restino registrate.
+     * Il gestore viene invocato sul thread JavaFX.
+     *
+     * @param owner Il nodo radice (o un nodo qualsiasi) della schermata.
+     * @param handler L'azione da eseguire sul thread JavaFX per ogni modifica ricevuta.
+     */
+    public static void onDatabaseChange(Node owner, Consumer<DatabaseNotifications.Change> handler) {
+        Runnable[] unsubscribe = new Runnable[1];
+        Consumer<DatabaseNotifications.Change> subscriber = change -> Platform.runLater(() -> handler.accept(change));
+        if (owner.getScene() != null) {
+            unsubscribe[0] = DatabaseNotifications.subscribe(subscriber);
+        }
+        owner.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (newScene != null && unsubscribe[0] == null) {
+                unsubscribe[0] = DatabaseNotifications.subscribe(subscriber);
+            } else if (newScene == null && unsubscribe[0] != null) {
+                unsubscribe[0].run();
+                unsubscribe[0] = null;
+            }
+        });
+    }
+
     /**
      * Converte la prima lettera di una stringa in maiuscolo e le restanti in minuscolo.
      * Se la stringa è nulla o vuota, viene restituita così com'è.
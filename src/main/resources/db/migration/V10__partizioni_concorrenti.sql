@@ -0,0 +1,24 @@
+-- Creazione concorrente delle partizioni annuali delle attività.
+-- In V5 il controllo to_regclass e la successiva CREATE TABLE non erano atomici: due client che creavano
+-- lo stesso anno contemporaneamente (ad esempio la manutenzione avviata insieme da più client) potevano
+-- scontrarsi, e il perdente riceveva un errore di relazione duplicata che annullava l'intera transazione.
+-- Ora la creazione di ogni anno è serializzata da un advisory lock di transazione sul nome della partizione:
+-- chi arriva secondo attende il commit del primo e trova la partizione già esistente.
+
+CREATE OR REPLACE FUNCTION CreaPartizioneAttivita(p_anno INTEGER) RETURNS BOOLEAN AS $$
+DECLARE
+    nome   TEXT := 'attivita_' || p_anno;
+    inizio DATE := make_date(p_anno, 1, 1);
+    fine   DATE := make_date(p_anno + 1, 1, 1);
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(nome));
+    IF to_regclass(nome) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE attivita_correnti INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', nome);
+    EXECUTE format('WITH spostate AS (DELETE FROM attivita_correnti_default WHERE data >= $1 AND data < $2 RETURNING *) '
+                   'INSERT INTO %I SELECT * FROM spostate', nome) USING inizio, fine;
+    EXECUTE format('ALTER TABLE attivita_correnti ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', nome, inizio, fine);
+    RETURN true;
+END;
+$$ LANGUAGE plpgsql;
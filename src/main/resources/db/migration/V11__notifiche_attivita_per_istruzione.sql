@@ -0,0 +1,44 @@
+-- Notifiche delle attività a livello di istruzione.
+-- In V4 e V5 le attività erano notificate da un trigger FOR EACH ROW: le scritture in blocco
+-- (importazione CSV, piani di irrigazione, archiviazione) pubblicavano una notifica per ogni riga toccata.
+-- Ora ogni istruzione pubblica una sola notifica per ogni coltivazione toccata, leggendo le righe
+-- dalle tabelle di transizione come in V8. Il payload è ":idcoltivazione:client", senza l'ID della riga:
+-- i client usano solo la coltivazione per decidere quali attività ricaricare.
+-- I trigger sono definiti sulla tabella partizionata, quindi TG_TABLE_NAME è sempre Attivita.
+
+CREATE OR REPLACE FUNCTION NotificaAttivitaIstruzione() RETURNS trigger AS $$
+DECLARE
+    client text := current_setting('application_name', true);
+BEGIN
+    IF TG_OP <> 'DELETE' THEN
+        PERFORM pg_notify('biogarden_attivita', concat(':', n.idcoltivazione, ':', client))
+        FROM (SELECT DISTINCT idcoltivazione FROM nuove) n;
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        -- Per le modifiche viene notificata anche la coltivazione precedente, nel caso l'attività sia stata spostata;
+        -- le notifiche identiche nella stessa transazione vengono unite da PostgreSQL
+        PERFORM pg_notify('biogarden_attivita', concat(':', v.idcoltivazione, ':', client))
+        FROM (SELECT DISTINCT idcoltivazione FROM vecchie) v;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Elimina anche i trigger clonati sulle partizioni
+DROP TRIGGER IF EXISTS NotificaAttivita ON Attivita;
+
+-- Le tabelle di transizione richiedono un trigger distinto per ogni evento
+DROP TRIGGER IF EXISTS NotificaAttivitaInserite ON Attivita;
+CREATE TRIGGER NotificaAttivitaInserite AFTER INSERT ON Attivita
+    REFERENCING NEW TABLE AS nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION NotificaAttivitaIstruzione();
+
+DROP TRIGGER IF EXISTS NotificaAttivitaModificate ON Attivita;
+CREATE TRIGGER NotificaAttivitaModificate AFTER UPDATE ON Attivita
+    REFERENCING NEW TABLE AS nuove OLD TABLE AS vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION NotificaAttivitaIstruzione();
+
+DROP TRIGGER IF EXISTS NotificaAttivitaEliminate ON Attivita;
+CREATE TRIGGER NotificaAttivitaEliminate AFTER DELETE ON Attivita
+    REFERENCING OLD TABLE AS vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION NotificaAttivitaIstruzione();
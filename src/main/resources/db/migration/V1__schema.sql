@@ -0,0 +1,86 @@
+-- Schema di base del sistema BioGarden: tipi enumerati e tabelle.
+-- Le istruzioni sono idempotenti, così che la migrazione possa essere applicata anche
+-- a un database creato in precedenza a mano.
+
+DO $$
+BEGIN
+    CREATE TYPE TipoUtente AS ENUM ('proprietario', 'coltivatore');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+DO $$
+BEGIN
+    CREATE TYPE StatoAttivita AS ENUM ('pianificata', 'in_corso', 'terminata');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+DO $$
+BEGIN
+    CREATE TYPE TipoAttivita AS ENUM ('semina', 'irrigazione', 'raccolta');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+DO $$
+BEGIN
+    CREATE TYPE StatoColtivazione AS ENUM ('attesa', 'seminato', 'maturo', 'raccolto');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+-- La password contiene l'hash nel formato "iterazioni:sale:hash" (Base64), di lunghezza variabile
+CREATE TABLE IF NOT EXISTS utente (
+    id       SERIAL PRIMARY KEY,
+    nome     VARCHAR(100) NOT NULL,
+    cognome  VARCHAR(100) NOT NULL,
+    email    VARCHAR(255) NOT NULL UNIQUE,
+    password TEXT         NOT NULL,
+    tipo     TipoUtente   NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS lotto (
+    id       SERIAL PRIMARY KEY,
+    nome     VARCHAR(100) NOT NULL,
+    area     INTEGER      NOT NULL CHECK (area > 0),
+    idutente INTEGER      NOT NULL REFERENCES utente (id)
+);
+
+CREATE TABLE IF NOT EXISTS progetto (
+    id         SERIAL PRIMARY KEY,
+    nome       VARCHAR(100) NOT NULL,
+    datainizio DATE         NOT NULL,
+    datafine   DATE         NOT NULL,
+    idlotto    INTEGER      NOT NULL REFERENCES lotto (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS Coltura (
+    id               SERIAL PRIMARY KEY,
+    tipologia        VARCHAR(100) NOT NULL UNIQUE,
+    tempomaturazione INTEGER      NOT NULL CHECK (tempomaturazione > 0)
+);
+
+-- Il vincolo di unicità indicizza anche le ricerche per progetto (fetchColtures)
+CREATE TABLE IF NOT EXISTS Coltivazione (
+    id         SERIAL PRIMARY KEY,
+    idcoltura  INTEGER           NOT NULL REFERENCES Coltura (id),
+    idprogetto INTEGER           NOT NULL REFERENCES progetto (id) ON DELETE CASCADE,
+    data       DATE              NOT NULL,
+    stato      StatoColtivazione NOT NULL DEFAULT 'attesa',
+    UNIQUE (idprogetto, idcoltura)
+);
+
+CREATE TABLE IF NOT EXISTS Attivita (
+    id                        SERIAL PRIMARY KEY,
+    data                      DATE          NOT NULL,
+    stato                     StatoAttivita NOT NULL,
+    TipoAttivita              TipoAttivita  NOT NULL,
+    idlotto                   INTEGER       NOT NULL REFERENCES lotto (id),
+    idcoltivazione            INTEGER       NOT NULL REFERENCES Coltivazione (id) ON DELETE CASCADE,
+    idutente                  INTEGER       NOT NULL REFERENCES utente (id),
+    quantitaSemi              INTEGER,
+    UnitaMisuraSemi           VARCHAR(50),
+    QuantitaPrevistaRaccolta  INTEGER,
+    QuantitaEffettivaRaccolta INTEGER,
+    UnitaMisuraRaccolta       VARCHAR(50)
+);
+
+-- Database creati con versioni precedenti potevano avere una colonna password più corta
+ALTER TABLE utente ALTER COLUMN password TYPE TEXT;
@@ -0,0 +1,126 @@
+-- Stored procedure e funzioni invocate dai DAO.
+-- Ogni definizione viene prima rimossa, così che eventuali versioni precedenti con parametri
+-- o tipi di ritorno diversi non impediscano la sostituzione.
+
+DROP FUNCTION IF EXISTS RegistraUtente(VARCHAR, VARCHAR, VARCHAR, TEXT, TipoUtente);
+CREATE FUNCTION RegistraUtente(p_nome VARCHAR, p_cognome VARCHAR, p_email VARCHAR, p_password TEXT, p_tipo TipoUtente)
+    RETURNS INTEGER AS $$
+DECLARE
+    nuovo_id INTEGER;
+BEGIN
+    IF EXISTS (SELECT 1 FROM utente WHERE email = p_email) THEN
+        RAISE EXCEPTION 'Utente con email % già esistente', p_email USING ERRCODE = 'P0001';
+    END IF;
+    INSERT INTO utente (nome, cognome, email, password, tipo)
+    VALUES (p_nome, p_cognome, p_email, p_password, p_tipo)
+    RETURNING id INTO nuovo_id;
+    RETURN nuovo_id;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP FUNCTION IF EXISTS CreaLotto(VARCHAR, INTEGER, INTEGER);
+CREATE FUNCTION CreaLotto(p_nome VARCHAR, p_area INTEGER, p_idutente INTEGER)
+    RETURNS INTEGER AS $$
+DECLARE
+    nuovo_id INTEGER;
+BEGIN
+    INSERT INTO lotto (nome, area, idutente) VALUES (p_nome, p_area, p_idutente)
+    RETURNING id INTO nuovo_id;
+    RETURN nuovo_id;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP FUNCTION IF EXISTS CreaProgetto(VARCHAR, DATE, DATE, INTEGER);
+CREATE FUNCTION CreaProgetto(p_nome VARCHAR, p_inizio DATE, p_fine DATE, p_idlotto INTEGER)
+    RETURNS INTEGER AS $$
+DECLARE
+    nuovo_id INTEGER;
+BEGIN
+    IF p_inizio > p_fine THEN
+        RAISE EXCEPTION 'La data di inizio è successiva alla data di fine' USING ERRCODE = 'P0002';
+    END IF;
+    INSERT INTO progetto (nome, datainizio, datafine, idlotto) VALUES (p_nome, p_inizio, p_fine, p_idlotto)
+    RETURNING id INTO nuovo_id;
+    RETURN nuovo_id;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Una tipologia duplicata viola il vincolo di unicità (SQLSTATE 23505)
+DROP FUNCTION IF EXISTS CreaColtura(VARCHAR, INTEGER);
+CREATE FUNCTION CreaColtura(p_tipologia VARCHAR, p_tempo INTEGER)
+    RETURNS INTEGER AS $$
+DECLARE
+    nuovo_id INTEGER;
+BEGIN
+    INSERT INTO Coltura (tipologia, tempomaturazione) VALUES (p_tipologia, p_tempo)
+    RETURNING id INTO nuovo_id;
+    RETURN nuovo_id;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP FUNCTION IF EXISTS CreaColtivazione(DATE, StatoColtivazione, INTEGER, INTEGER);
+CREATE FUNCTION CreaColtivazione(p_data DATE, p_stato StatoColtivazione, p_idcoltura INTEGER, p_idprogetto INTEGER)
+    RETURNS INTEGER AS $$
+DECLARE
+    nuovo_id INTEGER;
+BEGIN
+    IF EXISTS (SELECT 1 FROM Coltivazione WHERE idprogetto = p_idprogetto AND idcoltura = p_idcoltura) THEN
+        RAISE EXCEPTION 'Esiste già una coltivazione di questa coltura nel progetto' USING ERRCODE = 'P0001';
+    END IF;
+    INSERT INTO Coltivazione (idcoltura, idprogetto, data, stato) VALUES (p_idcoltura, p_idprogetto, p_data, p_stato)
+    RETURNING id INTO nuovo_id;
+    RETURN nuovo_id;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP FUNCTION IF EXISTS fetchColtures(INTEGER);
+CREATE FUNCTION fetchColtures(p_idprogetto INTEGER)
+    RETURNS TABLE (id INTEGER, data DATE, stato StatoColtivazione, idcoltura INTEGER, tipologia VARCHAR) AS $$
+    SELECT cv.id, cv.data, cv.stato, c.id, c.tipologia
+    FROM Coltivazione cv
+    INNER JOIN Coltura c ON c.id = cv.idcoltura
+    WHERE cv.idprogetto = p_idprogetto
+    ORDER BY c.tipologia;
+$$ LANGUAGE sql STABLE;
+
+DROP FUNCTION IF EXISTS CreaAttivita(DATE, StatoAttivita, INTEGER, INTEGER, INTEGER, TipoAttivita,
+                                     INTEGER, VARCHAR, INTEGER, INTEGER, VARCHAR);
+CREATE FUNCTION CreaAttivita(p_data DATE, p_stato StatoAttivita, p_idutente INTEGER, p_idcoltivazione INTEGER,
+                             p_idlotto INTEGER, p_tipo TipoAttivita, p_quantitasemi INTEGER, p_unitasemi VARCHAR,
+                             p_quantitaprevista INTEGER, p_quantitaeffettiva INTEGER, p_unitaraccolta VARCHAR)
+    RETURNS INTEGER AS $$
+DECLARE
+    nuovo_id INTEGER;
+BEGIN
+    INSERT INTO Attivita (data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, quantitaSemi, UnitaMisuraSemi,
+                          QuantitaPrevistaRaccolta, QuantitaEffettivaRaccolta, UnitaMisuraRaccolta)
+    VALUES (p_data, p_stato, p_tipo, p_idlotto, p_idcoltivazione, p_idutente, p_quantitasemi, p_unitasemi,
+            p_quantitaprevista, p_quantitaeffettiva, p_unitaraccolta)
+    RETURNING id INTO nuovo_id;
+    RETURN nuovo_id;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP PROCEDURE IF EXISTS AggiornaAttivita(INTEGER, DATE, StatoAttivita, INTEGER, TipoAttivita,
+                                          INTEGER, VARCHAR, INTEGER, INTEGER, VARCHAR);
+CREATE PROCEDURE AggiornaAttivita(p_id INTEGER, p_data DATE, p_stato StatoAttivita, p_idutente INTEGER,
+                                  p_tipo TipoAttivita, p_quantitasemi INTEGER, p_unitasemi VARCHAR,
+                                  p_quantitaprevista INTEGER, p_quantitaeffettiva INTEGER, p_unitaraccolta VARCHAR)
+AS $$
+BEGIN
+    UPDATE Attivita
+    SET data                      = p_data,
+        stato                     = p_stato,
+        idutente                  = p_idutente,
+        TipoAttivita              = p_tipo,
+        quantitaSemi              = p_quantitasemi,
+        UnitaMisuraSemi           = p_unitasemi,
+        QuantitaPrevistaRaccolta  = p_quantitaprevista,
+        QuantitaEffettivaRaccolta = p_quantitaeffettiva,
+        UnitaMisuraRaccolta       = p_unitaraccolta
+    WHERE id = p_id;
+    IF NOT FOUND THEN
+        RAISE EXCEPTION 'Nessuna attività trovata con ID: %', p_id USING ERRCODE = 'P0002';
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
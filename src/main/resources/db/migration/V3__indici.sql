@@ -0,0 +1,24 @@
+-- Indici per le interrogazioni più frequenti dell'applicazione.
+-- Dove utile, gli indici includono (INCLUDE) le colonne lette dalla query, così che il database
+-- possa rispondere con una scansione del solo indice senza accedere alla tabella.
+-- utente.email e Coltivazione(idprogetto, idcoltura) sono già indicizzati dai rispettivi vincoli di unicità.
+
+-- Pagine di attività per coltivazione: WHERE idcoltivazione = ? AND (data, id) > (?, ?) ORDER BY data, id
+CREATE INDEX IF NOT EXISTS attivita_coltivazione_data_idx ON Attivita (idcoltivazione, data, id);
+
+-- Pagine di attività per agricoltore: WHERE idutente = ? AND (data, id) > (?, ?) ORDER BY data, id
+CREATE INDEX IF NOT EXISTS attivita_utente_data_idx ON Attivita (idutente, data, id);
+
+-- Report e statistiche di raccolta: solo le attività di raccolta, con le quantità aggregate
+CREATE INDEX IF NOT EXISTS attivita_raccolta_idx ON Attivita (idcoltivazione)
+    INCLUDE (QuantitaEffettivaRaccolta, UnitaMisuraRaccolta)
+    WHERE TipoAttivita = 'raccolta';
+
+-- Progetti per lotto (con JOIN su lotto per il nome)
+CREATE INDEX IF NOT EXISTS progetto_lotto_idx ON progetto (idlotto) INCLUDE (nome, datainizio, datafine);
+
+-- Lotti dell'utente, letti anche in ordine di ID a blocchi
+CREATE INDEX IF NOT EXISTS lotto_utente_idx ON lotto (idutente, id) INCLUDE (nome, area);
+
+-- Uso delle colture (conteggio delle coltivazioni per coltura)
+CREATE INDEX IF NOT EXISTS coltivazione_coltura_idx ON Coltivazione (idcoltura);
@@ -0,0 +1,50 @@
+-- Trigger di notifica delle modifiche per la sincronizzazione tra più client BioGarden.
+-- Ogni modifica di riga pubblica sul canale biogarden_<tabella> il payload "id:idPadre:client",
+-- dove idPadre è il valore della colonna indicata come argomento del trigger (vuoto se assente)
+-- e client è l'application_name della connessione che ha eseguito la scrittura.
+-- Le notifiche vengono consegnate solo al commit; quelle identiche nella stessa transazione vengono unite.
+
+CREATE OR REPLACE FUNCTION NotificaModifica() RETURNS trigger AS $$
+DECLARE
+    canale text := 'biogarden_' || lower(TG_TABLE_NAME);
+    client text := current_setting('application_name', true);
+    riga jsonb;
+BEGIN
+    IF TG_OP <> 'DELETE' THEN
+        riga := to_jsonb(NEW);
+        PERFORM pg_notify(canale, concat(riga ->> 'id', ':',
+                CASE WHEN TG_NARGS > 0 THEN riga ->> TG_ARGV[0] END, ':', client));
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        -- Per le modifiche viene notificato anche il padre precedente, nel caso la riga sia stata spostata
+        riga := to_jsonb(OLD);
+        PERFORM pg_notify(canale, concat(riga ->> 'id', ':',
+                CASE WHEN TG_NARGS > 0 THEN riga ->> TG_ARGV[0] END, ':', client));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS NotificaAttivita ON Attivita;
+CREATE TRIGGER NotificaAttivita AFTER INSERT OR UPDATE OR DELETE ON Attivita
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica('idcoltivazione');
+
+DROP TRIGGER IF EXISTS NotificaColtivazione ON Coltivazione;
+CREATE TRIGGER NotificaColtivazione AFTER INSERT OR UPDATE OR DELETE ON Coltivazione
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica('idprogetto');
+
+DROP TRIGGER IF EXISTS NotificaProgetto ON progetto;
+CREATE TRIGGER NotificaProgetto AFTER INSERT OR UPDATE OR DELETE ON progetto
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica('idlotto');
+
+DROP TRIGGER IF EXISTS NotificaLotto ON lotto;
+CREATE TRIGGER NotificaLotto AFTER INSERT OR UPDATE OR DELETE ON lotto
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica('idutente');
+
+DROP TRIGGER IF EXISTS NotificaColtura ON Coltura;
+CREATE TRIGGER NotificaColtura AFTER INSERT OR UPDATE OR DELETE ON Coltura
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica();
+
+DROP TRIGGER IF EXISTS NotificaUtente ON utente;
+CREATE TRIGGER NotificaUtente AFTER INSERT OR UPDATE OR DELETE ON utente
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica();
@@ -0,0 +1,132 @@
+-- Partizionamento della tabella Attivita.
+-- Attivita è partizionata per elenco sulla colonna archiviata:
+--   attivita_correnti  (archiviata = false) partizionata per intervallo sulla data, una partizione per anno
+--                      (attivita_<anno>) più una partizione di default per le date senza partizione;
+--   attivita_archivio  (archiviata = true) partizione "fredda" con le attività dei progetti terminati da tempo,
+--                      spostate da ArchiviaAttivita e indicizzate solo per coltivazione.
+-- Le query che filtrano sulla data o su archiviata leggono solo le partizioni interessate.
+
+ALTER TABLE Attivita RENAME TO attivita_precedente;
+
+CREATE TABLE Attivita (
+    id                        INTEGER       NOT NULL,
+    data                      DATE          NOT NULL,
+    stato                     StatoAttivita NOT NULL,
+    TipoAttivita              TipoAttivita  NOT NULL,
+    idlotto                   INTEGER       NOT NULL REFERENCES lotto (id),
+    idcoltivazione            INTEGER       NOT NULL REFERENCES Coltivazione (id) ON DELETE CASCADE,
+    idutente                  INTEGER       NOT NULL REFERENCES utente (id),
+    quantitaSemi              INTEGER,
+    UnitaMisuraSemi           VARCHAR(50),
+    QuantitaPrevistaRaccolta  INTEGER,
+    QuantitaEffettivaRaccolta INTEGER,
+    UnitaMisuraRaccolta       VARCHAR(50),
+    archiviata                BOOLEAN       NOT NULL DEFAULT false
+) PARTITION BY LIST (archiviata);
+
+CREATE TABLE attivita_correnti PARTITION OF Attivita FOR VALUES IN (false) PARTITION BY RANGE (data);
+CREATE TABLE attivita_correnti_default PARTITION OF attivita_correnti DEFAULT;
+CREATE TABLE attivita_archivio PARTITION OF Attivita FOR VALUES IN (true);
+
+-- Crea la partizione annuale delle attività correnti, se non esiste, spostandovi le righe
+-- dell'anno finite nel frattempo nella partizione di default.
+CREATE OR REPLACE FUNCTION CreaPartizioneAttivita(p_anno INTEGER) RETURNS BOOLEAN AS $$
+DECLARE
+    nome   TEXT := 'attivita_' || p_anno;
+    inizio DATE := make_date(p_anno, 1, 1);
+    fine   DATE := make_date(p_anno + 1, 1, 1);
+BEGIN
+    IF to_regclass(nome) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE attivita_correnti INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', nome);
+    EXECUTE format('WITH spostate AS (DELETE FROM attivita_correnti_default WHERE data >= $1 AND data < $2 RETURNING *) '
+                   'INSERT INTO %I SELECT * FROM spostate', nome) USING inizio, fine;
+    EXECUTE format('ALTER TABLE attivita_correnti ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', nome, inizio, fine);
+    RETURN true;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Sposta nella partizione di archivio le attività dei progetti terminati prima della data indicata.
+CREATE OR REPLACE FUNCTION ArchiviaAttivita(p_terminati_prima DATE) RETURNS INTEGER AS $$
+DECLARE
+    spostate INTEGER;
+BEGIN
+    UPDATE Attivita a
+    SET archiviata = true
+    FROM Coltivazione cv
+    INNER JOIN progetto p ON p.id = cv.idprogetto
+    WHERE a.idcoltivazione = cv.id
+      AND NOT a.archiviata
+      AND p.datafine < p_terminati_prima;
+    GET DIAGNOSTICS spostate = ROW_COUNT;
+    RETURN spostate;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    anno     INTEGER;
+    sequenza TEXT := pg_get_serial_sequence('attivita_precedente', 'id');
+BEGIN
+    FOR anno IN SELECT DISTINCT extract(YEAR FROM data)::INTEGER FROM attivita_precedente
+                UNION SELECT extract(YEAR FROM current_date)::INTEGER
+                UNION SELECT extract(YEAR FROM current_date)::INTEGER + 1
+    LOOP
+        PERFORM CreaPartizioneAttivita(anno);
+    END LOOP;
+
+    INSERT INTO Attivita (id, data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, quantitaSemi,
+                          UnitaMisuraSemi, QuantitaPrevistaRaccolta, QuantitaEffettivaRaccolta, UnitaMisuraRaccolta)
+    SELECT id, data, stato, TipoAttivita, idlotto, idcoltivazione, idutente, quantitaSemi,
+           UnitaMisuraSemi, QuantitaPrevistaRaccolta, QuantitaEffettivaRaccolta, UnitaMisuraRaccolta
+    FROM attivita_precedente;
+
+    -- La sequenza degli ID passa alla nuova tabella prima di eliminare quella precedente
+    EXECUTE format('ALTER SEQUENCE %s OWNED BY NONE', sequenza);
+    DROP TABLE attivita_precedente;
+    EXECUTE format('ALTER TABLE Attivita ALTER COLUMN id SET DEFAULT nextval(%L::regclass)', sequenza);
+    EXECUTE format('ALTER SEQUENCE %s OWNED BY Attivita.id', sequenza);
+END $$;
+
+-- La chiave primaria di una tabella partizionata deve includere le colonne di partizionamento
+ALTER TABLE Attivita ADD PRIMARY KEY (id, archiviata, data);
+
+-- Gli indici di V3 sono stati eliminati con la tabella precedente: vengono ricreati sulle sole attività correnti
+CREATE INDEX attivita_coltivazione_data_idx ON attivita_correnti (idcoltivazione, data, id);
+CREATE INDEX attivita_utente_data_idx ON attivita_correnti (idutente, data, id);
+CREATE INDEX attivita_raccolta_idx ON attivita_correnti (idcoltivazione)
+    INCLUDE (QuantitaEffettivaRaccolta, UnitaMisuraRaccolta)
+    WHERE TipoAttivita = 'raccolta';
+
+-- L'archivio viene letto solo per coltivazione e dai report di raccolta
+CREATE INDEX attivita_archivio_coltivazione_idx ON attivita_archivio (idcoltivazione, data, id);
+CREATE INDEX attivita_archivio_raccolta_idx ON attivita_archivio (idcoltivazione)
+    INCLUDE (QuantitaEffettivaRaccolta, UnitaMisuraRaccolta)
+    WHERE TipoAttivita = 'raccolta';
+
+-- I trigger clonati sulle partizioni vedrebbero come TG_TABLE_NAME il nome della partizione:
+-- il secondo argomento, se presente, indica la tabella che dà il nome al canale.
+CREATE OR REPLACE FUNCTION NotificaModifica() RETURNS trigger AS $$
+DECLARE
+    canale text := 'biogarden_' || lower(CASE WHEN TG_NARGS > 1 THEN TG_ARGV[1] ELSE TG_TABLE_NAME END);
+    client text := current_setting('application_name', true);
+    riga jsonb;
+BEGIN
+    IF TG_OP <> 'DELETE' THEN
+        riga := to_jsonb(NEW);
+        PERFORM pg_notify(canale, concat(riga ->> 'id', ':',
+                CASE WHEN TG_NARGS > 0 THEN riga ->> TG_ARGV[0] END, ':', client));
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        -- Per le modifiche viene notificato anche il padre precedente, nel caso la riga sia stata spostata
+        riga := to_jsonb(OLD);
+        PERFORM pg_notify(canale, concat(riga ->> 'id', ':',
+                CASE WHEN TG_NARGS > 0 THEN riga ->> TG_ARGV[0] END, ':', client));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER NotificaAttivita AFTER INSERT OR UPDATE OR DELETE ON Attivita
+    FOR EACH ROW EXECUTE FUNCTION NotificaModifica('idcoltivazione', 'attivita');
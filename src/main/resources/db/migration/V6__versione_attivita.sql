@@ -0,0 +1,44 @@
+-- Concorrenza ottimistica sulle attività.
+-- Ogni attività ha un numero di versione, incrementato ad ogni modifica. AggiornaAttivita applica la modifica
+-- solo se la versione letta dal client è ancora quella corrente (compare-and-set): una scrittura basata su
+-- dati non aggiornati viene rifiutata con l'errore applicativo BG001, invece di sovrascrivere le modifiche
+-- di un altro utente. Nessuna riga viene bloccata tra la lettura e la scrittura.
+
+-- Con un valore di default costante la colonna viene aggiunta senza riscrivere le partizioni
+ALTER TABLE Attivita ADD COLUMN IF NOT EXISTS versione INTEGER NOT NULL DEFAULT 0;
+
+DROP PROCEDURE IF EXISTS AggiornaAttivita(INTEGER, DATE, StatoAttivita, INTEGER, TipoAttivita,
+                                          INTEGER, VARCHAR, INTEGER, INTEGER, VARCHAR);
+DROP FUNCTION IF EXISTS AggiornaAttivita(INTEGER, DATE, StatoAttivita, INTEGER, TipoAttivita,
+                                         INTEGER, VARCHAR, INTEGER, INTEGER, VARCHAR, INTEGER);
+CREATE FUNCTION AggiornaAttivita(p_id INTEGER, p_data DATE, p_stato StatoAttivita, p_idutente INTEGER,
+                                 p_tipo TipoAttivita, p_quantitasemi INTEGER, p_unitasemi VARCHAR,
+                                 p_quantitaprevista INTEGER, p_quantitaeffettiva INTEGER, p_unitaraccolta VARCHAR,
+                                 p_versione INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    nuova_versione INTEGER;
+BEGIN
+    UPDATE Attivita
+    SET data                      = p_data,
+        stato                     = p_stato,
+        idutente                  = p_idutente,
+        TipoAttivita              = p_tipo,
+        quantitaSemi              = p_quantitasemi,
+        UnitaMisuraSemi           = p_unitasemi,
+        QuantitaPrevistaRaccolta  = p_quantitaprevista,
+        QuantitaEffettivaRaccolta = p_quantitaeffettiva,
+        UnitaMisuraRaccolta       = p_unitaraccolta,
+        versione                  = versione + 1
+    WHERE id = p_id AND versione = p_versione
+    RETURNING versione INTO nuova_versione;
+
+    IF NOT FOUND THEN
+        IF EXISTS (SELECT 1 FROM Attivita WHERE id = p_id) THEN
+            RAISE EXCEPTION 'L''attività % è stata modificata da un altro utente', p_id USING ERRCODE = 'BG001';
+        END IF;
+        RAISE EXCEPTION 'Nessuna attività trovata con ID: %', p_id USING ERRCODE = 'P0002';
+    END IF;
+    RETURN nuova_versione;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,26 @@
+-- Piani di irrigazione periodica.
+-- Un piano descrive una ricorrenza (ogni N giorni tra due date, svolta da un agricoltore) su una coltivazione;
+-- le sue occorrenze sono normali attività di irrigazione pianificate, collegate al piano tramite Attivita.idpiano.
+-- Quando il piano viene modificato, solo le occorrenze future ancora pianificate vengono riallineate:
+-- le attività già svolte, in corso o passate restano invariate.
+
+CREATE TABLE IF NOT EXISTS PianoIrrigazione (
+    id               SERIAL PRIMARY KEY,
+    idcoltivazione   INTEGER NOT NULL REFERENCES Coltivazione (id) ON DELETE CASCADE,
+    idutente         INTEGER NOT NULL REFERENCES utente (id),
+    datainizio       DATE    NOT NULL,
+    datafine         DATE    NOT NULL,
+    intervallogiorni INTEGER NOT NULL CHECK (intervallogiorni > 0),
+    CHECK (datafine >= datainizio)
+);
+
+-- Piani di una coltivazione, letti dal form dei piani
+CREATE INDEX IF NOT EXISTS pianoirrigazione_coltivazione_idx ON PianoIrrigazione (idcoltivazione);
+
+-- Colonna nullable senza default: viene aggiunta senza riscrivere le partizioni.
+-- Eliminando un piano, le sue occorrenze rimaste diventano attività indipendenti.
+ALTER TABLE Attivita ADD COLUMN IF NOT EXISTS idpiano INTEGER REFERENCES PianoIrrigazione (id) ON DELETE SET NULL;
+
+-- Occorrenze di un piano: WHERE idpiano = ? AND data >= ?
+CREATE INDEX IF NOT EXISTS attivita_piano_data_idx ON attivita_correnti (idpiano, data)
+    WHERE idpiano IS NOT NULL;
@@ -0,0 +1,116 @@
+-- Derivazione automatica dello stato delle coltivazioni dalle attività.
+-- Lo stato di una coltivazione segue le sue attività di semina e di raccolta:
+--   attesa    nessuna semina terminata;
+--   seminato  semina terminata, ma non ancora trascorso il tempo di maturazione della coltura;
+--   maturo    trascorso il tempo di maturazione dalla prima semina terminata;
+--   raccolto  almeno una raccolta terminata.
+-- Ogni istruzione che modifica semine o raccolte accoda le coltivazioni toccate in ColtivazioneDaRicalcolare;
+-- AggiornaStatoColtivazioni ricalcola solo quelle accodate più quelle seminate la cui data di maturazione
+-- è ormai trascorsa, senza scandire tutte le coltivazioni.
+
+CREATE TABLE IF NOT EXISTS ColtivazioneDaRicalcolare (
+    idcoltivazione INTEGER PRIMARY KEY
+);
+
+-- Data in cui la coltivazione diventa matura, calcolata insieme allo stato
+ALTER TABLE Coltivazione ADD COLUMN IF NOT EXISTS datamaturazione DATE;
+
+-- Coltivazioni che possono maturare: WHERE stato = 'seminato' AND datamaturazione <= ?
+CREATE INDEX IF NOT EXISTS coltivazione_maturazione_idx ON Coltivazione (datamaturazione)
+    WHERE stato = 'seminato';
+
+-- Accoda le coltivazioni delle semine e delle raccolte inserite, modificate o eliminate da un'istruzione.
+-- I trigger sono a livello di istruzione e leggono le righe toccate dalle tabelle di transizione:
+-- un inserimento in blocco accoda ogni coltivazione una sola volta.
+CREATE OR REPLACE FUNCTION AccodaColtivazioniAttivita() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP <> 'DELETE' THEN
+        INSERT INTO ColtivazioneDaRicalcolare (idcoltivazione)
+        SELECT DISTINCT idcoltivazione FROM nuove WHERE TipoAttivita IN ('semina', 'raccolta')
+        ON CONFLICT DO NOTHING;
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        INSERT INTO ColtivazioneDaRicalcolare (idcoltivazione)
+        SELECT DISTINCT idcoltivazione FROM vecchie WHERE TipoAttivita IN ('semina', 'raccolta')
+        ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Le tabelle di transizione richiedono un trigger distinto per ogni evento
+DROP TRIGGER IF EXISTS AccodaAttivitaInserite ON Attivita;
+CREATE TRIGGER AccodaAttivitaInserite AFTER INSERT ON Attivita
+    REFERENCING NEW TABLE AS nuove
+    FOR EACH STATEMENT EXECUTE FUNCTION AccodaColtivazioniAttivita();
+
+DROP TRIGGER IF EXISTS AccodaAttivitaModificate ON Attivita;
+CREATE TRIGGER AccodaAttivitaModificate AFTER UPDATE ON Attivita
+    REFERENCING NEW TABLE AS nuove OLD TABLE AS vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION AccodaColtivazioniAttivita();
+
+DROP TRIGGER IF EXISTS AccodaAttivitaEliminate ON Attivita;
+CREATE TRIGGER AccodaAttivitaEliminate AFTER DELETE ON Attivita
+    REFERENCING OLD TABLE AS vecchie
+    FOR EACH STATEMENT EXECUTE FUNCTION AccodaColtivazioniAttivita();
+
+-- Cambiando il tempo di maturazione di una coltura cambia la data di maturazione delle sue coltivazioni seminate
+CREATE OR REPLACE FUNCTION AccodaColtivazioniColtura() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO ColtivazioneDaRicalcolare (idcoltivazione)
+    SELECT id FROM Coltivazione WHERE idcoltura = NEW.id AND stato IN ('seminato', 'maturo')
+    ON CONFLICT DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS AccodaColturaModificata ON Coltura;
+CREATE TRIGGER AccodaColturaModificata AFTER UPDATE OF tempomaturazione ON Coltura
+    FOR EACH ROW WHEN (OLD.tempomaturazione IS DISTINCT FROM NEW.tempomaturazione)
+    EXECUTE FUNCTION AccodaColtivazioniColtura();
+
+-- Ricalcola lo stato delle coltivazioni accodate e di quelle seminate che hanno raggiunto la maturazione.
+-- La coda viene svuotata nella stessa istruzione: le coltivazioni accodate da transazioni concorrenti
+-- restano in coda per l'esecuzione successiva. Vengono aggiornate solo le coltivazioni il cui stato cambia.
+-- Restituisce il numero di coltivazioni aggiornate.
+CREATE OR REPLACE FUNCTION AggiornaStatoColtivazioni(p_oggi DATE) RETURNS INTEGER AS $$
+DECLARE
+    aggiornate INTEGER;
+BEGIN
+    WITH accodate AS (
+        DELETE FROM ColtivazioneDaRicalcolare RETURNING idcoltivazione
+    ), candidate AS (
+        SELECT idcoltivazione AS id FROM accodate
+        UNION
+        SELECT id FROM Coltivazione WHERE stato = 'seminato' AND datamaturazione <= p_oggi
+    ), derivate AS (
+        SELECT c.id,
+               s.semina + co.tempomaturazione AS maturazione,
+               CASE
+                   WHEN r.raccolta THEN 'raccolto'
+                   WHEN s.semina IS NULL THEN 'attesa'
+                   WHEN s.semina + co.tempomaturazione <= p_oggi THEN 'maturo'
+                   ELSE 'seminato'
+               END::StatoColtivazione AS stato
+        FROM candidate k
+        INNER JOIN Coltivazione c ON c.id = k.id
+        INNER JOIN Coltura co ON co.id = c.idcoltura
+        CROSS JOIN LATERAL (SELECT MIN(a.data) AS semina FROM Attivita a
+                            WHERE a.idcoltivazione = c.id AND a.TipoAttivita = 'semina' AND a.stato = 'terminata') s
+        CROSS JOIN LATERAL (SELECT EXISTS (SELECT 1 FROM Attivita a
+                            WHERE a.idcoltivazione = c.id AND a.TipoAttivita = 'raccolta' AND a.stato = 'terminata') AS raccolta) r
+    )
+    UPDATE Coltivazione c
+    SET stato = d.stato, datamaturazione = d.maturazione
+    FROM derivate d
+    WHERE c.id = d.id AND (c.stato, c.datamaturazione) IS DISTINCT FROM (d.stato, d.maturazione);
+
+    GET DIAGNOSTICS aggiornate = ROW_COUNT;
+    RETURN aggiornate;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Alla prima esecuzione vengono ricalcolate tutte le coltivazioni esistenti
+INSERT INTO ColtivazioneDaRicalcolare (idcoltivazione)
+SELECT id FROM Coltivazione
+ON CONFLICT DO NOTHING;
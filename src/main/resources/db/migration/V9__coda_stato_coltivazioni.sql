@@ -0,0 +1,52 @@
+-- Svuotamento della coda di ricalcolo dello stato delle coltivazioni senza perdere aggiornamenti.
+-- In V8 una semina terminata accodata con ON CONFLICT DO NOTHING su una coltivazione già in coda non prendeva
+-- alcun lock sulla riga esistente: un ricalcolo concorrente poteva eliminare quella riga e calcolare lo stato
+-- da uno snapshot che non vedeva ancora la nuova attività, lasciando lo stato errato con la coda vuota.
+-- Ora il ricalcolo blocca la coda in modalità EXCLUSIVE, in conflitto con il ROW EXCLUSIVE preso da ogni
+-- inserimento nella coda (anche se non inserisce nulla): attende il commit delle transazioni che hanno già
+-- accodato e blocca quelle che accodano dopo, che resteranno in coda per l'esecuzione successiva.
+-- Lo stato viene derivato in un'istruzione successiva allo svuotamento, con uno snapshot che vede
+-- le attività di tutte le transazioni attese.
+
+CREATE OR REPLACE FUNCTION AggiornaStatoColtivazioni(p_oggi DATE) RETURNS INTEGER AS $$
+DECLARE
+    accodate   INTEGER[];
+    aggiornate INTEGER;
+BEGIN
+    LOCK TABLE ColtivazioneDaRicalcolare IN EXCLUSIVE MODE;
+
+    WITH svuotate AS (
+        DELETE FROM ColtivazioneDaRicalcolare RETURNING idcoltivazione
+    )
+    SELECT COALESCE(array_agg(idcoltivazione), '{}') INTO accodate FROM svuotate;
+
+    WITH candidate AS (
+        SELECT unnest(accodate) AS id
+        UNION
+        SELECT id FROM Coltivazione WHERE stato = 'seminato' AND datamaturazione <= p_oggi
+    ), derivate AS (
+        SELECT c.id,
+               s.semina + co.tempomaturazione AS maturazione,
+               CASE
+                   WHEN r.raccolta THEN 'raccolto'
+                   WHEN s.semina IS NULL THEN 'attesa'
+                   WHEN s.semina + co.tempomaturazione <= p_oggi THEN 'maturo'
+                   ELSE 'seminato'
+               END::StatoColtivazione AS stato
+        FROM candidate k
+        INNER JOIN Coltivazione c ON c.id = k.id
+        INNER JOIN Coltura co ON co.id = c.idcoltura
+        CROSS JOIN LATERAL (SELECT MIN(a.data) AS semina FROM Attivita a
+                            WHERE a.idcoltivazione = c.id AND a.TipoAttivita = 'semina' AND a.stato = 'terminata') s
+        CROSS JOIN LATERAL (SELECT EXISTS (SELECT 1 FROM Attivita a
+                            WHERE a.idcoltivazione = c.id AND a.TipoAttivita = 'raccolta' AND a.stato = 'terminata') AS raccolta) r
+    )
+    UPDATE Coltivazione c
+    SET stato = d.stato, datamaturazione = d.maturazione
+    FROM derivate d
+    WHERE c.id = d.id AND (c.stato, c.datamaturazione) IS DISTINCT FROM (d.stato, d.maturazione);
+
+    GET DIAGNOSTICS aggiornate = ROW_COUNT;
+    RETURN aggiornate;
+END;
+$$ LANGUAGE plpgsql;